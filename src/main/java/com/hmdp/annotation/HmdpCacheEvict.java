@@ -0,0 +1,29 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法正常返回后删除缓存，在事务中调用时推迟到事务提交之后删除
+ * 方法抛出异常时不删除
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HmdpCacheEvict {
+
+    /**
+     * key前缀
+     */
+    String keyPrefix();
+
+    /**
+     * 根据方法参数计算key后缀的SpEL，例如"#shop.id"，为空时key就是keyPrefix，计算结果为null时不删除
+     */
+    String key() default "";
+}
@@ -0,0 +1,56 @@
+package com.hmdp.annotation;
+
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.codec.CacheCodecType;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过CacheClient缓存方法的返回值，key为keyPrefix拼接上key表达式的计算结果
+ * 方法返回null时写入空值防止缓存穿透；返回List时按元素类型缓存
+ * 注意：与其他Spring AOP一样，同一个类中的方法互相调用不经过缓存
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HmdpCacheable {
+
+    /**
+     * key前缀
+     */
+    String keyPrefix();
+
+    /**
+     * 根据方法参数计算key后缀的SpEL，例如"#id"、"#shop.id"，为空时key就是keyPrefix
+     */
+    String key() default "";
+
+    /**
+     * 互斥锁前缀，为空时使用"lock:" + keyPrefix，THROUGH策略不使用
+     */
+    String lockPrefix() default "";
+
+    /**
+     * 缓存策略，为空时使用hmdp.cache.default-strategy；hmdp.cache.strategies中为keyPrefix配置的策略优先
+     */
+    CacheStrategy[] strategy() default {};
+
+    /**
+     * 有效期
+     */
+    long ttl();
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * 写入时使用的格式，为空时使用hmdp.cache.codec
+     */
+    CacheCodecType[] codec() default {};
+}
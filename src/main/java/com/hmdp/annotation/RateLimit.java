@@ -0,0 +1,24 @@
+package com.hmdp.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 对控制器方法限流，限流规则按资源名配置在hmdp.rate-limit.rules中
+ * 超过限制的请求由RateLimitInterceptor直接返回429，不进入控制器
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+
+    /**
+     * 资源名，对应hmdp.rate-limit.rules中的key，没有配置规则时不限流
+     */
+    String value();
+}
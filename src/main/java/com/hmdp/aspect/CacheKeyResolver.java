@@ -0,0 +1,109 @@
+package com.hmdp.aspect;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 根据方法参数计算缓存key的后缀，每个方法只解析一次表达式
+ * 1. 空表达式直接返回空字符串
+ * 2. "#参数名"、"#p0"、"#a0"这类直接引用参数的表达式，解析成参数下标，调用时直接取参数，不经过SpEL
+ * 3. 其他表达式解析一次后缓存，运行几次之后由SpEL编译成字节码执行
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public final class CacheKeyResolver {
+
+    private static final Pattern PARAMETER_REFERENCE = Pattern.compile("#(\\w+)");
+
+    private static final Pattern INDEX_REFERENCE = Pattern.compile("[pa](\\d+)");
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, CacheKeyResolver.class.getClassLoader()));
+
+    private final Function<Object[], Object> resolver;
+
+    private CacheKeyResolver(Function<Object[], Object> resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * 解析方法上的key表达式
+     * @param method
+     * @param key SpEL表达式
+     * @return
+     */
+    public static CacheKeyResolver of(Method method, String key) {
+        // 1. 空表达式
+        if (key == null || key.isEmpty()) {
+            return new CacheKeyResolver(args -> "");
+        }
+
+        // 2. 直接引用某个参数
+        String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+        int index = parameterIndex(key.trim(), names, method.getParameterCount());
+        if (index >= 0) {
+            return new CacheKeyResolver(args -> args[index]);
+        }
+
+        // 3. 其他表达式，参数同时以参数名、p0、a0的形式注册为变量
+        Expression expression = PARSER.parseExpression(key);
+        String[][] variables = new String[method.getParameterCount()][];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = names == null ? new String[]{"p" + i, "a" + i} : new String[]{names[i], "p" + i, "a" + i};
+        }
+        return new CacheKeyResolver(args -> {
+            StandardEvaluationContext context = new StandardEvaluationContext(args);
+            for (int i = 0; i < variables.length; i++) {
+                for (String variable : variables[i]) {
+                    context.setVariable(variable, args[i]);
+                }
+            }
+            return expression.getValue(context);
+        });
+    }
+
+    /**
+     * 计算key的后缀
+     * @param args 方法参数
+     * @return
+     */
+    public Object resolve(Object[] args) {
+        return resolver.apply(args);
+    }
+
+    /**
+     * 表达式直接引用某个参数时返回参数下标，否则返回-1
+     */
+    private static int parameterIndex(String key, String[] names, int parameterCount) {
+        Matcher matcher = PARAMETER_REFERENCE.matcher(key);
+        if (!matcher.matches()) {
+            return -1;
+        }
+        String name = matcher.group(1);
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+        }
+        Matcher indexMatcher = INDEX_REFERENCE.matcher(name);
+        if (indexMatcher.matches()) {
+            int index = Integer.parseInt(indexMatcher.group(1));
+            return index < parameterCount ? index : -1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,200 @@
+package com.hmdp.aspect;
+
+import com.hmdp.annotation.HmdpCacheEvict;
+import com.hmdp.annotation.HmdpCacheable;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidator;
+import jakarta.annotation.Resource;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 处理@HmdpCacheable和@HmdpCacheEvict，缓存的读写全部交给CacheClient
+ * 每个方法的注解只在第一次调用时解析，之后的调用只查表、计算key，不再反射和解析表达式
+ * 优先级高于事务，命中缓存时不会开启事务
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class HmdpCacheAspect {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    private final Map<Method, CacheableOperation> cacheableOperations = new ConcurrentHashMap<>();
+
+    private final Map<Method, CacheKeyResolver> evictResolvers = new ConcurrentHashMap<>();
+
+    /**
+     * 切点不绑定注解参数：绑定注解时每次调用都要通过反射重新查找注解，耗时是命中本地缓存的数倍
+     * 注解在首次调用时读取，与解析好的配置一起缓存
+     */
+    @Around("@annotation(com.hmdp.annotation.HmdpCacheable)")
+    public Object cacheable(ProceedingJoinPoint joinPoint) throws Throwable {
+        // 1. 查找方法解析好的缓存配置
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CacheableOperation operation = cacheableOperations.get(method);
+        if (operation == null) {
+            operation = cacheableOperations.computeIfAbsent(method, m -> createOperation(m,
+                    AnnotatedElementUtils.findMergedAnnotation(m, HmdpCacheable.class)));
+        }
+
+        // 2. 计算key，key为null时不经过缓存
+        Object suffix = operation.keyResolver.resolve(joinPoint.getArgs());
+        if (suffix == null) {
+            return joinPoint.proceed();
+        }
+
+        // 3. 按策略查询缓存，未命中时执行原方法
+        CacheableOperation op = operation;
+        try {
+            Object value = cacheClient.query(op.keyPrefix, op.lockPrefix, suffix, op.cacheType,
+                    id -> op.toCache(proceed(joinPoint)), op.ttl, op.unit);
+            return op.fromCache(value);
+        } catch (FallbackException e) {
+            throw e.getCause();
+        }
+    }
+
+    @AfterReturning("@annotation(cacheEvict)")
+    public void evict(JoinPoint joinPoint, HmdpCacheEvict cacheEvict) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CacheKeyResolver resolver = evictResolvers.get(method);
+        if (resolver == null) {
+            resolver = evictResolvers.computeIfAbsent(method, m -> CacheKeyResolver.of(m, cacheEvict.key()));
+        }
+        Object suffix = resolver.resolve(joinPoint.getArgs());
+        if (suffix != null) {
+            cacheInvalidator.invalidate(cacheEvict.keyPrefix() + suffix);
+        }
+    }
+
+    /**
+     * 解析方法上的@HmdpCacheable，并向CacheClient注册key前缀的策略和格式
+     */
+    private CacheableOperation createOperation(Method method, HmdpCacheable cacheable) {
+        cacheClient.registerPrefix(cacheable.keyPrefix(),
+                cacheable.strategy().length == 0 ? null : cacheable.strategy()[0],
+                cacheable.codec().length == 0 ? null : cacheable.codec()[0]);
+        String lockPrefix = cacheable.lockPrefix().isEmpty() ? "lock:" + cacheable.keyPrefix() : cacheable.lockPrefix();
+        return new CacheableOperation(cacheable.keyPrefix(), lockPrefix, CacheKeyResolver.of(method, cacheable.key()),
+                method, cacheable.ttl(), cacheable.unit());
+    }
+
+    /**
+     * 执行原方法，受检异常包装后在切面中还原
+     */
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new FallbackException(e);
+        }
+    }
+
+    /**
+     * 一个方法解析好的缓存配置
+     */
+    private static class CacheableOperation {
+
+        private final String keyPrefix;
+
+        private final String lockPrefix;
+
+        private final CacheKeyResolver keyResolver;
+
+        /**
+         * 缓存中保存的类型，返回List的方法以元素类型的数组保存，保证反序列化时元素类型不丢失
+         */
+        private final Class<Object> cacheType;
+
+        /**
+         * 返回List的方法的元素类型，其他方法为null
+         */
+        private final Class<?> elementType;
+
+        private final Long ttl;
+
+        private final TimeUnit unit;
+
+        @SuppressWarnings("unchecked")
+        private CacheableOperation(String keyPrefix, String lockPrefix, CacheKeyResolver keyResolver,
+                                   Method method, long ttl, TimeUnit unit) {
+            this.keyPrefix = keyPrefix;
+            this.lockPrefix = lockPrefix;
+            this.keyResolver = keyResolver;
+            this.ttl = ttl;
+            this.unit = unit;
+            Class<?> returnType = method.getReturnType();
+            if (List.class.isAssignableFrom(returnType)) {
+                this.elementType = elementTypeOf(method);
+                this.cacheType = (Class<Object>) Array.newInstance(elementType, 0).getClass();
+            } else {
+                this.elementType = null;
+                this.cacheType = (Class<Object>) ClassUtils.resolvePrimitiveIfNecessary(returnType);
+            }
+        }
+
+        private static Class<?> elementTypeOf(Method method) {
+            Type type = method.getGenericReturnType();
+            if (type instanceof ParameterizedType
+                    && ((ParameterizedType) type).getActualTypeArguments()[0] instanceof Class<?> element) {
+                return element;
+            }
+            throw new IllegalStateException("@HmdpCacheable无法确定返回值的元素类型：" + method);
+        }
+
+        private Object toCache(Object value) {
+            if (elementType == null || value == null) {
+                return value;
+            }
+            List<?> list = (List<?>) value;
+            return list.toArray((Object[]) Array.newInstance(elementType, list.size()));
+        }
+
+        private Object fromCache(Object value) {
+            if (elementType == null || value == null) {
+                return value;
+            }
+            // 缓存中的数组可能被多个线程共享，每次返回新的List
+            return new ArrayList<>(Arrays.asList((Object[]) value));
+        }
+    }
+
+    /**
+     * 包装原方法抛出的受检异常
+     */
+    private static class FallbackException extends RuntimeException {
+
+        private FallbackException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
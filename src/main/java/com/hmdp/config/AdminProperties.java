@@ -0,0 +1,24 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 管理接口的配置项，对应application.yaml中的hmdp.admin
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.admin")
+public class AdminProperties {
+
+    /**
+     * 可以调用管理接口的用户id，为空时所有用户都不能调用
+     */
+    private Set<Long> userIds = new HashSet<>();
+}
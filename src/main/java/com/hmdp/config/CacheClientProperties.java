@@ -0,0 +1,282 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.codec.CacheCodecType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CacheClient的配置项，对应application.yaml中的hmdp.cache
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.cache")
+public class CacheClientProperties {
+
+    /**
+     * 写入缓存时使用的编码格式，读取时自动识别格式
+     * 默认json，升级之前的节点只能读取json，全部节点升级之后再切换为binary
+     */
+    private CacheCodecType codec = CacheCodecType.JSON;
+
+    /**
+     * 未单独配置策略的key前缀使用的查询策略
+     */
+    private CacheStrategy defaultStrategy = CacheStrategy.LOGICAL_EXPIRE;
+
+    /**
+     * 按key前缀配置的查询策略
+     */
+    private Map<String, CacheStrategy> strategies = new HashMap<>();
+
+    /**
+     * 压缩配置
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * XFetch提前刷新的配置
+     */
+    private XFetch xfetch = new XFetch();
+
+    /**
+     * 有效期及随机抖动配置
+     */
+    private Ttl ttl = new Ttl();
+
+    /**
+     * 本地一级缓存配置
+     */
+    private Local local = new Local();
+
+    /**
+     * 热点key探测配置
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 布隆过滤器配置
+     */
+    private Bloom bloom = new Bloom();
+
+    /**
+     * 缓存失效配置
+     */
+    private Invalidation invalidation = new Invalidation();
+
+    /**
+     * 互斥锁重建缓存的配置
+     */
+    private Mutex mutex = new Mutex();
+
+    /**
+     * 异步重建缓存的线程池配置
+     */
+    private Rebuild rebuild = new Rebuild();
+
+    /**
+     * 缓存预热配置
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    @Data
+    public static class Compression {
+        /**
+         * 是否压缩较大的数据，读取时自动识别是否压缩
+         * 默认关闭，升级之前的节点不能读取压缩的数据，全部节点升级之后再开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 编码后达到该字节数的数据才压缩
+         */
+        private int threshold = 512;
+
+        /**
+         * deflate压缩级别，1最快，9压缩率最高
+         */
+        private int level = 1;
+    }
+
+    @Data
+    public static class Ttl {
+        /**
+         * 未单独配置抖动窗口时，抖动窗口占基础有效期的比例
+         */
+        private double jitterRatio = 0.1;
+
+        /**
+         * 防止缓存穿透的空值的基础有效期
+         */
+        private Duration nullTtl = Duration.ofMinutes(2);
+
+        /**
+         * 按key前缀配置的有效期
+         */
+        private Map<String, PrefixTtl> prefixes = new HashMap<>();
+    }
+
+    @Data
+    public static class PrefixTtl {
+        /**
+         * 基础有效期，未配置时使用调用方传入的有效期
+         */
+        private Duration base;
+
+        /**
+         * 抖动窗口，未配置时按jitterRatio计算
+         */
+        private Duration jitter;
+    }
+
+    @Data
+    public static class Local {
+        /**
+         * 是否开启本地缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 本地缓存最多保存的条目数
+         */
+        private int maximumSize = 1000;
+
+        /**
+         * 本地缓存条目的最长存活时间
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * 是否开启热点key探测
+         */
+        private boolean enabled = true;
+
+        /**
+         * 统计访问次数的滑动窗口
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 滑动窗口切分的时间片个数
+         */
+        private int slots = 10;
+
+        /**
+         * count-min sketch每行的计数器个数
+         */
+        private int width = 4096;
+
+        /**
+         * 访问的采样率
+         */
+        private double sampleRate = 0.1;
+
+        /**
+         * 窗口内访问次数达到该值的key为热点key
+         */
+        private long threshold = 1000;
+
+        /**
+         * 热点key的最大个数
+         */
+        private int capacity = 256;
+
+        /**
+         * 热点key本地副本的有效期
+         */
+        private Duration ttl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 是否开启布隆过滤器
+         */
+        private boolean enabled = true;
+
+        /**
+         * 预计插入的元素个数
+         */
+        private long expectedInsertions = 1_000_000L;
+
+        /**
+         * 期望的误判率
+         */
+        private double fpp = 0.01;
+
+        /**
+         * 定时全量重建的间隔，用于清理已删除的数据
+         */
+        private Duration rebuildInterval = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class XFetch {
+        /**
+         * 提前刷新的激进程度，大于1时更早刷新，小于1时更接近逻辑过期时间才刷新
+         */
+        private double beta = 1.0;
+    }
+
+    @Data
+    public static class Invalidation {
+        /**
+         * 延迟双删中第二次删除的延迟，为0时不进行第二次删除
+         */
+        private Duration doubleDeleteDelay = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Mutex {
+        /**
+         * 获取互斥锁失败后，等待其他节点重建完成通知的最长时间，超时后重新竞争互斥锁
+         */
+        private Duration waitTimeout = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class WarmUp {
+        /**
+         * 是否在应用启动时预热
+         */
+        private boolean onStartup = true;
+
+        /**
+         * 每批从数据库读取并写入redis的条数
+         */
+        private int batchSize = 1000;
+
+        /**
+         * 并行编码与写入redis的线程数
+         */
+        private int threads = 4;
+    }
+
+    @Data
+    public static class Rebuild {
+        /**
+         * 重建线程数
+         */
+        private int threads = 10;
+
+        /**
+         * 等待队列的容量，队列已满时返回旧数据，不再提交重建任务
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 关闭时等待队列中任务执行完毕的最长时间
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+}
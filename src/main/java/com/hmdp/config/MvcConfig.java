@@ -1,7 +1,10 @@
 package com.hmdp.config;
 
+import com.hmdp.interceptor.AdminInterceptor;
 import com.hmdp.interceptor.LoginInterceptor;
+import com.hmdp.interceptor.RateLimitInterceptor;
 import com.hmdp.interceptor.RefreshTokenInterceptor;
+import com.hmdp.utils.RateLimiter;
 import jakarta.annotation.Resource;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -14,8 +17,21 @@ public class MvcConfig implements WebMvcConfigurer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
+    @Resource
+    private AdminProperties adminProperties;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 缓存管理接口只允许管理员调用，未登录的请求已经被LoginInterceptor拦截
+        registry.addInterceptor(new AdminInterceptor(adminProperties))
+                .addPathPatterns("/cache/**").order(3);
+
         registry.addInterceptor(new LoginInterceptor())
                 .excludePathPatterns(
                         "/shop/**",
@@ -25,7 +41,11 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/blog/hot/**",
                         "/user/code",
                         "/user/login"
-                ).order(1);
+                ).order(2);
+
+        // 限流在刷新token之后执行，已登录用户可以按用户id限流；超过限制的请求不再进入登录校验
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, rateLimitProperties))
+                .addPathPatterns("/**").order(1);
 
         registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate))
                 .addPathPatterns("/**").order(0);
@@ -0,0 +1,76 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 限流的配置项，对应application.yaml中的hmdp.rate-limit
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否开启限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否从X-Forwarded-For中取客户端ip，只有部署在可信的反向代理之后才能开启，否则ip可以伪造
+     */
+    private boolean trustForwardedFor = false;
+
+    /**
+     * 清理本地空闲令牌桶的间隔，令牌已经补满的令牌桶与不存在等价
+     */
+    private Duration localCleanupInterval = Duration.ofSeconds(30);
+
+    /**
+     * 按资源名配置的限流规则
+     */
+    private Map<String, Rule> rules = new HashMap<>();
+
+    /**
+     * 一个资源的限流规则，每个维度单独一个令牌桶，没有配置的维度不限流，请求需要同时满足所有维度
+     */
+    @Data
+    public static class Rule {
+
+        /**
+         * 每个登录用户的限制，未登录的请求不受此限制
+         */
+        private Limit user;
+
+        /**
+         * 每个客户端ip的限制
+         */
+        private Limit ip;
+
+        /**
+         * 整个资源在所有节点上的总限制
+         */
+        private Limit global;
+    }
+
+    @Data
+    public static class Limit {
+
+        /**
+         * 令牌桶的容量，即允许的突发请求数
+         */
+        private long capacity;
+
+        /**
+         * 每秒生成的令牌数，即长期允许的平均速率
+         */
+        private double rate;
+    }
+}
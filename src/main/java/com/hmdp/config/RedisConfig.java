@@ -0,0 +1,70 @@
+package com.hmdp.config;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Redis相关配置
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Configuration
+public class RedisConfig {
+
+    @Resource
+    private RedisConnectionFactory redisConnectionFactory;
+
+    /**
+     * value为原始字节的RedisTemplate，用于读写由CacheCodec编码的缓存数据
+     * @return
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> byteRedisTemplate() {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    /**
+     * 发布订阅的监听容器，各组件在初始化时向容器注册自己关心的频道
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer() {
+        // 不随容器自动启动，由应用启动完成后再启动，避免redis不可用时阻塞整个应用启动
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public boolean isAutoStartup() {
+                return false;
+            }
+        };
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    /**
+     * 应用启动完成后启动监听容器
+     * 订阅失败时只记录日志，跨节点通知失效期间各节点的本地缓存仍会按TTL过期
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListenerContainer(ApplicationReadyEvent event) {
+        RedisMessageListenerContainer container =
+                event.getApplicationContext().getBean(RedisMessageListenerContainer.class);
+        try {
+            container.start();
+        } catch (Exception e) {
+            log.warn("redis发布订阅监听启动失败，跨节点通知暂不可用", e);
+        }
+    }
+}
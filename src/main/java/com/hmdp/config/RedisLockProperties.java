@@ -0,0 +1,65 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 分布式锁的配置项，对应application.yaml中的hmdp.lock
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.lock")
+public class RedisLockProperties {
+
+    /**
+     * 锁的租期，持有期间由看门狗每隔租期的1/3续期一次，节点宕机后锁最多在一个租期之后自动释放
+     */
+    private Duration leaseTime = Duration.ofSeconds(30);
+
+    /**
+     * 看门狗续期的线程数
+     */
+    private int watchdogThreads = 1;
+
+    /**
+     * 按用户加锁的配置
+     */
+    private UserLock userLock = new UserLock();
+
+    @Data
+    public static class UserLock {
+
+        /**
+         * 加锁方式
+         */
+        private UserLockMode mode = UserLockMode.DISTRIBUTED;
+
+        /**
+         * local模式下分段锁的个数，向上取整为2的幂
+         */
+        private int stripes = 1024;
+
+        /**
+         * 获取锁的最长等待时间，同一用户的请求依次执行，超时后提示稍后重试
+         */
+        private Duration wait = Duration.ofSeconds(1);
+    }
+
+    public enum UserLockMode {
+
+        /**
+         * 进程内的分段锁，只能在单节点部署时使用
+         */
+        LOCAL,
+
+        /**
+         * 基于redis的分布式锁
+         */
+        DISTRIBUTED
+    }
+}
@@ -0,0 +1,214 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 秒杀下单的配置项，对应application.yaml中的hmdp.seckill
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.seckill")
+public class SeckillProperties {
+
+    /**
+     * 下单模式
+     */
+    private Mode mode = Mode.REDIS;
+
+    /**
+     * 本地售罄标记的有效期，过期后下一个请求重新到redis确认库存
+     */
+    private Duration soldOutTtl = Duration.ofSeconds(5);
+
+    /**
+     * 秒杀数据在redis中的分片数，每个分片使用一个hash tag，集群模式下位于一个槽
+     * 每个分片有自己的订单消息队列和超时zset，修改后需要重新加载秒杀券
+     */
+    private int shards = 8;
+
+    /**
+     * 秒杀券库存分段数的上限，创建秒杀券时指定的分段数超过该值或分片数时按两者中较小的值分段
+     */
+    private int maxStockSegments = 8;
+
+    /**
+     * 分段库存模式下，用户所在分段耗尽后重新平均分配剩余库存的最小间隔
+     */
+    private Duration rebalanceInterval = Duration.ofMillis(100);
+
+    /**
+     * 订单消息队列的配置
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * 未支付订单超时取消的配置
+     */
+    private Timeout timeout = new Timeout();
+
+    /**
+     * 排队下单的配置
+     */
+    private WaitingRoom waitingRoom = new WaitingRoom();
+
+    public enum Mode {
+
+        /**
+         * 在redis中通过lua脚本判断秒杀资格并扣减库存，立即返回订单id，订单异步写入数据库
+         */
+        REDIS,
+
+        /**
+         * 每个请求直接查询并扣减数据库中的库存
+         */
+        DATABASE
+    }
+
+    @Data
+    public static class Stream {
+
+        /**
+         * 保存待创建订单的redis stream的前缀，每个分片一个stream
+         */
+        private String key = "stream.orders";
+
+        /**
+         * 消费者组，所有节点属于同一个组，每条订单只被一个消费者处理
+         */
+        private String group = "g1";
+
+        /**
+         * 本节点的消费者线程数，各个分片的stream平均分给这些线程
+         */
+        private int consumers = 2;
+
+        /**
+         * 每批最多写入数据库的订单数
+         */
+        private int batchSize = 100;
+
+        /**
+         * 读取到消息后凑满一批最多再等待的时间
+         */
+        private Duration linger = Duration.ofMillis(20);
+
+        /**
+         * 没有消息时阻塞等待的时间，需要小于redis客户端的命令超时时间
+         */
+        private Duration block = Duration.ofSeconds(2);
+
+        /**
+         * 消息投递之后超过该时间没有确认，认为消费者已经宕机，由其他消费者认领
+         */
+        private Duration pendingIdle = Duration.ofSeconds(30);
+
+        /**
+         * 检查未确认消息的间隔
+         */
+        private Duration recoveryInterval = Duration.ofSeconds(10);
+
+        /**
+         * 最多投递次数，超过后转入死信队列
+         */
+        private int maxDeliveries = 3;
+
+        /**
+         * 死信队列，保存无法解析或多次处理失败的消息，修复后可以重新写入订单消息队列
+         */
+        private String deadLetterKey = "stream.orders.dlq";
+
+        /**
+         * 关闭时等待正在处理的消息完成的最长时间
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Timeout {
+
+        /**
+         * 是否超时取消未支付的订单
+         */
+        private boolean enabled = true;
+
+        /**
+         * 保存订单超时时间的redis zset的前缀，每个分片一个zset，member为"订单id:秒杀券id:用户id"，score为超时时间
+         */
+        private String key = "seckill:order:timeout";
+
+        /**
+         * 支付期限，下单之后超过该时间未支付的订单自动取消
+         */
+        private Duration payWindow = Duration.ofMinutes(15);
+
+        /**
+         * 检查到期订单的间隔，订单最多在超时之后该时间内取消
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * 每次从redis认领的到期订单数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 认领之后的处理期限，节点在期限内没有处理完时由其他节点重新认领
+         */
+        private Duration lease = Duration.ofSeconds(30);
+
+        /**
+         * 到期时订单还没有写入数据库，推迟该时间后再检查
+         */
+        private Duration retryDelay = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class WaitingRoom {
+
+        /**
+         * 是否排队下单，开启后秒杀请求只领取排队凭证，由调度线程按固定速率放行，客户端轮询凭证获取结果
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每张秒杀券所有节点合计每秒放行的凭证数
+         */
+        private double admitRate = 200;
+
+        /**
+         * 放行速率之外允许的突发凭证数
+         */
+        private int admitBurst = 50;
+
+        /**
+         * 调度线程检查排队队列的间隔
+         */
+        private Duration dispatchInterval = Duration.ofMillis(50);
+
+        /**
+         * 本节点执行下单的线程数，也是本节点同时下单的请求数上限
+         */
+        private int workers = 8;
+
+        /**
+         * 每张秒杀券最多排队的凭证数，超过后直接拒绝
+         */
+        private int maxQueueLength = 100_000;
+
+        /**
+         * 凭证的有效期，过期后凭证和结果都被删除，同一用户可以重新排队
+         */
+        private Duration ticketTtl = Duration.ofMinutes(10);
+
+        /**
+         * 本地缓存的已完成凭证数，轮询已完成的凭证时不访问redis
+         */
+        private int resultCacheSize = 100_000;
+    }
+}
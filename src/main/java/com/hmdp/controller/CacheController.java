@@ -0,0 +1,136 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheMetrics;
+import com.hmdp.service.IShopService;
+import com.hmdp.utils.CacheRebuildExecutor;
+import com.hmdp.utils.CacheWarmUpProgress;
+import com.hmdp.utils.CacheWarmer;
+import com.hmdp.utils.RedisBloomFilter;
+import com.hmdp.utils.RedisConstants;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存管理相关接口
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheRebuildExecutor cacheRebuildExecutor;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private CacheWarmer cacheWarmer;
+
+    @Resource
+    private IShopService shopService;
+
+    /**
+     * 查询店铺布隆过滤器的状态及拦截次数
+     * @return
+     */
+    @GetMapping("/bloom/shop")
+    public Result queryShopBloomFilter() {
+        RedisBloomFilter bloomFilter = cacheClient.getBloomFilter(RedisConstants.CACHE_SHOP_KEY);
+        if (bloomFilter == null) {
+            return Result.fail("布隆过滤器未开启");
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("key", bloomFilter.getKey());
+        stats.put("ready", bloomFilter.isReady());
+        stats.put("numBits", bloomFilter.getNumBits());
+        stats.put("numHashFunctions", bloomFilter.getNumHashFunctions());
+        stats.put("checkCount", bloomFilter.getCheckCount());
+        stats.put("rejectCount", bloomFilter.getRejectCount());
+        return Result.ok(stats);
+    }
+
+    /**
+     * 查询缓存重建线程池的状态
+     * @return
+     */
+    @GetMapping("/rebuild")
+    public Result queryRebuildExecutor() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", cacheRebuildExecutor.getQueueDepth());
+        stats.put("activeCount", cacheRebuildExecutor.getActiveCount());
+        stats.put("submittedCount", cacheRebuildExecutor.getSubmittedCount());
+        stats.put("completedCount", cacheRebuildExecutor.getCompletedCount());
+        stats.put("failedCount", cacheRebuildExecutor.getFailedCount());
+        stats.put("rejectedCount", cacheRebuildExecutor.getRejectedCount());
+        stats.put("deduplicatedCount", cacheRebuildExecutor.getDeduplicatedCount());
+        stats.put("averageRebuildMillis", cacheRebuildExecutor.getAverageRebuildMillis());
+        stats.put("maxRebuildMillis", cacheRebuildExecutor.getMaxRebuildMillis());
+        return Result.ok(stats);
+    }
+
+    /**
+     * 异步预热全部店铺的缓存
+     * @return 本次预热的进度
+     */
+    @PostMapping("/warm-up/shop")
+    public Result warmUpShopCache() {
+        CacheWarmUpProgress progress = shopService.warmUpShopCache();
+        if (progress == null) {
+            return Result.fail("店铺缓存正在预热中");
+        }
+        return Result.ok(progress);
+    }
+
+    /**
+     * 查询店铺缓存最近一次预热的进度
+     * @return
+     */
+    @GetMapping("/warm-up/shop")
+    public Result queryShopWarmUpProgress() {
+        CacheWarmUpProgress progress = cacheWarmer.getProgress("shop");
+        if (progress == null) {
+            return Result.fail("店铺缓存尚未预热");
+        }
+        return Result.ok(progress);
+    }
+
+    /**
+     * 查询本节点当前的热点key，按访问次数从高到低排列
+     * @return
+     */
+    @GetMapping("/hot-keys")
+    public Result queryHotKeys() {
+        return Result.ok(cacheClient.getHotKeys());
+    }
+
+    /**
+     * 按key前缀和查询策略汇总缓存的命中率、过期数据返回次数及各项耗时
+     * @return
+     */
+    @GetMapping("/metrics")
+    public Result queryCacheMetrics() {
+        return Result.ok(cacheMetrics.summary());
+    }
+
+    /**
+     * 查询压缩的压缩比、压缩与解压的耗时
+     * @return
+     */
+    @GetMapping("/metrics/compression")
+    public Result queryCompressionMetrics() {
+        return Result.ok(cacheMetrics.compressionSummary());
+    }
+}
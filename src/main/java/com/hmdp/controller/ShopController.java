@@ -11,6 +11,9 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * <p>
  * 前端控制器
@@ -34,7 +37,11 @@ public class ShopController {
      */
     @GetMapping("/{id}")
     public Result queryShopById(@PathVariable("id") Long id) {
-        return shopService.queryShopById(id);
+        Shop shop = shopService.queryShopById(id);
+        if (shop == null) {
+            return Result.fail("店铺不存在");
+        }
+        return Result.ok(shop);
     }
 
     /**
@@ -44,10 +51,8 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        // 写入数据库，并加入布隆过滤器
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -73,12 +78,15 @@ public class ShopController {
             @RequestParam("typeId") Integer typeId,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
+        // 根据类型分页查询店铺id
         Page<Shop> page = shopService.query()
+                .select("id")
                 .eq("type_id", typeId)
                 .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
+        // 通过缓存批量查询店铺详情
+        List<Long> ids = page.getRecords().stream().map(Shop::getId).collect(Collectors.toList());
         // 返回数据
-        return Result.ok(page.getRecords());
+        return Result.ok(shopService.queryShopByIds(ids));
     }
 
     /**
@@ -27,6 +27,10 @@ public class ShopTypeController {
 
     @GetMapping("list")
     public Result queryTypeList() {
-        return typeService.queryTypeList();
+        List<ShopType> typeList = typeService.queryTypeList();
+        if (typeList.isEmpty()) {
+            return Result.fail("店铺类型不存在");
+        }
+        return Result.ok(typeList);
     }
 }
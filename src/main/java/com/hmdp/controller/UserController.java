@@ -2,6 +2,7 @@ package com.hmdp.controller;
 
 
 import cn.hutool.core.bean.BeanUtil;
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
@@ -37,6 +38,7 @@ public class UserController {
     /**
      * 发送手机验证码
      */
+    @RateLimit("code")
     @PostMapping("code")
     public Result sendCode(@RequestParam("phone") String phone) {
         return userService.sendCode(phone);
@@ -46,6 +48,7 @@ public class UserController {
      * 登录功能
      * @param loginForm 登录参数，包含手机号、验证码；或者手机号、密码
      */
+    @RateLimit("login")
     @PostMapping("/login")
     public Result login(@RequestBody LoginFormDTO loginForm){
         return userService.login(loginForm);
@@ -2,8 +2,11 @@ package com.hmdp.controller;
 
 
 import com.hmdp.dto.Result;
+import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.Voucher;
+import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.SeckillAdmission;
 import jakarta.annotation.Resource;
 import org.springframework.web.bind.annotation.*;
 
@@ -23,6 +26,12 @@ public class VoucherController {
     @Resource
     private IVoucherService voucherService;
 
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
     /**
      * 新增普通券
      * @param voucher 优惠券信息
@@ -30,7 +39,7 @@ public class VoucherController {
      */
     @PostMapping
     public Result addVoucher(@RequestBody Voucher voucher) {
-        voucherService.save(voucher);
+        voucherService.addVoucher(voucher);
         return Result.ok(voucher.getId());
     }
 
@@ -45,6 +54,29 @@ public class VoucherController {
         return Result.ok(voucher.getId());
     }
 
+    /**
+     * 修改秒杀券的起止时间
+     * @param seckillVoucher 秒杀券id与新的起止时间
+     * @return 无
+     */
+    @PutMapping("seckill")
+    public Result updateSeckillTime(@RequestBody SeckillVoucher seckillVoucher) {
+        if (!seckillVoucherService.updateSeckillTime(seckillVoucher)) {
+            return Result.fail("秒杀券不存在！");
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 查询秒杀券在redis中的剩余库存，分段库存模式下为各个分段之和
+     * @param voucherId 秒杀券id
+     * @return 剩余库存
+     */
+    @GetMapping("/seckill/stock/{id}")
+    public Result querySeckillStock(@PathVariable("id") Long voucherId) {
+        return Result.ok(seckillAdmission.remainingStock(voucherId));
+    }
+
     /**
      * 查询店铺的优惠券列表
      * @param shopId 店铺id
@@ -52,6 +84,6 @@ public class VoucherController {
      */
     @GetMapping("/list/{shopId}")
     public Result queryVoucherOfShop(@PathVariable("shopId") Long shopId) {
-       return voucherService.queryVoucherOfShop(shopId);
+       return Result.ok(voucherService.queryVoucherOfShop(shopId));
     }
 }
@@ -1,12 +1,18 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.annotation.RateLimit;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.SeckillTicket;
 import com.hmdp.service.impl.VoucherOrderServiceImpl;
+import com.hmdp.utils.SeckillWaitingRoom;
+import com.hmdp.utils.UserHolder;
 import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -24,8 +30,31 @@ public class VoucherOrderController {
     @Resource
     private VoucherOrderServiceImpl voucherOrderService;
 
+    @Resource
+    private SeckillWaitingRoom seckillWaitingRoom;
+
+    @RateLimit("seckill")
     @PostMapping("seckill/{id}")
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
+        // 开启排队下单时只领取排队凭证，由调度线程按固定速率下单
+        if (seckillWaitingRoom.isEnabled()) {
+            return seckillWaitingRoom.enqueue(voucherId, UserHolder.getUser().getId());
+        }
         return voucherOrderService.seckillVoucher(voucherId);
     }
-}
\ No newline at end of file
+
+    /**
+     * 轮询排队凭证，返回排队位置或下单结果
+     * @param ticketId
+     * @param voucherId 领取凭证时返回的秒杀券id
+     * @return
+     */
+    @GetMapping("ticket/{id}")
+    public Result queryTicket(@PathVariable("id") Long ticketId, @RequestParam("voucherId") Long voucherId) {
+        SeckillTicket ticket = seckillWaitingRoom.query(voucherId, ticketId, UserHolder.getUser().getId());
+        if (ticket == null) {
+            return Result.fail("排队凭证不存在或已过期！");
+        }
+        return Result.ok(ticket);
+    }
+}
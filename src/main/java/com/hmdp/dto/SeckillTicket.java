@@ -0,0 +1,65 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+/**
+ * 排队下单的凭证，客户端凭凭证id轮询下单结果
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+public class SeckillTicket {
+
+    private Long ticketId;
+
+    private Long voucherId;
+
+    private Status status;
+
+    /**
+     * 排队位置，从1开始，只在排队中时有值
+     */
+    private Long position;
+
+    /**
+     * 按放行速率估算的剩余等待时间，毫秒，只在排队中时有值，客户端可以据此决定下次轮询的时间
+     */
+    private Long waitMillis;
+
+    /**
+     * 下单成功时的订单id
+     */
+    private Long orderId;
+
+    /**
+     * 下单失败的原因
+     */
+    private String message;
+
+    public boolean isFinished() {
+        return status == Status.SUCCESS || status == Status.FAILED;
+    }
+
+    public enum Status {
+
+        /**
+         * 排队中
+         */
+        WAITING,
+
+        /**
+         * 已经放行，正在下单
+         */
+        PROCESSING,
+
+        /**
+         * 下单成功
+         */
+        SUCCESS,
+
+        /**
+         * 下单失败
+         */
+        FAILED
+    }
+}
@@ -0,0 +1,42 @@
+package com.hmdp.dto;
+
+import com.hmdp.entity.SeckillVoucher;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 秒杀券的元数据，缓存在本地和redis中，秒杀请求不再查询数据库
+ * 起止时间保存为毫秒时间戳，判断时只需要与System.currentTimeMillis()比较，不创建对象
+ * 库存随下单变化，不在这里缓存
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Data
+public class SeckillVoucherMeta {
+
+    private Long voucherId;
+
+    /**
+     * 生效时间，毫秒时间戳
+     */
+    private long beginMillis;
+
+    /**
+     * 失效时间，毫秒时间戳
+     */
+    private long endMillis;
+
+    public static SeckillVoucherMeta of(SeckillVoucher seckillVoucher) {
+        SeckillVoucherMeta meta = new SeckillVoucherMeta();
+        meta.setVoucherId(seckillVoucher.getVoucherId());
+        meta.setBeginMillis(toEpochMilli(seckillVoucher.getBeginTime()));
+        meta.setEndMillis(toEpochMilli(seckillVoucher.getEndTime()));
+        return meta;
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
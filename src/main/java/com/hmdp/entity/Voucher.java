@@ -78,6 +78,12 @@ public class Voucher implements Serializable {
     @TableField(exist = false)
     private Integer stock;
 
+    /**
+     * 秒杀库存的分段数，访问量极高的秒杀券指定大于1的值，库存分散到多个分片中
+     */
+    @TableField(exist = false)
+    private Integer stockSegments;
+
     /**
      * 生效时间
      */
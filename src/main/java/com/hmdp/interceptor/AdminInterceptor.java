@@ -0,0 +1,47 @@
+package com.hmdp.interceptor;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.config.AdminProperties;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.UserHolder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 管理接口的权限校验，在LoginInterceptor之后执行，只有配置的管理员用户可以调用
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class AdminInterceptor implements HandlerInterceptor {
+
+    /**
+     * 403响应的内容，所有请求共用
+     */
+    private static final byte[] FORBIDDEN = JSONUtil.toJsonStr(Result.fail("无权访问管理接口！"))
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final AdminProperties adminProperties;
+
+    public AdminInterceptor(AdminProperties adminProperties) {
+        this.adminProperties = adminProperties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        UserDTO user = UserHolder.getUser();
+        if (user != null && adminProperties.getUserIds().contains(user.getId())) {
+            return true;
+        }
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(FORBIDDEN);
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package com.hmdp.interceptor;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.annotation.RateLimit;
+import com.hmdp.config.RateLimitProperties;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.RateLimiter;
+import com.hmdp.utils.UserHolder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对标注了@RateLimit的控制器方法限流，超过限制时直接返回429，并通过Retry-After提示等待时间
+ * 在RefreshTokenInterceptor之后执行，已登录用户按用户id限流
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    /**
+     * 429响应的内容，所有请求共用
+     */
+    private static final byte[] TOO_MANY_REQUESTS = JSONUtil.toJsonStr(Result.fail("请求过于频繁，请稍后重试！"))
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 方法上的注解，没有注解的方法保存为空字符串，每个方法只查找一次
+     */
+    private final Map<Method, String> resources = new ConcurrentHashMap<>();
+
+    private final RateLimiter rateLimiter;
+
+    private final RateLimitProperties rateLimitProperties;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimitProperties rateLimitProperties) {
+        this.rateLimiter = rateLimiter;
+        this.rateLimitProperties = rateLimitProperties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 1. 只处理标注了@RateLimit的控制器方法
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        String resource = resources.computeIfAbsent(handlerMethod.getMethod(), m -> {
+            RateLimit rateLimit = handlerMethod.getMethodAnnotation(RateLimit.class);
+            return rateLimit == null ? "" : rateLimit.value();
+        });
+        if (resource.isEmpty()) {
+            return true;
+        }
+
+        // 2. 按当前用户、客户端ip判断
+        UserDTO user = UserHolder.getUser();
+        long wait = rateLimiter.tryAcquire(resource, user == null ? null : user.getId(), clientIp(request));
+        if (wait <= 0) {
+            return true;
+        }
+
+        // 3. 超过限制，直接返回429
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((wait + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(TOO_MANY_REQUESTS);
+        return false;
+    }
+
+    /**
+     * 客户端ip，部署在可信的反向代理之后时取X-Forwarded-For中的第一个地址
+     */
+    private String clientIp(HttpServletRequest request) {
+        if (rateLimitProperties.isTrustForwardedFor()) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.SeckillVoucherMeta;
 import com.hmdp.entity.SeckillVoucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,24 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface ISeckillVoucherService extends IService<SeckillVoucher> {
 
+    /**
+     * 查询秒杀券的元数据，经过本地缓存和redis缓存
+     * @param voucherId
+     * @return 秒杀券不存在时返回null
+     */
+    SeckillVoucherMeta queryMeta(Long voucherId);
+
+    /**
+     * 将秒杀券的元数据写入缓存，在事务中调用时推迟到事务提交之后执行
+     * @param seckillVoucher
+     */
+    void preheatMeta(SeckillVoucher seckillVoucher);
+
+    /**
+     * 修改秒杀券的起止时间，事务提交后删除元数据缓存，并更新redis中的秒杀时间
+     * 库存随下单变化，不能修改
+     * @param seckillVoucher
+     * @return 秒杀券不存在时返回false
+     */
+    boolean updateSeckillTime(SeckillVoucher seckillVoucher);
 }
@@ -2,8 +2,11 @@ package com.hmdp.service;
 
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheWarmUpProgress;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -17,9 +20,23 @@ public interface IShopService extends IService<Shop> {
     /**
      * 根据店铺id查询店铺
      * @param id
+     * @return 店铺不存在时返回null
+     */
+    Shop queryShopById(Long id);
+
+    /**
+     * 根据一批店铺id批量查询店铺
+     * @param ids
+     * @return 按ids的顺序排列的店铺，不存在的店铺不包含在结果中
+     */
+    List<Shop> queryShopByIds(List<Long> ids);
+
+    /**
+     * 新增店铺
+     * @param shop
      * @return
      */
-    Result queryShopById(Long id);
+    Result saveShop(Shop shop);
 
     /**
      * 更新店铺
@@ -27,4 +44,10 @@ public interface IShopService extends IService<Shop> {
      * @return
      */
     Result updateShop(Shop shop);
+
+    /**
+     * 异步预热全部店铺的缓存
+     * @return 本次预热的进度，已经有节点在预热时返回null
+     */
+    CacheWarmUpProgress warmUpShopCache();
 }
@@ -1,9 +1,10 @@
 package com.hmdp.service;
 
-import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,7 +17,7 @@ public interface IShopTypeService extends IService<ShopType> {
 
     /**
      * 查询店铺类型
-     * @return
+     * @return 按sort排序的店铺类型
      */
-    Result queryTypeList();
+    List<ShopType> queryTypeList();
 }
@@ -3,9 +3,13 @@ package com.hmdp.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import jakarta.servlet.http.HttpSession;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * <p>
  *  服务类
@@ -29,4 +33,11 @@ public interface IUserService extends IService<User> {
      * @return
      */
     Result login(LoginFormDTO loginForm);
+
+    /**
+     * 根据一批用户id批量查询用户的公开信息
+     * @param ids
+     * @return 用户id到用户信息的映射，不存在的用户不包含在结果中
+     */
+    Map<Long, UserDTO> queryUserByIds(Collection<Long> ids);
 }
@@ -4,6 +4,9 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>
  *  服务类
@@ -27,4 +30,61 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
      * @return
      */
     Result order(Long voucherId);
+
+    /**
+     * 将一批已经获得秒杀资格的订单在一个事务中写入数据库
+     * @param voucherOrders
+     * @return 不满足下单条件、没有写入的订单的id及拒绝原因
+     */
+    Map<Long, RejectReason> createVoucherOrders(List<VoucherOrder> voucherOrders);
+
+    /**
+     * 取消超时未支付的订单，并在同一个事务中归还数据库中的库存
+     * @param orderId
+     * @param voucherId
+     * @return
+     */
+    CancelResult cancelUnpaidOrder(Long orderId, Long voucherId);
+
+    /**
+     * 订单没有写入数据库的原因，决定如何撤销redis中的秒杀资格
+     */
+    enum RejectReason {
+
+        /**
+         * 用户已经持有该秒杀券的订单，只归还库存，用户仍然在已下单用户中
+         */
+        DUPLICATE,
+
+        /**
+         * 数据库中的库存不足，归还库存并移除下单用户
+         */
+        OUT_OF_STOCK
+    }
+
+    /**
+     * 取消订单的结果
+     */
+    enum CancelResult {
+
+        /**
+         * 取消成功，库存已经归还
+         */
+        CANCELLED,
+
+        /**
+         * 订单之前已经取消
+         */
+        ALREADY_CANCELLED,
+
+        /**
+         * 订单已经支付或处于其他不能取消的状态
+         */
+        NOT_CANCELLABLE,
+
+        /**
+         * 订单还没有写入数据库
+         */
+        NOT_FOUND
+    }
 }
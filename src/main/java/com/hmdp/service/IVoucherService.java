@@ -1,9 +1,10 @@
 package com.hmdp.service;
 
-import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -14,7 +15,18 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IVoucherService extends IService<Voucher> {
 
-    Result queryVoucherOfShop(Long shopId);
+    /**
+     * 查询店铺的优惠券列表
+     * @param shopId
+     * @return
+     */
+    List<Voucher> queryVoucherOfShop(Long shopId);
+
+    /**
+     * 新增普通券，事务提交后删除店铺的优惠券列表缓存
+     * @param voucher
+     */
+    void addVoucher(Voucher voucher);
 
     void addSeckillVoucher(Voucher voucher);
 }
@@ -1,10 +1,26 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.annotation.HmdpCacheEvict;
+import com.hmdp.annotation.HmdpCacheable;
+import com.hmdp.dto.SeckillVoucherMeta;
 import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.SeckillVoucherMapper;
+import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.SeckillAdmission;
+import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -17,4 +33,70 @@ import org.springframework.stereotype.Service;
 @Service
 public class SeckillVoucherServiceImpl extends ServiceImpl<SeckillVoucherMapper, SeckillVoucher> implements ISeckillVoucherService {
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    /**
+     * 直接使用mapper查询优惠券所属的店铺，VoucherServiceImpl依赖本类，不能反过来注入IVoucherService
+     */
+    @Resource
+    private VoucherMapper voucherMapper;
+
+    /**
+     * 元数据只在修改起止时间时变化，修改时删除缓存；未命中时加互斥锁，防止秒杀开始时大量请求同时查询数据库
+     * @param voucherId
+     * @return
+     */
+    @Override
+    @HmdpCacheable(keyPrefix = RedisConstants.CACHE_SECKILL_VOUCHER_KEY, key = "#voucherId",
+            strategy = CacheStrategy.MUTEX, ttl = RedisConstants.CACHE_SECKILL_VOUCHER_TTL, unit = TimeUnit.MINUTES)
+    public SeckillVoucherMeta queryMeta(Long voucherId) {
+        SeckillVoucher seckillVoucher = getById(voucherId);
+        return seckillVoucher == null ? null : SeckillVoucherMeta.of(seckillVoucher);
+    }
+
+    @Override
+    public void preheatMeta(SeckillVoucher seckillVoucher) {
+        SeckillVoucherMeta meta = SeckillVoucherMeta.of(seckillVoucher);
+        String key = RedisConstants.CACHE_SECKILL_VOUCHER_KEY + seckillVoucher.getVoucherId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cacheClient.set(key, meta, RedisConstants.CACHE_SECKILL_VOUCHER_TTL, TimeUnit.MINUTES);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheClient.set(key, meta, RedisConstants.CACHE_SECKILL_VOUCHER_TTL, TimeUnit.MINUTES);
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    @HmdpCacheEvict(keyPrefix = RedisConstants.CACHE_SECKILL_VOUCHER_KEY, key = "#seckillVoucher.voucherId")
+    public boolean updateSeckillTime(SeckillVoucher seckillVoucher) {
+        // 1. 只修改起止时间
+        boolean success = update().set("begin_time", seckillVoucher.getBeginTime())
+                .set("end_time", seckillVoucher.getEndTime())
+                .eq("voucher_id", seckillVoucher.getVoucherId()).update();
+        if (!success) {
+            return false;
+        }
+
+        // 2. 店铺的优惠券列表中也包含起止时间，事务提交后一并删除
+        Voucher voucher = voucherMapper.selectById(seckillVoucher.getVoucherId());
+        if (voucher != null) {
+            cacheInvalidator.invalidate(RedisConstants.CACHE_VOUCHER_LIST_KEY + voucher.getShopId());
+        }
+
+        // 3. 事务提交后更新redis中的起止时间，已有的库存不覆盖
+        seckillAdmission.reload(getById(seckillVoucher.getVoucherId()));
+        return true;
+    }
 }
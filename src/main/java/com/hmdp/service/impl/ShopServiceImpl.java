@@ -7,31 +7,47 @@ import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.hmdp.annotation.HmdpCacheEvict;
+import com.hmdp.annotation.HmdpCacheable;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.RedisData;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.config.CacheClientProperties;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheWarmUpProgress;
+import com.hmdp.utils.CacheWarmer;
+import com.hmdp.utils.RedisBloomFilter;
 import com.hmdp.utils.RedisConstants;
 import io.netty.handler.codec.json.JsonObjectDecoder;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.swing.plaf.TableHeaderUI;
 import javax.swing.text.html.Option;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -41,42 +57,162 @@ import java.util.concurrent.TimeUnit;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
+    /**
+     * 按主键分批查询店铺id时每批的条数
+     */
+    private static final int SHOP_ID_BATCH_SIZE = 1000;
+
     @Resource
     private CacheClient cacheClient;
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheClientProperties cacheClientProperties;
+
+    @Resource
+    private CacheWarmer cacheWarmer;
+
     /**
-     * 根据店铺id查询店铺
-     * @param id
+     * 为店铺缓存注册布隆过滤器
+     */
+    @PostConstruct
+    public void initBloomFilter() {
+        CacheClientProperties.Bloom bloom = cacheClientProperties.getBloom();
+        if (!bloom.isEnabled()) {
+            return;
+        }
+        cacheClient.registerBloomFilter(RedisConstants.CACHE_SHOP_KEY, new RedisBloomFilter(stringRedisTemplate,
+                RedisConstants.BLOOM_SHOP_KEY, bloom.getExpectedInsertions(), bloom.getFpp()));
+    }
+
+    /**
+     * 应用启动时以及每隔一段时间，根据tb_shop中的全部id重建布隆过滤器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${hmdp.cache.bloom.rebuild-interval:1h}",
+            fixedDelayString = "${hmdp.cache.bloom.rebuild-interval:1h}")
+    public void rebuildBloomFilter() {
+        if (!cacheClientProperties.getBloom().isEnabled()) {
+            return;
+        }
+        try {
+            cacheClient.rebuildBloomFilter(RedisConstants.CACHE_SHOP_KEY, this::queryAllShopIds);
+        } catch (Exception e) {
+            // 重建失败时过滤器保持原状态，未加载过的过滤器会放行所有请求
+            log.error("店铺布隆过滤器重建失败", e);
+        }
+    }
+
+    /**
+     * 应用启动时预热全部店铺的缓存，避免redis为空时逻辑过期查询将所有店铺判断为不存在
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpShopCacheOnStartup() {
+        if (!cacheClientProperties.getWarmUp().isOnStartup()) {
+            return;
+        }
+        try {
+            if (warmUpShopCache() == null) {
+                log.info("其他节点正在预热店铺缓存，跳过本次预热");
+            }
+        } catch (Exception e) {
+            // 预热失败不影响启动，未预热的店铺在查询时加载
+            log.error("店铺缓存预热失败", e);
+        }
+    }
+
+    /**
+     * 异步预热全部店铺的缓存，按主键分批读取tb_shop，并行编码后通过pipeline批量写入redis
+     * @return 本次预热的进度，已经有节点在预热时返回null
+     */
+    @Override
+    public CacheWarmUpProgress warmUpShopCache() {
+        return cacheWarmer.warmUp("shop", RedisConstants.CACHE_SHOP_KEY,
+                (lastId, batchSize) -> query().gt("id", lastId).orderByAsc("id").last("limit " + batchSize).list(),
+                Shop::getId,
+                RedisConstants.CACHE_SHOP_TTL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 按主键分批查询全部店铺id，避免一次性加载整张表
      * @return
      */
+    private List<Long> queryAllShopIds() {
+        List<Long> ids = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            List<Shop> shops = query().select("id").gt("id", lastId).orderByAsc("id")
+                    .last("limit " + SHOP_ID_BATCH_SIZE).list();
+            for (Shop shop : shops) {
+                ids.add(shop.getId());
+            }
+            if (shops.size() < SHOP_ID_BATCH_SIZE) {
+                return ids;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 根据店铺id查询店铺，按hmdp.cache.strategies中为店铺配置的策略经过缓存
+     * @param id
+     * @return 店铺不存在时返回null
+     */
     @Override
-    public Result queryShopById(Long id) {
-//        // 使用互斥锁解决缓存击穿和缓存穿透问题
-//        Shop shop = cacheClient.queryShopByMutex(
-//                RedisConstants.CACHE_SHOP_KEY,
-//                RedisConstants.LOCK_SHOP_KEY, id,
-//                Shop.class, this::getById,
-//                RedisConstants.CACHE_SHOP_TTL, TimeUnit.SECONDS);
-//
-//        if (shop == null) return Result.fail("店铺不存在");
-//        return Result.ok(shop);
+    @HmdpCacheable(keyPrefix = RedisConstants.CACHE_SHOP_KEY, key = "#id",
+            lockPrefix = RedisConstants.LOCK_SHOP_KEY, ttl = RedisConstants.CACHE_SHOP_TTL)
+    public Shop queryShopById(Long id) {
+        return getById(id);
+    }
 
-        Shop shop = cacheClient.queryShopByLogicalExpire(
-        RedisConstants.CACHE_SHOP_KEY,
-        RedisConstants.LOCK_SHOP_KEY, id,
-        Shop.class, this::getById,
-        RedisConstants.CACHE_SHOP_TTL, TimeUnit.SECONDS);
 
-        if (shop == null) return Result.fail("店铺不存在");
-        return Result.ok(shop);
+    /**
+     * 根据一批店铺id批量查询店铺
+     * 一次MGET查询缓存，未命中的店铺通过一次数据库查询加载
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<Shop> queryShopByIds(List<Long> ids) {
+        Map<Long, Shop> shops = cacheClient.getAllWithLogicalExpire(
+                RedisConstants.CACHE_SHOP_KEY,
+                RedisConstants.LOCK_SHOP_KEY, ids,
+                Shop.class, this::listShopMapByIds,
+                RedisConstants.CACHE_SHOP_TTL, TimeUnit.SECONDS);
+        return new ArrayList<>(shops.values());
+    }
+
+    /**
+     * 根据一批店铺id查询数据库
+     * @param ids
+     * @return
+     */
+    private Map<Long, Shop> listShopMapByIds(Collection<Long> ids) {
+        return listByIds(ids).stream().collect(Collectors.toMap(Shop::getId, Function.identity()));
     }
 
+    /**
+     * 新增店铺
+     * @param shop
+     * @return
+     */
+    @Override
+    public Result saveShop(Shop shop) {
+        // 1. 写入数据库
+        save(shop);
+
+        // 2. 将店铺id加入布隆过滤器，并通知其他节点
+        cacheClient.addToBloomFilter(RedisConstants.CACHE_SHOP_KEY, shop.getId());
+
+        // 3. 返回店铺id
+        return Result.ok(shop.getId());
+    }
 
     /**
      * 更新店铺
@@ -85,6 +221,7 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
      */
     @Override
     @Transactional
+    @HmdpCacheEvict(keyPrefix = RedisConstants.CACHE_SHOP_KEY, key = "#shop.id")
     public Result updateShop(Shop shop) {
         // 0. 判断shop的id是否为空
         if (shop.getId() == null) {
@@ -94,11 +231,7 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         // 1. 更新数据库中的shop数据
         updateById(shop);
 
-        // 2. 删除redis中的shop数据
-        String id = String.valueOf(shop.getId());
-        stringRedisTemplate.delete(RedisConstants.CACHE_SHOP_KEY + id);
-
-        // 3. 返回ok
+        // 2. 返回ok，事务提交后由@HmdpCacheEvict删除redis中的shop数据，并通知所有节点删除本地缓存
         return Result.ok();
     }
 
@@ -112,13 +245,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         Shop shop = getById(id);
         String shopKey = RedisConstants.CACHE_SHOP_KEY + id;
 
-        // 2. 将商品数据与有效期包装成RedisData
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
-
-        // 3. 将RedisData写入到Redis中
-        stringRedisTemplate.opsForValue().set(shopKey, JSONUtil.toJsonStr(redisData));
+        // 2. 将商铺数据与逻辑过期时间一起写入到Redis中
+        cacheClient.setWithLogicalExpire(shopKey, shop, expireSeconds, TimeUnit.SECONDS);
     }
 //    /**
 //     * 通过逻辑过期策略解决缓存击穿问题
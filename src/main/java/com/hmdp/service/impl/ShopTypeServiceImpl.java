@@ -1,18 +1,14 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.json.JSONUtil;
-import com.hmdp.dto.Result;
-import com.hmdp.entity.Shop;
+import com.hmdp.annotation.HmdpCacheable;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheStrategy;
 import com.hmdp.utils.RedisConstants;
-import jakarta.annotation.Resource;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -27,52 +23,14 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
-    @Resource
-    private StringRedisTemplate stringRedisTemplate;
     /**
-     * 查询店铺类型
+     * 查询店铺类型，经过缓存，有效期增加随机抖动
      * @return
      */
     @Override
-    public Result queryTypeList() {
-        // 1. 查询redis中是否存在店铺类型
-        List<String> list = stringRedisTemplate.opsForList()
-                .range(RedisConstants.CACHE_SHOP_TYPE_KEY, 0, -1);
-
-        // 2. 如果存在，直接返回店铺类型
-        if (!list.isEmpty()) {
-            List<ShopType> result = new ArrayList<>();
-            // 将店铺类型从List<String>转换成List<ShopType>
-            for (String shopTypeString : list) {
-                ShopType shopType = JSONUtil.toBean(shopTypeString, ShopType.class);
-                result.add(shopType);
-            }
-
-            // 返回店铺类型数据
-            return Result.ok(result);
-        }
-
-        // 3. 如果不存在，查找数据库中是否存在店铺类型
-        List<ShopType> shopTypeList = query().orderByAsc("sort").list();
-
-        // 4. 如果不存在，返回"店铺类型不存在!"
-        if (shopTypeList.isEmpty()) {
-            return Result.fail("店铺类型不存在");
-        }
-
-        // 5. 如果存在，将店铺类型存储至redis中
-        // 将shopTypeList从List<ShopType>转换成List<String>
-        List<String> shopTypeStringList = new ArrayList<>();
-        for (ShopType shopType : shopTypeList) {
-            String shopTypeString = JSONUtil.toJsonStr(shopType);
-            shopTypeStringList.add(shopTypeString);
-        }
-        // 将店铺类型存储至redis的过程中，设置有效期
-        stringRedisTemplate.opsForList().leftPushAll(RedisConstants.CACHE_SHOP_TYPE_KEY, shopTypeStringList);
-        stringRedisTemplate.expire(RedisConstants.CACHE_SHOP_TYPE_KEY,
-                RedisConstants.CACHE_SHOP_TYPE_TTL, TimeUnit.HOURS);
-
-        // 6. 返回店铺类型
-        return Result.ok(shopTypeList);
+    @HmdpCacheable(keyPrefix = RedisConstants.CACHE_SHOP_TYPE_KEY, strategy = CacheStrategy.THROUGH,
+            ttl = RedisConstants.CACHE_SHOP_TYPE_TTL, unit = TimeUnit.HOURS)
+    public List<ShopType> queryTypeList() {
+        return query().orderByAsc("sort").list();
     }
 }
@@ -10,6 +10,7 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.RedisConstants;
 import com.hmdp.utils.RegexUtils;
 import jakarta.annotation.Resource;
@@ -21,10 +22,12 @@ import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -40,6 +43,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
     /**
      * 发送手机验证码
      * @param phone
@@ -131,6 +137,20 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(token);
     }
 
+    /**
+     * 根据一批用户id批量查询用户的公开信息
+     * 只缓存UserDTO，避免将密码等敏感信息写入redis
+     * @param ids
+     * @return
+     */
+    @Override
+    public Map<Long, UserDTO> queryUserByIds(Collection<Long> ids) {
+        return cacheClient.getAll(RedisConstants.CACHE_USER_KEY, ids, UserDTO.class,
+                userIds -> listByIds(userIds).stream()
+                        .collect(Collectors.toMap(User::getId, user -> BeanUtil.copyProperties(user, UserDTO.class))),
+                RedisConstants.CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
     /**
      * 创建用户信息
      * @param phone
@@ -1,6 +1,9 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.config.RedisLockProperties;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.SeckillVoucherMeta;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
@@ -8,13 +11,25 @@ import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillAdmission;
+import com.hmdp.utils.SoldOutRegistry;
+import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import com.hmdp.utils.UserLocks;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -24,6 +39,7 @@ import java.time.LocalDateTime;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
@@ -33,6 +49,21 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private RedisIdWorker redisIdWorker;
 
+    @Resource
+    private UserLocks userLocks;
+
+    @Resource
+    private RedisLockProperties redisLockProperties;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+
     /**
      * 秒杀下单
      * @param voucherId
@@ -40,37 +71,225 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
      */
     @Override
     public Result seckillVoucher(Long voucherId) {
-        // 1. 查询秒杀券信息
-        SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+        // 秒杀券已经售罄，在本地直接拒绝，不访问redis和数据库
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            return Result.fail("秒杀券库存不足！");
+        }
+        if (seckillProperties.getMode() == SeckillProperties.Mode.REDIS) {
+            return seckillInRedis(voucherId);
+        }
+        return seckillInDatabase(voucherId);
+    }
+
+    /**
+     * 在redis中判断秒杀资格并扣减库存，立即返回订单id，订单由OrderStreamConsumer异步写入数据库
+     * @param voucherId
+     * @return
+     */
+    private Result seckillInRedis(Long voucherId) {
+        // 1. 执行lua脚本，原子地校验时间、库存、一人一单，扣减库存并写入订单消息队列
+        Long userId = UserHolder.getUser().getId();
+        long orderId = redisIdWorker.increment("order:");
+        SeckillAdmission.AdmissionResult result = seckillAdmission.admit(voucherId, userId, orderId);
+
+        // 2. 秒杀券还没有加载到redis，从数据库加载之后重新判断
+        if (result == SeckillAdmission.AdmissionResult.NOT_LOADED) {
+            SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
+            if (seckillVoucher == null) {
+                return Result.fail("秒杀券不存在！");
+            }
+            seckillAdmission.loadIfAbsent(seckillVoucher);
+            result = seckillAdmission.admit(voucherId, userId, orderId);
+        }
+
+        // 3. 没有秒杀资格
+        switch (result) {
+            case SUCCESS:
+                break;
+            case NOT_STARTED:
+                return Result.fail("秒杀未开始！");
+            case ENDED:
+                return Result.fail("秒杀已结束！");
+            case SOLD_OUT:
+                soldOutRegistry.markSoldOut(voucherId);
+                return Result.fail("秒杀券库存不足！");
+            case DUPLICATE:
+                return Result.fail("您已经购买过优惠券！");
+            default:
+                return Result.fail("秒杀券不存在！");
+        }
+
+        // 4. 有秒杀资格，订单已经写入消息队列，返回订单id
+        return Result.ok(orderId);
+    }
+
+    /**
+     * 每个请求扣减数据库中的库存，秒杀券的起止时间从元数据缓存中读取
+     * @param voucherId
+     * @return
+     */
+    private Result seckillInDatabase(Long voucherId) {
+        // 1. 查询秒杀券的元数据，稳定状态下命中本地缓存，不访问数据库
+        SeckillVoucherMeta meta = seckillVoucherService.queryMeta(voucherId);
+        if (meta == null) {
+            return Result.fail("秒杀券不存在！");
+        }
 
         // 2. 如果当前还没进入秒杀时刻
-        LocalDateTime beginTime = seckillVoucher.getBeginTime();
-        if (beginTime.isAfter(LocalDateTime.now())) {
+        long now = System.currentTimeMillis();
+        if (now < meta.getBeginMillis()) {
             return Result.fail("秒杀未开始！");
         }
 
         // 3. 如果当前秒杀时刻已经结束
-        LocalDateTime endTime = seckillVoucher.getEndTime();
-        if (endTime.isBefore(LocalDateTime.now())) {
+        if (now > meta.getEndMillis()) {
             return Result.fail("秒杀已结束！");
         }
 
-        // 4. 如果当前库存不够
-        Integer stock = seckillVoucher.getStock();
-        if (stock < 1) {
-            return Result.fail("秒杀券库存不足！");
-        }
+        // 4. 库存不再预先查询：售罄后的请求已经被本地售罄标记拒绝，其余的由扣减库存时的乐观锁判断
 
         // 5. 判断当前用户是否已经购买过此类优惠券
         // 高并发场景下，可能有同一用户的多个线程同时判断count > 0，同时执行后面的下单程序
-        // 为了防止同一用户多个线程同时订单，对当前用户的下单程序加锁
+        // 为了防止同一用户多个线程同时订单，对当前用户的下单程序加锁，同一用户的请求依次执行
+        // 单节点部署时使用进程内的分段锁，集群部署时使用分布式锁
         Long userId = UserHolder.getUser().getId();
-        synchronized (userId.toString().intern()) {
+        if (!userLocks.tryLock(userId, redisLockProperties.getUserLock().getWait().toMillis(), TimeUnit.MILLISECONDS)) {
+            // 同一用户的另一个请求长时间没有完成
+            return Result.fail("下单人数过多，请稍后重试！");
+        }
+        try {
             // 方法的原子性是靠代理对象实现的
             // 需要获取代理对象，使用代理对象调用方法
             IVoucherOrderService proxy = (IVoucherOrderService) AopContext.currentProxy();
             return proxy.order(voucherId);
+        } finally {
+            userLocks.unlock(userId);
+        }
+    }
+
+    /**
+     * 将一批已经获得秒杀资格的订单在一个事务中写入数据库，整批成功或整批回滚
+     * 1. 一次查询找出已经存在的订单，订单id相同说明消息被重复投递，跳过；用户已经购买过的拒绝
+     * 2. 每张秒杀券只执行一次stock = stock - k，库存不足时锁定库存行，按剩余库存依次接受订单
+     * 3. 一条INSERT语句写入所有订单
+     * redis中已经保证了一人一单和库存充足，这里再次校验，防止redis与数据库不一致时超卖或重复下单
+     * @param voucherOrders
+     * @return 不满足下单条件、没有写入的订单的id及拒绝原因
+     */
+    @Override
+    @Transactional
+    public Map<Long, RejectReason> createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        Map<Long, RejectReason> rejected = new HashMap<>();
+        if (voucherOrders.isEmpty()) {
+            return rejected;
+        }
+
+        // 1. 查询这批订单涉及的用户已经下过的订单
+        Set<Long> voucherIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (VoucherOrder voucherOrder : voucherOrders) {
+            voucherIds.add(voucherOrder.getVoucherId());
+            userIds.add(voucherOrder.getUserId());
+        }
+        Set<Long> handledIds = new HashSet<>();
+        Set<String> purchased = new HashSet<>();
+        for (VoucherOrder existing : query().select("id", "user_id", "voucher_id", "status")
+                .in("voucher_id", voucherIds).in("user_id", userIds).list()) {
+            handledIds.add(existing.getId());
+            // 超时取消的订单不占用购买资格
+            if (existing.getStatus() != SystemConstants.ORDER_STATUS_CANCELLED) {
+                purchased.add(existing.getUserId() + ":" + existing.getVoucherId());
+            }
+        }
+
+        // 2. 跳过已经存在的订单，拒绝重复购买的订单，其余按秒杀券分组
+        // 按秒杀券id的顺序扣减库存，多个节点同时写入时不会互相死锁
+        Map<Long, List<VoucherOrder>> byVoucher = new TreeMap<>();
+        for (VoucherOrder voucherOrder : voucherOrders) {
+            if (!handledIds.add(voucherOrder.getId())) {
+                continue;
+            }
+            if (!purchased.add(voucherOrder.getUserId() + ":" + voucherOrder.getVoucherId())) {
+                log.warn("用户{}已经购买过优惠券{}", voucherOrder.getUserId(), voucherOrder.getVoucherId());
+                rejected.put(voucherOrder.getId(), RejectReason.DUPLICATE);
+                continue;
+            }
+            byVoucher.computeIfAbsent(voucherOrder.getVoucherId(), k -> new ArrayList<>()).add(voucherOrder);
+        }
+
+        // 3. 每张秒杀券扣减一次库存，库存不足的订单拒绝
+        List<VoucherOrder> accepted = new ArrayList<>();
+        for (Map.Entry<Long, List<VoucherOrder>> entry : byVoucher.entrySet()) {
+            List<VoucherOrder> orders = entry.getValue();
+            int granted = decreaseStock(entry.getKey(), orders.size());
+            accepted.addAll(orders.subList(0, granted));
+            if (granted < orders.size()) {
+                log.warn("优惠券{}数据库中的库存不足，{}个订单没有写入", entry.getKey(), orders.size() - granted);
+                for (VoucherOrder voucherOrder : orders.subList(granted, orders.size())) {
+                    rejected.put(voucherOrder.getId(), RejectReason.OUT_OF_STOCK);
+                }
+            }
+        }
+
+        // 4. 一条INSERT写入所有订单，并发重放同一订单时主键冲突，整批回滚
+        if (!accepted.isEmpty()) {
+            getBaseMapper().insertBatch(accepted);
+        }
+        return rejected;
+    }
+
+    /**
+     * 扣减秒杀券的库存
+     * @param voucherId
+     * @param count 需要扣减的数量
+     * @return 实际扣减的数量
+     */
+    private int decreaseStock(Long voucherId, int count) {
+        // 1. 库存充足时一条UPDATE扣减全部
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock - " + count).eq("voucher_id", voucherId)
+                .ge("stock", count).update();
+        if (success) {
+            return count;
+        }
+
+        // 2. 库存不足时锁定库存行，扣减剩余的全部库存
+        SeckillVoucher seckillVoucher = seckillVoucherService.query()
+                .eq("voucher_id", voucherId).last("FOR UPDATE").one();
+        int granted = seckillVoucher == null ? 0 : Math.max(0, Math.min(seckillVoucher.getStock(), count));
+        if (granted > 0) {
+            seckillVoucherService.update()
+                    .setSql("stock = stock - " + granted).eq("voucher_id", voucherId).update();
+        }
+        return granted;
+    }
+
+    /**
+     * 只有未支付的订单可以取消，状态判断与修改在一条UPDATE中完成，重复取消不会多归还库存
+     * @param orderId
+     * @param voucherId
+     * @return
+     */
+    @Override
+    @Transactional
+    public CancelResult cancelUnpaidOrder(Long orderId, Long voucherId) {
+        // 1. 未支付的订单改为已取消
+        boolean cancelled = update().set("status", SystemConstants.ORDER_STATUS_CANCELLED)
+                .eq("id", orderId).eq("status", SystemConstants.ORDER_STATUS_UNPAID).update();
+
+        // 2. 取消成功，归还数据库中的库存
+        if (cancelled) {
+            seckillVoucherService.update().setSql("stock = stock + 1").eq("voucher_id", voucherId).update();
+            return CancelResult.CANCELLED;
+        }
+
+        // 3. 没有取消，查询订单当前的状态
+        VoucherOrder voucherOrder = query().select("status").eq("id", orderId).one();
+        if (voucherOrder == null) {
+            return CancelResult.NOT_FOUND;
         }
+        return voucherOrder.getStatus() == SystemConstants.ORDER_STATUS_CANCELLED
+                ? CancelResult.ALREADY_CANCELLED : CancelResult.NOT_CANCELLABLE;
     }
 
     /**
@@ -84,7 +303,7 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         // 1. 判断当前用户是否已经购买过此类优惠券
         Long userId = UserHolder.getUser().getId();
         int count = Math.toIntExact(query().eq("user_id", userId)
-                .eq("voucher_id", voucherId).count());
+                .eq("voucher_id", voucherId).ne("status", SystemConstants.ORDER_STATUS_CANCELLED).count());
 
         // 2. 如果当前用户已经购买过此类优惠券
         if (count > 0) {
@@ -100,6 +319,7 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 
         // 4. 如果更新失败，返回错误信息
         if (!success) {
+            soldOutRegistry.markSoldOut(voucherId);
             return Result.fail("库存不足！");
         }
 
@@ -111,8 +331,9 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         voucherOrder.setVoucherId(voucherId);
         voucherOrder.setUserId(UserHolder.getUser().getId());
 
-        // 7. 插入订单至数据库中
+        // 7. 插入订单至数据库中，事务提交后开始计算支付期限
         save(voucherOrder);
+        seckillAdmission.scheduleTimeout(voucherOrder.getId(), voucherId, userId);
 
         // 8. 下单成功，返回订单id
         return Result.ok(voucherOrder.getId());
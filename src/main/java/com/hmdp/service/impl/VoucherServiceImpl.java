@@ -1,12 +1,16 @@
 package com.hmdp.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.dto.Result;
+import com.hmdp.annotation.HmdpCacheEvict;
+import com.hmdp.annotation.HmdpCacheable;
 import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.CacheStrategy;
+import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.SeckillAdmission;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,16 +31,32 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private ISeckillVoucherService seckillVoucherService;
 
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    /**
+     * 查询店铺的优惠券列表，经过缓存，其中的秒杀库存只用于展示，短暂的不一致可以接受
+     * @param shopId
+     * @return
+     */
     @Override
-    public Result queryVoucherOfShop(Long shopId) {
+    @HmdpCacheable(keyPrefix = RedisConstants.CACHE_VOUCHER_LIST_KEY, key = "#shopId",
+            strategy = CacheStrategy.THROUGH, ttl = RedisConstants.CACHE_VOUCHER_LIST_TTL)
+    public List<Voucher> queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
-        // 返回结果
-        return Result.ok(vouchers);
+        return getBaseMapper().queryVoucherOfShop(shopId);
     }
 
     @Override
     @Transactional
+    @HmdpCacheEvict(keyPrefix = RedisConstants.CACHE_VOUCHER_LIST_KEY, key = "#voucher.shopId")
+    public void addVoucher(Voucher voucher) {
+        save(voucher);
+    }
+
+    @Override
+    @Transactional
+    @HmdpCacheEvict(keyPrefix = RedisConstants.CACHE_VOUCHER_LIST_KEY, key = "#voucher.shopId")
     public void addSeckillVoucher(Voucher voucher) {
         // 保存优惠券
         save(voucher);
@@ -50,5 +70,13 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setEndTime(voucher.getEndTime());
 
         seckillVoucherService.save(seckillVoucher);
+
+        // 事务提交后将库存和起止时间加载到redis，秒杀请求不再访问数据库
+        // 指定了分段数时库存分散到多个分段中
+        int stockSegments = voucher.getStockSegments() == null ? 1 : voucher.getStockSegments();
+        seckillAdmission.preload(seckillVoucher, stockSegments);
+
+        // 事务提交后预热秒杀券的元数据缓存，秒杀开始时的请求不再查询数据库
+        seckillVoucherService.preheatMeta(seckillVoucher);
     }
 }
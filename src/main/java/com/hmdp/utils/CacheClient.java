@@ -1,25 +1,45 @@
 package com.hmdp.utils;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.cache.impl.TimedCache;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.lang.func.Func;
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.hmdp.config.CacheClientProperties;
+import com.hmdp.utils.codec.BinaryCacheCodec;
+import com.hmdp.utils.codec.CacheCodec;
+import com.hmdp.utils.codec.CacheCodecType;
+import com.hmdp.utils.codec.CacheCompressor;
+import com.hmdp.utils.codec.CacheData;
+import com.hmdp.utils.codec.JsonCacheCodec;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author lr1descent
@@ -31,7 +51,208 @@ public class CacheClient {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    /**
+     * 缓存数据以二进制形式读写，具体格式由编解码器决定
+     */
+    @Resource
+    private RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private CacheClientProperties cacheClientProperties;
+
+    @Resource
+    private CacheRebuildExecutor cacheRebuildExecutor;
+
+    @Resource
+    private TtlPolicy ttlPolicy;
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @Resource
+    private RedisLockService redisLockService;
+
+    private final JsonCacheCodec jsonCodec = new JsonCacheCodec();
+
+    private final BinaryCacheCodec binaryCodec = new BinaryCacheCodec();
+
+    /**
+     * 压缩较大的数据，关闭压缩时仍然用于解压已经写入的压缩数据
+     */
+    private CacheCompressor compressor;
+
+    /**
+     * 本地一级缓存，位于redis之前，key为redis中的完整key，value为反序列化后的对象
+     * 每个条目单独设置过期时间，保证不会比redis中的数据活得更久
+     * 注意：本地缓存中的对象被多个线程共享，调用方不应修改返回的对象
+     */
+    private LRUCache<String, Object> localCache;
+
+    /**
+     * 热点key探测，未开启时为null
+     */
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 热点key的本地副本，不参与LRU淘汰，条目在较短的有效期后失效
+     */
+    private TimedCache<String, Object> hotCache;
+
+    /**
+     * 防止缓存穿透写入的空值
+     */
+    private static final byte[] NULL_VALUE = new byte[0];
+
+    /**
+     * 缓存失效消息中多个key之间的分隔符
+     */
+    private static final String INVALIDATE_SEPARATOR = "\n";
+
+    /**
+     * 各key前缀对应的布隆过滤器，未注册过滤器的前缀不做拦截
+     */
+    private final Map<String, RedisBloomFilter> bloomFilters = new ConcurrentHashMap<>();
+
+    /**
+     * 通过registerPrefix为key前缀注册的缓存策略
+     */
+    private final Map<String, CacheStrategy> prefixStrategies = new ConcurrentHashMap<>();
+
+    /**
+     * 通过registerPrefix为key前缀注册的写入格式
+     */
+    private final Map<String, CacheCodecType> prefixCodecs = new ConcurrentHashMap<>();
+
+    /**
+     * 合并同一节点内对同一个key的并发重建
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 等待其他节点重建缓存的通知，key为redis中的完整key
+     */
+    private final Map<String, CompletableFuture<Void>> rebuildWaiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        CacheClientProperties.Compression compression = cacheClientProperties.getCompression();
+        compressor = new CacheCompressor(compression.getThreshold(), compression.getLevel());
+
+        CacheClientProperties.Local local = cacheClientProperties.getLocal();
+        localCache = CacheUtil.newLRUCache(local.getMaximumSize(), local.getTtl().toMillis());
+
+        CacheClientProperties.HotKey hotKey = cacheClientProperties.getHotKey();
+        hotCache = CacheUtil.newTimedCache(hotKey.getTtl().toMillis());
+        // 定时清理过期的副本，热点key变化后旧副本不会一直占用内存
+        hotCache.schedulePrune(hotKey.getTtl().toMillis());
+        if (hotKey.isEnabled()) {
+            hotKeyDetector = new HotKeyDetector(hotKey.getWindow().toMillis(), hotKey.getSlots(), hotKey.getWidth(),
+                    hotKey.getSampleRate(), hotKey.getThreshold(), hotKey.getCapacity());
+        }
+
+        // 订阅缓存失效频道，其他节点删除缓存时，同步删除本节点的本地缓存，一条消息中的多个key以换行分隔
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> {
+                    for (String key : new String(message.getBody(), StandardCharsets.UTF_8).split(INVALIDATE_SEPARATOR)) {
+                        removeLocal(key);
+                    }
+                },
+                new ChannelTopic(RedisConstants.CACHE_INVALIDATE_CHANNEL));
+
+        // 订阅布隆过滤器同步频道，消息格式为"过滤器key#元素"（新增元素）或"过滤器key"（重新加载）
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onBloomFilterMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisConstants.BLOOM_SYNC_CHANNEL));
+
+        // 订阅缓存重建完成频道，唤醒本节点等待该key的线程
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> {
+                    CompletableFuture<Void> rebuilt =
+                            rebuildWaiters.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+                    if (rebuilt != null) {
+                        rebuilt.complete(null);
+                    }
+                },
+                new ChannelTopic(RedisConstants.CACHE_REBUILT_CHANNEL));
+    }
+
+    /**
+     * 为某个key前缀注册布隆过滤器，查询该前缀的数据时先经过布隆过滤器判断
+     * @param keyPrefix
+     * @param bloomFilter
+     */
+    public void registerBloomFilter(String keyPrefix, RedisBloomFilter bloomFilter) {
+        bloomFilters.put(keyPrefix, bloomFilter);
+    }
+
+    public RedisBloomFilter getBloomFilter(String keyPrefix) {
+        return bloomFilters.get(keyPrefix);
+    }
+
+    /**
+     * 向布隆过滤器中添加元素，并通知其他节点同步本地镜像
+     * @param keyPrefix
+     * @param id
+     */
+    public <ID> void addToBloomFilter(String keyPrefix, ID id) {
+        RedisBloomFilter bloomFilter = bloomFilters.get(keyPrefix);
+        if (bloomFilter == null) {
+            return;
+        }
+        bloomFilter.add(id);
+        stringRedisTemplate.convertAndSend(RedisConstants.BLOOM_SYNC_CHANNEL, bloomFilter.getKey() + "#" + id);
+    }
+
+    /**
+     * 重建布隆过滤器
+     * 多个节点同时重建时，只有获取到锁的节点查询数据库，其他节点直接从redis加载重建结果
+     * @param keyPrefix
+     * @param idsLoader 查询全量id
+     */
+    public void rebuildBloomFilter(String keyPrefix, Supplier<Iterable<?>> idsLoader) {
+        RedisBloomFilter bloomFilter = bloomFilters.get(keyPrefix);
+        if (bloomFilter == null) {
+            return;
+        }
+        RedisLock lock = redisLockService.getLock(RedisConstants.LOCK_BLOOM_KEY + bloomFilter.getKey());
+        if (!lock.tryLock()) {
+            // 其他节点正在重建，先加载redis中已有的bitmap，重建完成后会收到通知再次加载
+            bloomFilter.reload();
+            return;
+        }
+        try {
+            bloomFilter.rebuild(idsLoader);
+            stringRedisTemplate.convertAndSend(RedisConstants.BLOOM_SYNC_CHANNEL, bloomFilter.getKey());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onBloomFilterMessage(String message) {
+        int index = message.indexOf('#');
+        String filterKey = index < 0 ? message : message.substring(0, index);
+        for (RedisBloomFilter bloomFilter : bloomFilters.values()) {
+            if (!bloomFilter.getKey().equals(filterKey)) {
+                continue;
+            }
+            if (index < 0) {
+                bloomFilter.reload();
+            } else {
+                bloomFilter.addLocal(message.substring(index + 1));
+            }
+        }
+    }
+
+    /**
+     * 布隆过滤器判断数据一定不存在时返回true
+     */
+    private <ID> boolean rejectedByBloomFilter(String keyPrefix, ID id) {
+        RedisBloomFilter bloomFilter = bloomFilters.get(keyPrefix);
+        return bloomFilter != null && !bloomFilter.mightContain(id);
+    }
 
     /**
      * 根据用户提供的参数将key存储至redis中
@@ -41,7 +262,17 @@ public class CacheClient {
      * @param unit
      */
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        byteRedisTemplate.opsForValue().set(key, encode(key, value), ttlPolicy.ttlMillis(key, time, unit), TimeUnit.MILLISECONDS);
+        removeLocal(key);
+    }
+
+    /**
+     * 写入空字符串至redis中，防止缓存穿透
+     * @param key
+     */
+    private void setNullValue(String key) {
+        byteRedisTemplate.opsForValue().set(key, NULL_VALUE, ttlPolicy.nullTtlMillis(key), TimeUnit.MILLISECONDS);
+        removeLocal(key);
     }
 
     /**
@@ -53,13 +284,221 @@ public class CacheClient {
      * @param unit
      */
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
-        // 将value与有效期包装成RedisData
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        setWithLogicalExpire(key, value, time, unit, 0L);
+    }
+
+    /**
+     * 将逻辑过期的key与重建耗时一起存储至redis中，value为null时写入空值防止缓存穿透
+     * @param rebuildCost 重建耗时，毫秒，用于XFetch提前刷新
+     */
+    private void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, long rebuildCost) {
+        if (value == null) {
+            setNullValue(key);
+            return;
+        }
+
+        // 将value与逻辑过期时间一起编码后保存至redis中，逻辑过期时间同样增加随机抖动
+        long ttlMillis = ttlPolicy.ttlMillis(key, time, unit);
+        long expireTime = System.currentTimeMillis() + ttlMillis;
+        byteRedisTemplate.opsForValue().set(key, encodeWithLogicalExpire(key, value, expireTime, rebuildCost));
+
+        // 同步更新本节点的本地缓存
+        putLocal(key, value, ttlMillis);
+    }
+
+    /**
+     * 查询数据库并写入逻辑过期的缓存，同时记录本次重建的耗时
+     * @return 数据库中的数据，不存在时返回null
+     */
+    private <R, ID> R loadWithLogicalExpire(CacheMetrics.Meters meters, String key, ID id,
+                                            Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        long begin = System.nanoTime();
+        R r = loadFromDb(meters, dbFallback, id);
+        setWithLogicalExpire(key, r, time, unit, elapsedMillis(begin));
+        return r;
+    }
+
+    /**
+     * 查询数据库，并记录重建耗时
+     */
+    private static <T, R> R loadFromDb(CacheMetrics.Meters meters, Function<T, R> dbFallback, T arg) {
+        long begin = System.nanoTime();
+        try {
+            return dbFallback.apply(arg);
+        } finally {
+            meters.rebuild(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * 查询redis，并记录耗时
+     */
+    private byte[] redisGet(CacheMetrics.Meters meters, String key) {
+        long begin = System.nanoTime();
+        try {
+            return byteRedisTemplate.opsForValue().get(key);
+        } finally {
+            meters.redis(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * 通过MGET批量查询redis，并记录耗时
+     */
+    private List<byte[]> redisMultiGet(CacheMetrics.Meters meters, List<String> keys) {
+        long begin = System.nanoTime();
+        try {
+            return byteRedisTemplate.opsForValue().multiGet(keys);
+        } finally {
+            meters.redis(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * 通过一次pipeline查询redis中的数据及剩余有效期，并记录耗时
+     * 命中时写入本地缓存，本地缓存的过期时间不超过redis中的剩余有效期
+     */
+    private RedisEntry redisGetWithTtl(CacheMetrics.Meters meters, String key) {
+        long begin = System.nanoTime();
+        try {
+            List<Object> results = byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().get(rawKey(key));
+                connection.keyCommands().pTtl(rawKey(key));
+                return null;
+            });
+            return new RedisEntry((byte[]) results.get(0), remainingMillis(results.get(1)));
+        } finally {
+            meters.redis(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * 通过一次pipeline批量查询redis中的数据及剩余有效期，并记录耗时
+     * @return 按keys的顺序排列
+     */
+    @SuppressWarnings("unchecked")
+    private List<RedisEntry> redisMultiGetWithTtl(CacheMetrics.Meters meters, List<String> keys) {
+        long begin = System.nanoTime();
+        try {
+            byte[][] rawKeys = new byte[keys.size()][];
+            for (int i = 0; i < keys.size(); i++) {
+                rawKeys[i] = rawKey(keys.get(i));
+            }
+            List<Object> results = byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().mGet(rawKeys);
+                for (byte[] rawKey : rawKeys) {
+                    connection.keyCommands().pTtl(rawKey);
+                }
+                return null;
+            });
+            List<byte[]> values = (List<byte[]>) results.get(0);
+            List<RedisEntry> entries = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                entries.add(new RedisEntry(values == null ? null : values.get(i), remainingMillis(results.get(i + 1))));
+            }
+            return entries;
+        } finally {
+            meters.redis(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * PTTL的结果转换为剩余有效期：-1表示没有设置有效期，只受本地缓存TTL限制；-2表示key已经不存在
+     */
+    private static long remainingMillis(Object pttl) {
+        if (!(pttl instanceof Long)) {
+            return 0L;
+        }
+        long millis = (Long) pttl;
+        return millis == -1L ? Long.MAX_VALUE : Math.max(0L, millis);
+    }
+
+    /**
+     * 重建耗时，至少记为1毫秒，0表示耗时未知
+     */
+    private static long elapsedMillis(long beginNanos) {
+        return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - beginNanos));
+    }
+
+    /**
+     * 删除缓存，并通过发布订阅通知所有节点删除本地缓存
+     * @param key
+     */
+    public void invalidate(String key) {
+        stringRedisTemplate.delete(key);
+        removeLocal(key);
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    /**
+     * 通过一次pipeline删除一批缓存，并通过一条发布订阅消息通知所有节点删除本地缓存
+     * @param keys
+     */
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.keyCommands().del(rawKey(key));
+            }
+            return null;
+        });
+        for (String key : keys) {
+            removeLocal(key);
+        }
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_INVALIDATE_CHANNEL,
+                String.join(INVALIDATE_SEPARATOR, keys));
+    }
+
+    /**
+     * 按hmdp.cache.strategies中为keyPrefix配置的策略查询缓存
+     * @param keyPrefix
+     * @param lockPrefix 互斥锁的前缀，THROUGH策略不使用
+     * @param id
+     * @param type
+     * @param dbFallback
+     * @param time
+     * @param unit
+     * @return
+     */
+    public <R, ID> R query(String keyPrefix, String lockPrefix, ID id, Class<R> type,
+                           Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return switch (strategyOf(keyPrefix)) {
+            case THROUGH -> queryShopByThrough(keyPrefix, id, type, dbFallback, time, unit);
+            case MUTEX -> queryShopByMutex(keyPrefix, lockPrefix, id, type, dbFallback, time, unit);
+            case LOGICAL_EXPIRE -> queryShopByLogicalExpire(keyPrefix, lockPrefix, id, type, dbFallback, time, unit);
+            case XFETCH -> queryShopByXFetch(keyPrefix, lockPrefix, id, type, dbFallback, time, unit);
+        };
+    }
+
+    /**
+     * 查询keyPrefix配置的缓存策略
+     * @param keyPrefix
+     * @return
+     */
+    public CacheStrategy strategyOf(String keyPrefix) {
+        CacheStrategy strategy = cacheClientProperties.getStrategies().get(keyPrefix);
+        if (strategy != null) {
+            return strategy;
+        }
+        return prefixStrategies.getOrDefault(keyPrefix, cacheClientProperties.getDefaultStrategy());
+    }
 
-        // 将RedisData保存至redis中
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+    /**
+     * 为某个key前缀注册缓存策略和写入格式，供@HmdpCacheable使用
+     * hmdp.cache.strategies中的配置优先于注册的策略，便于不改代码调整策略
+     * @param keyPrefix
+     * @param strategy 为null时不注册
+     * @param codec 为null时不注册
+     */
+    public void registerPrefix(String keyPrefix, CacheStrategy strategy, CacheCodecType codec) {
+        if (strategy != null) {
+            prefixStrategies.put(keyPrefix, strategy);
+        }
+        if (codec != null) {
+            prefixCodecs.put(keyPrefix, codec);
+        }
     }
 
     /**
@@ -69,33 +508,55 @@ public class CacheClient {
      */
     public <R, ID> R queryShopByThrough(String keyPrefix, ID id, Class<R> type,
                                          Function<ID, R> doFallBack, Long time, TimeUnit unit) {
-        // 1. 查询redis中是否存在该数据
+        // 0. 布隆过滤器判断数据一定不存在，直接返回空值，不访问redis和数据库
+        if (rejectedByBloomFilter(keyPrefix, id)) {
+            return null;
+        }
+
+        // 先查询本地缓存，命中则无需访问redis
         String key = keyPrefix + id;
-        String jsonStr = stringRedisTemplate.opsForValue().get(key);
+        CacheMetrics.Meters meters = cacheMetrics.of(keyPrefix, CacheStrategy.THROUGH);
+        R local = getLocal(key, type);
+        if (local != null) {
+            meters.localHit();
+            return local;
+        }
+
+        // 1. 查询redis中是否存在该数据
+        RedisEntry entry = redisGetWithTtl(meters, key);
+        byte[] bytes = entry.bytes;
 
         // 2. 判断缓存是否真命中
-        if (StrUtil.isNotBlank(jsonStr)) {
+        R cached = decode(meters, bytes, type);
+        if (cached != null) {
             // 3. 如果命中，则直接返回数据
-            return JSONUtil.toBean(jsonStr, type);
+            meters.redisHit();
+            putLocal(key, cached, entry.ttlMillis);
+            return cached;
         }
 
         // 4. 判断缓存是否假命中（查询数据为空字符串）
-        if (jsonStr.equals("")) {
+        if (isNullValue(bytes)) {
             // 5. 如果数据是空字符串，说明数据库中不存在该数据，直接返回空值
+            meters.tombstoneHit();
             return null;
         }
 
         // 5. 如果缓存未命中，查询数据库中的数据
-        R r = doFallBack.apply(id);
+        meters.miss();
+        R r = loadFromDb(meters, doFallBack, id);
 
         // 6. 如果查询数据不存在于数据库，返回空值，并写入空字符串至redis中，防止缓存穿透
+        // 注册了布隆过滤器的前缀只有误判的id才会走到这里，空字符串的数量很少
         if (r == null) {
-            stringRedisTemplate.opsForValue().set(key, "", time, unit);
+            setNullValue(key);
             return null;
         }
 
         // 7. 如果查询数据存在于数据库，将数据写到redis中
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(r), time, unit);
+        long ttlMillis = ttlPolicy.ttlMillis(key, time, unit);
+        byteRedisTemplate.opsForValue().set(key, encode(key, r), ttlMillis, TimeUnit.MILLISECONDS);
+        putLocal(key, r, ttlMillis);
 
         // 8. 返回查询到的数据
         return r;
@@ -108,72 +569,133 @@ public class CacheClient {
      */
     public <R, ID> R queryShopByMutex(String keyPrefix, String lockPrefix, ID id, Class<R> type,
                                        Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 0. 布隆过滤器判断数据一定不存在，直接返回空值，不访问redis和数据库
+        if (rejectedByBloomFilter(keyPrefix, id)) {
+            return null;
+        }
+
+        // 先查询本地缓存，命中则无需访问redis
         String key = keyPrefix + id;
-        String jsonStr = stringRedisTemplate.opsForValue().get(key);
+        CacheMetrics.Meters meters = cacheMetrics.of(keyPrefix, CacheStrategy.MUTEX);
+        R local = getLocal(key, type);
+        if (local != null) {
+            meters.localHit();
+            return local;
+        }
+
+        RedisEntry entry = redisGetWithTtl(meters, key);
+        byte[] bytes = entry.bytes;
 
         // 1. 判断缓存是否命中
-        if (StrUtil.isNotBlank(jsonStr)) {
+        R cached = decode(meters, bytes, type);
+        if (cached != null) {
             // 2. 如果缓存真命中，直接返回缓存数据
-            return JSONUtil.toBean(jsonStr, type);
+            meters.redisHit();
+            putLocal(key, cached, entry.ttlMillis);
+            return cached;
         }
 
         // 3. 判断缓存是否假命中
-        if ("".equals(jsonStr)) {
+        if (isNullValue(bytes)) {
             // 4. 如果缓存假命中，说明数据库中不存在查询数据，直接返回空值
+            meters.tombstoneHit();
             return null;
         }
 
         // 5. 如果缓存未命中，重建缓存
-        // 6. 重建缓存前，先获取互斥锁
-        String lockKey = lockPrefix + id;
-        Boolean lock = tryLock(lockKey);
-        while (!lock) {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        // 同一节点内同一个key只有一个线程去竞争互斥锁，其他线程等待该线程的结果
+        meters.miss();
+        return singleFlight.execute(key,
+                () -> rebuildWithMutex(meters, key, lockPrefix + id, id, type, dbFallback, time, unit));
+    }
+
+    /**
+     * 获取互斥锁后重建缓存
+     * 获取锁失败时不再轮询，而是等待持有锁的节点重建完成后发布的通知
+     */
+    private <R, ID> R rebuildWithMutex(CacheMetrics.Meters meters, String key, String lockKey, ID id, Class<R> type,
+                                       Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 6. 重建缓存前，先获取互斥锁，重建耗时超过租期时由看门狗续期
+        RedisLock lock = redisLockService.getLock(lockKey);
+        while (!lock.tryLock()) {
+            meters.lockFailure();
+            // 6.1 先登记等待，再检查缓存，避免错过登记之前发布的重建通知
+            CompletableFuture<Void> rebuilt = rebuildWaiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+            RedisEntry entry = redisGetWithTtl(meters, key);
+            if (entry.bytes == null) {
+                // 6.2 等待重建通知，超时后重新竞争互斥锁，防止持有锁的节点宕机后一直等待
+                try {
+                    rebuilt.get(cacheClientProperties.getMutex().getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException | TimeoutException ignored) {
+                    // 超时后重新竞争互斥锁
+                } finally {
+                    rebuildWaiters.remove(key, rebuilt);
+                }
+                entry = redisGetWithTtl(meters, key);
+            } else {
+                rebuildWaiters.remove(key, rebuilt);
             }
-            finally {
-                lock = tryLock(lockKey);
+
+            // 6.3 其他节点已经重建完毕，直接返回缓存数据
+            R cached = decode(meters, entry.bytes, type);
+            if (cached != null) {
+                putLocal(key, cached, entry.ttlMillis);
+                return cached;
+            }
+            if (isNullValue(entry.bytes)) {
+                return null;
             }
         }
 
-        // 7. 获取到了互斥锁，判断缓存是否重建完毕
-        jsonStr = stringRedisTemplate.opsForValue().get(key);
+        try {
+            // 7. 获取到了互斥锁，判断缓存是否重建完毕
+            RedisEntry entry = redisGetWithTtl(meters, key);
 
-        // 8. 如果缓存重建完毕，直接返回缓存数据
-        if (StrUtil.isNotBlank(jsonStr)) {
-            deleteLock(lockKey);
-            return JSONUtil.toBean(jsonStr, type);
-        }
+            // 8. 如果缓存重建完毕，直接返回缓存数据
+            R cached = decode(meters, entry.bytes, type);
+            if (cached != null) {
+                putLocal(key, cached, entry.ttlMillis);
+                return cached;
+            }
 
-        // 9. 如果缓存为空字符串，说明数据库中不存在该数据，直接返回null值
-        if (jsonStr != null) {
-            deleteLock(lockKey);
-            return null;
-        }
+            // 9. 如果缓存为空字符串，说明数据库中不存在该数据，直接返回null值
+            if (isNullValue(entry.bytes)) {
+                return null;
+            }
 
-        // 10. 如果缓存为空，重建缓存
-        // 11. 查询数据库
-        R r = dbFallback.apply(id);
+            // 10. 如果缓存为空，重建缓存
+            // 11. 查询数据库
+            R r = loadFromDb(meters, dbFallback, id);
 
-        // 12. 如果数据库中不存在查询数据，写入空字符串至redis中，防止发生缓存穿透
-        if (r == null) {
-            stringRedisTemplate.opsForValue().set(key, "", time, unit);
+            // 12. 如果数据库中不存在查询数据，写入空字符串至redis中，防止发生缓存穿透
+            if (r == null) {
+                setNullValue(key);
+                notifyRebuilt(key);
+                return null;
+            }
 
-            // 释放互斥锁
-            deleteLock(lockKey);
-            // 返回null值
-            return null;
-        }
+            // 13. 如果数据库中存在该数据，写入查询数据至redis中，并通知等待的节点
+            long ttlMillis = ttlPolicy.ttlMillis(key, time, unit);
+            byteRedisTemplate.opsForValue().set(key, encode(key, r), ttlMillis, TimeUnit.MILLISECONDS);
+            putLocal(key, r, ttlMillis);
+            notifyRebuilt(key);
 
-        // 13. 如果数据库中存在该数据，写入查询数据至redis中
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(r), time, unit);
-        // 释放互斥锁
-        deleteLock(lockKey);
+            // 14. 返回查询到的数据
+            return r;
+        } finally {
+            // 释放互斥锁，只会释放自己持有的锁
+            lock.unlock();
+        }
+    }
 
-        // 14. 返回查询到的数据
-        return r;
+    /**
+     * 发布缓存重建完成的通知，唤醒所有节点上等待该key的线程
+     */
+    private void notifyRebuilt(String key) {
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_REBUILT_CHANNEL, key);
     }
 
     /**
@@ -183,82 +705,667 @@ public class CacheClient {
      */
     public <R, ID> R queryShopByLogicalExpire(String keyPrefix, String lockPrefix, ID id, Class<R> type,
                                                Function<ID, R> dbFallback, Long time, TimeUnit unit) {
-        // 1. 查询缓存中是否存在查询数据
+        // 0. 布隆过滤器判断数据一定不存在，直接返回空值，不访问redis和数据库
+        if (rejectedByBloomFilter(keyPrefix, id)) {
+            return null;
+        }
+
+        // 先查询本地缓存，本地缓存中的条目在逻辑过期时间之前就会失效，命中即说明数据未过期
         String key = keyPrefix + id;
-        String jsonStr = stringRedisTemplate.opsForValue().get(key);
+        CacheMetrics.Meters meters = cacheMetrics.of(keyPrefix, CacheStrategy.LOGICAL_EXPIRE);
+        R local = getLocal(key, type);
+        if (local != null) {
+            meters.localHit();
+            return local;
+        }
+
+        // 1. 查询缓存中是否存在查询数据
+        byte[] bytes = redisGet(meters, key);
 
         // 2. 如果未命中缓存，直接返回空值
-        if (StrUtil.isBlank(jsonStr)) {
+        CacheData<R> cacheData = decodeWithLogicalExpire(meters, bytes, type);
+        if (cacheData == null) {
+            if (isNullValue(bytes)) {
+                meters.tombstoneHit();
+            } else {
+                meters.miss();
+            }
             return null;
         }
 
         // 3. 如果命中缓存，判断该缓存是否过期
-        RedisData redisData = JSONUtil.toBean(jsonStr, RedisData.class);
-        // 获取缓存数据和有效期
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        LocalDateTime expireTime = redisData.getExpireTime();
+        R r = cacheData.getData();
 
         // 4. 如果缓存数据未过期，直接返回缓存数据
-        if (expireTime.isAfter(LocalDateTime.now())) {
+        long now = System.currentTimeMillis();
+        if (!cacheData.isExpired(now)) {
+            meters.redisHit();
+            putLocal(key, r, cacheData.getExpireTime() - now);
             return r;
         }
 
-        // 5. 如果缓存数据过期，则重建缓存
-        // 6. 在重建缓存前，获取互斥锁
-        String lockKey = lockPrefix + id;
-        Boolean lock = tryLock(lockKey);
+        // 5. 如果缓存数据过期，则提交至重建线程池，由重建线程获取互斥锁后重建
+        // 本节点已经在重建该key或队列已满时不会重复提交，直接返回旧的缓存数据
+        if (!cacheRebuildExecutor.isPending(key)) {
+            long staleExpireTime = cacheData.getExpireTime();
+            cacheRebuildExecutor.submit(key, () -> rebuildWithLogicalExpire(
+                    meters, key, lockPrefix + id, staleExpireTime, id, type, dbFallback, time, unit));
+        }
+
+        // 6. 返回旧的店铺数据
+        meters.staleServe();
+        return r;
+    }
+
+    /**
+     * 在重建线程中获取互斥锁后重建逻辑过期的缓存
+     * 获取失败说明其他节点正在重建；获取成功后发现缓存已经被其他节点重建过时，不再查询数据库
+     * @param staleExpireTime 触发重建时缓存数据的逻辑过期时间
+     */
+    private <R, ID> void rebuildWithLogicalExpire(CacheMetrics.Meters meters, String key, String lockKey,
+                                                  long staleExpireTime, ID id, Class<R> type,
+                                                  Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        RedisLock lock = redisLockService.getLock(lockKey);
+        if (!lock.tryLock()) {
+            meters.lockFailure();
+            return;
+        }
+        try {
+            // 二次判断缓存中的数据是否已经被重建
+            CacheData<R> latest = decodeWithLogicalExpire(meters, redisGet(meters, key), type);
+            if (latest != null && latest.getExpireTime() != staleExpireTime) {
+                return;
+            }
+            loadWithLogicalExpire(meters, key, id, dbFallback, time, unit);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // 7. 如果获取失败，说明存在别的线程正在重建缓存，直接返回旧的缓存数据
-        if (!lock) {
+    /**
+     * 通过逻辑过期解决缓存击穿问题，并按XFetch算法在逻辑过期之前概率性地提前重建
+     * 缓存中保存上一次重建的耗时，重建越慢、越接近过期，提前重建的概率越大，
+     * 热点key会在过期前被某一个请求平滑地刷新，不会在过期时刻集中争抢互斥锁
+     * @param id
+     * @return
+     */
+    public <R, ID> R queryShopByXFetch(String keyPrefix, String lockPrefix, ID id, Class<R> type,
+                                        Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 0. 布隆过滤器判断数据一定不存在，直接返回空值，不访问redis和数据库
+        if (rejectedByBloomFilter(keyPrefix, id)) {
+            return null;
+        }
+
+        // 先查询本地缓存，本地缓存中的条目在提前刷新的窗口之前就会失效
+        String key = keyPrefix + id;
+        CacheMetrics.Meters meters = cacheMetrics.of(keyPrefix, CacheStrategy.XFETCH);
+        R local = getLocal(key, type);
+        if (local != null) {
+            meters.localHit();
+            return local;
+        }
+
+        // 1. 查询缓存中是否存在查询数据
+        byte[] bytes = redisGet(meters, key);
+
+        // 2. 如果缓存为空字符串，说明数据库中不存在该数据，直接返回null值
+        if (isNullValue(bytes)) {
+            meters.tombstoneHit();
+            return null;
+        }
+
+        // 3. 如果未命中缓存，同步查询数据库并写入缓存，同一节点内的并发请求只查询一次
+        CacheData<R> cacheData = decodeWithLogicalExpire(meters, bytes, type);
+        if (cacheData == null) {
+            meters.miss();
+            return singleFlight.execute(key, () -> loadWithLogicalExpire(meters, key, id, dbFallback, time, unit));
+        }
+
+        // 4. 如果还没到刷新的时机，直接返回缓存数据
+        R r = cacheData.getData();
+        long now = System.currentTimeMillis();
+        double beta = cacheClientProperties.getXfetch().getBeta();
+        if (!cacheData.shouldRefresh(now, beta)) {
+            meters.redisHit();
+            // 本地缓存在提前刷新的窗口之前失效，保证窗口内的请求能访问redis参与刷新判断
+            // -ln(random) >= 3的概率约为5%，窗口之外提前刷新的概率可以忽略
+            long window = (long) (cacheData.getRebuildCost() * beta * 3);
+            putLocal(key, r, cacheData.getExpireTime() - now - window);
             return r;
         }
 
-        // 8. 如果获取成功，需要二次判断缓存中是否存在查询数据
-        jsonStr = stringRedisTemplate.opsForValue().get(key);
+        // 5. 需要刷新，已经逻辑过期时返回的是旧数据，提前刷新时返回的数据仍然有效
+        if (cacheData.isExpired(now)) {
+            meters.staleServe();
+        } else {
+            meters.redisHit();
+        }
+
+        // 6. 提交至重建线程池，由重建线程获取互斥锁后重建，本节点已经在重建该key时不重复提交
+        if (!cacheRebuildExecutor.isPending(key)) {
+            long staleExpireTime = cacheData.getExpireTime();
+            cacheRebuildExecutor.submit(key, () -> rebuildWithLogicalExpire(
+                    meters, key, lockPrefix + id, staleExpireTime, id, type, dbFallback, time, unit));
+        }
+
+        // 7. 返回旧的缓存数据
+        return r;
+    }
+
+    /**
+     * 批量查询，解决缓存穿透问题，与queryShopByThrough的存储格式一致
+     * 所有key通过一次MGET查询，未命中的数据通过一次数据库查询加载，再通过一次pipeline批量写回redis
+     * @param keyPrefix
+     * @param ids
+     * @param type
+     * @param dbFallback 根据一批id查询数据库，返回id到数据的映射
+     * @param time
+     * @param unit
+     * @return 按ids的顺序排列的查询结果，不存在的数据不包含在结果中
+     */
+    public <R, ID> Map<ID, R> getAll(String keyPrefix, Collection<ID> ids, Class<R> type,
+                                     Function<Collection<ID>, Map<ID, R>> dbFallback, Long time, TimeUnit unit) {
+        Map<ID, R> found = new HashMap<>(ids.size() * 2);
+        CacheMetrics.Meters meters = cacheMetrics.of(keyPrefix, CacheStrategy.THROUGH);
+
+        // 1. 经过布隆过滤器和本地缓存，剩下的id需要查询redis
+        List<ID> remoteIds = filterRemoteIds(meters, keyPrefix, ids, type, found);
+        if (remoteIds.isEmpty()) {
+            return orderByIds(ids, found);
+        }
+
+        // 2. 通过一次pipeline查询redis，MGET查询数据，PTTL查询剩余有效期
+        List<RedisEntry> entries = redisMultiGetWithTtl(meters, toKeys(keyPrefix, remoteIds));
+        List<ID> missIds = new ArrayList<>();
+        for (int i = 0; i < remoteIds.size(); i++) {
+            ID id = remoteIds.get(i);
+            byte[] bytes = entries.get(i).bytes;
+            R r = decode(meters, bytes, type);
+            if (r != null) {
+                // 2.1 缓存真命中
+                meters.redisHit();
+                found.put(id, r);
+                putLocal(keyPrefix + id, r, entries.get(i).ttlMillis);
+            } else if (isNullValue(bytes)) {
+                // 2.2 空字符串说明数据库中不存在该数据，直接跳过
+                meters.tombstoneHit();
+            } else {
+                // 2.3 缓存未命中
+                meters.miss();
+                missIds.add(id);
+            }
+        }
+        if (missIds.isEmpty()) {
+            return orderByIds(ids, found);
+        }
+
+        // 3. 通过一次数据库查询加载全部未命中的数据
+        Map<ID, R> loaded = loadFromDb(meters, dbFallback, missIds);
+
+        // 4. 通过一次pipeline写回redis，数据库中不存在的数据写入空字符串，防止缓存穿透
+        // 每个key的有效期单独计算，避免同一批数据同时过期
+        long[] ttlMillis = new long[missIds.size()];
+        for (int i = 0; i < missIds.size(); i++) {
+            String key = keyPrefix + missIds.get(i);
+            ttlMillis[i] = loaded.get(missIds.get(i)) == null
+                    ? ttlPolicy.nullTtlMillis(key) : ttlPolicy.ttlMillis(key, time, unit);
+        }
+        byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < missIds.size(); i++) {
+                R r = loaded.get(missIds.get(i));
+                String key = keyPrefix + missIds.get(i);
+                connection.stringCommands().pSetEx(rawKey(key), ttlMillis[i], r == null ? NULL_VALUE : encode(key, r));
+            }
+            return null;
+        });
+        for (int i = 0; i < missIds.size(); i++) {
+            ID id = missIds.get(i);
+            R r = loaded.get(id);
+            if (r != null) {
+                found.put(id, r);
+                putLocal(keyPrefix + id, r, ttlMillis[i]);
+            }
+        }
+        return orderByIds(ids, found);
+    }
+
+    /**
+     * 批量查询，通过逻辑过期解决缓存击穿问题，与queryShopByLogicalExpire的存储格式一致
+     * 未命中的数据通过一次数据库查询加载并写回redis；已过期的数据先返回旧值，再由一个异步任务批量重建
+     * @param keyPrefix
+     * @param lockPrefix
+     * @param ids
+     * @param type
+     * @param dbFallback 根据一批id查询数据库，返回id到数据的映射
+     * @param time
+     * @param unit
+     * @return 按ids的顺序排列的查询结果，不存在的数据不包含在结果中
+     */
+    public <R, ID> Map<ID, R> getAllWithLogicalExpire(String keyPrefix, String lockPrefix, Collection<ID> ids,
+                                                      Class<R> type, Function<Collection<ID>, Map<ID, R>> dbFallback,
+                                                      Long time, TimeUnit unit) {
+        Map<ID, R> found = new HashMap<>(ids.size() * 2);
+        CacheMetrics.Meters meters = cacheMetrics.of(keyPrefix,
+                strategyOf(keyPrefix) == CacheStrategy.XFETCH ? CacheStrategy.XFETCH : CacheStrategy.LOGICAL_EXPIRE);
 
-        // 9. 如果缓存命中，判断缓存数据是否过期
-        if (StrUtil.isNotBlank(jsonStr)) {
-            RedisData bean = JSONUtil.toBean(jsonStr, RedisData.class);
-            LocalDateTime expireTime1 = bean.getExpireTime();
+        // 1. 经过布隆过滤器和本地缓存，剩下的id需要查询redis
+        List<ID> remoteIds = filterRemoteIds(meters, keyPrefix, ids, type, found);
+        if (remoteIds.isEmpty()) {
+            return orderByIds(ids, found);
+        }
 
-            // 如果未过期，直接返回商铺数据
-            if (expireTime1.isAfter(LocalDateTime.now())) {
-                return JSONUtil.toBean((JSONObject) bean.getData(), type);
+        // 2. 通过一次MGET查询redis
+        List<byte[]> values = redisMultiGet(meters, toKeys(keyPrefix, remoteIds));
+        List<ID> missIds = new ArrayList<>();
+        List<ID> expiredIds = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < remoteIds.size(); i++) {
+            ID id = remoteIds.get(i);
+            byte[] bytes = values == null ? null : values.get(i);
+            if (isNullValue(bytes)) {
+                // 空字符串说明数据库中不存在该数据
+                meters.tombstoneHit();
+                continue;
+            }
+            CacheData<R> cacheData = decodeWithLogicalExpire(meters, bytes, type);
+            if (cacheData == null) {
+                meters.miss();
+                missIds.add(id);
+                continue;
             }
+            R r = cacheData.getData();
+            found.put(id, r);
+            if (cacheData.isExpired(now)) {
+                meters.staleServe();
+            } else {
+                meters.redisHit();
+            }
+            if (!needsRebuild(keyPrefix, cacheData, now)) {
+                putLocal(keyPrefix + id, r, cacheData.getExpireTime() - now);
+            } else {
+                // 已过期或需要提前刷新，先返回旧数据
+                expiredIds.add(id);
+            }
+        }
 
-            // 如果过期，继续重建缓存
+        // 3. 未命中的数据通过一次数据库查询加载，再通过一次pipeline写回redis
+        if (!missIds.isEmpty()) {
+            long begin = System.nanoTime();
+            Map<ID, R> loaded = loadFromDb(meters, dbFallback, missIds);
+            writeWithLogicalExpire(keyPrefix, missIds, loaded, time, unit, elapsedMillis(begin));
+            for (ID id : missIds) {
+                R r = loaded.get(id);
+                if (r != null) {
+                    found.put(id, r);
+                }
+            }
         }
 
-        // 10. 如果缓存未命中，开启一个新的线程，这个新的线程负责重建缓存
-        CACHE_REBUILD_EXECUTOR.submit(() -> {
-            // 查询数据库中的数据
-            R r1 = dbFallback.apply(id);
+        // 4. 已过期的数据交给一个异步任务，获取到互斥锁的key统一重建
+        expiredIds.removeIf(id -> cacheRebuildExecutor.isPending(keyPrefix + id));
+        if (!expiredIds.isEmpty()) {
+            cacheRebuildExecutor.submit(toKeys(keyPrefix, expiredIds),
+                    () -> rebuildAllWithLogicalExpire(meters, keyPrefix, lockPrefix, expiredIds, dbFallback, time, unit));
+        }
+        return orderByIds(ids, found);
+    }
 
-            // 写入至redis中
-            setWithLogicalExpire(key, r1, time, unit);
+    /**
+     * 在重建线程中逐个获取互斥锁，获取成功的key通过一次数据库查询加载并写回redis
+     */
+    private <R, ID> void rebuildAllWithLogicalExpire(CacheMetrics.Meters meters, String keyPrefix, String lockPrefix,
+                                                     List<ID> ids, Function<Collection<ID>, Map<ID, R>> dbFallback,
+                                                     Long time, TimeUnit unit) {
+        List<ID> rebuildIds = new ArrayList<>(ids.size());
+        List<RedisLock> locks = new ArrayList<>(ids.size());
+        try {
+            for (ID id : ids) {
+                RedisLock lock = redisLockService.getLock(lockPrefix + id);
+                if (lock.tryLock()) {
+                    rebuildIds.add(id);
+                    locks.add(lock);
+                } else {
+                    meters.lockFailure();
+                }
+            }
+            if (rebuildIds.isEmpty()) {
+                return;
+            }
+            long begin = System.nanoTime();
+            Map<ID, R> loaded = loadFromDb(meters, dbFallback, rebuildIds);
+            writeWithLogicalExpire(keyPrefix, rebuildIds, loaded, time, unit, elapsedMillis(begin));
+        } finally {
+            for (RedisLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 通过一次pipeline批量写入数据，用于缓存预热，按keyPrefix配置的策略选择存储格式，不写入本地缓存
+     * @param keyPrefix
+     * @param values
+     * @param idGetter
+     * @param time
+     * @param unit
+     * @return 写入的条数
+     */
+    public <R, ID> int setAll(String keyPrefix, List<R> values, Function<R, ID> idGetter, Long time, TimeUnit unit) {
+        // 1. 在当前线程完成编码，pipeline中只发送编码好的数据
+        CacheStrategy strategy = strategyOf(keyPrefix);
+        boolean logicalExpire = strategy == CacheStrategy.LOGICAL_EXPIRE || strategy == CacheStrategy.XFETCH;
+        // 预热时大量key同时写入，每个key的有效期单独计算，避免同时过期
+        long now = System.currentTimeMillis();
+        byte[][] keys = new byte[values.size()][];
+        byte[][] encoded = new byte[values.size()][];
+        long[] ttlMillis = new long[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            R r = values.get(i);
+            String key = keyPrefix + idGetter.apply(r);
+            keys[i] = rawKey(key);
+            ttlMillis[i] = ttlPolicy.ttlMillis(key, time, unit);
+            encoded[i] = logicalExpire ? encodeWithLogicalExpire(key, r, now + ttlMillis[i], 0L) : encode(key, r);
+        }
+
+        // 2. 通过一次pipeline写入redis
+        byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.length; i++) {
+                if (logicalExpire) {
+                    connection.stringCommands().set(keys[i], encoded[i]);
+                } else {
+                    connection.stringCommands().pSetEx(keys[i], ttlMillis[i], encoded[i]);
+                }
+            }
+            return null;
         });
+        return keys.length;
+    }
 
-        // 11. 返回旧的店铺数据
-        return r;
+    /**
+     * 判断逻辑过期的数据是否需要重建，XFETCH策略按重建耗时概率性地提前重建
+     */
+    private boolean needsRebuild(String keyPrefix, CacheData<?> cacheData, long now) {
+        if (strategyOf(keyPrefix) == CacheStrategy.XFETCH) {
+            return cacheData.shouldRefresh(now, cacheClientProperties.getXfetch().getBeta());
+        }
+        return cacheData.isExpired(now);
     }
 
     /**
-     * 获取互斥锁
-     * @param lockKey
-     * @return
+     * 通过一次pipeline批量写入逻辑过期的数据，数据库中不存在的数据写入空字符串，防止缓存穿透
+     * @param rebuildCost 本批数据的重建耗时，毫秒
      */
-    private Boolean tryLock(String lockKey) {
-        Boolean flag = stringRedisTemplate.opsForValue().
-                setIfAbsent(lockKey, "1", RedisConstants.LOCK_SHOP_TTL, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+    private <R, ID> void writeWithLogicalExpire(String keyPrefix, List<ID> ids, Map<ID, R> loaded,
+                                                Long time, TimeUnit unit, long rebuildCost) {
+        // 每个key的有效期单独计算，避免同一批数据同时过期
+        long now = System.currentTimeMillis();
+        long[] ttlMillis = new long[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            String key = keyPrefix + ids.get(i);
+            ttlMillis[i] = loaded.get(ids.get(i)) == null
+                    ? ttlPolicy.nullTtlMillis(key) : ttlPolicy.ttlMillis(key, time, unit);
+        }
+        byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < ids.size(); i++) {
+                R r = loaded.get(ids.get(i));
+                String key = keyPrefix + ids.get(i);
+                if (r == null) {
+                    connection.stringCommands().pSetEx(rawKey(key), ttlMillis[i], NULL_VALUE);
+                    continue;
+                }
+                connection.stringCommands().set(rawKey(key), encodeWithLogicalExpire(key, r, now + ttlMillis[i], rebuildCost));
+            }
+            return null;
+        });
+        for (int i = 0; i < ids.size(); i++) {
+            putLocal(keyPrefix + ids.get(i), loaded.get(ids.get(i)), ttlMillis[i]);
+        }
+    }
+
+    /**
+     * 过滤掉布隆过滤器拦截的id，本地缓存命中的数据直接放入found中
+     * @return 需要查询redis的id
+     */
+    private <R, ID> List<ID> filterRemoteIds(CacheMetrics.Meters meters, String keyPrefix, Collection<ID> ids,
+                                             Class<R> type, Map<ID, R> found) {
+        List<ID> remoteIds = new ArrayList<>(ids.size());
+        // 去掉重复的id
+        for (ID id : new LinkedHashSet<>(ids)) {
+            if (rejectedByBloomFilter(keyPrefix, id)) {
+                continue;
+            }
+            R local = getLocal(keyPrefix + id, type);
+            if (local != null) {
+                meters.localHit();
+                found.put(id, local);
+            } else {
+                remoteIds.add(id);
+            }
+        }
+        return remoteIds;
+    }
+
+    private static <ID> List<String> toKeys(String keyPrefix, List<ID> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            keys.add(keyPrefix + id);
+        }
+        return keys;
+    }
+
+    private static <R, ID> Map<ID, R> orderByIds(Collection<ID> ids, Map<ID, R> found) {
+        Map<ID, R> result = new LinkedHashMap<>(found.size() * 2);
+        for (ID id : ids) {
+            R r = found.get(id);
+            if (r != null) {
+                result.put(id, r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按key配置的格式编码普通数据，二进制格式不支持的类型使用JSON格式
+     */
+    private byte[] encode(String key, Object value) {
+        return compress(writeCodecFor(key, value).encode(value));
     }
 
     /**
-     * 返还互斥锁
-     * @param lockKey
+     * 按key配置的格式编码逻辑过期数据，二进制格式不支持的类型使用JSON格式
      */
-    private void deleteLock(String lockKey) {
-        stringRedisTemplate.delete(lockKey);
+    private byte[] encodeWithLogicalExpire(String key, Object value, long expireTime, long rebuildCost) {
+        return compress(writeCodecFor(key, value).encodeWithLogicalExpire(value, expireTime, rebuildCost));
+    }
+
+    /**
+     * 压缩超过阈值的数据，并记录压缩比和耗时
+     */
+    private byte[] compress(byte[] bytes) {
+        if (!cacheClientProperties.getCompression().isEnabled() || !compressor.shouldCompress(bytes)) {
+            return bytes;
+        }
+        long begin = System.nanoTime();
+        byte[] compressed = compressor.compress(bytes);
+        long elapsed = System.nanoTime() - begin;
+        if (compressed == null) {
+            cacheMetrics.compressionSkipped(bytes.length, elapsed);
+            return bytes;
+        }
+        cacheMetrics.compressed(bytes.length, compressed.length, elapsed);
+        return compressed;
     }
 
+    /**
+     * 根据首字节判断数据是否压缩过，压缩过的数据先解压，并记录耗时
+     */
+    private byte[] decompress(byte[] bytes) {
+        if (!CacheCompressor.isCompressed(bytes)) {
+            return bytes;
+        }
+        long begin = System.nanoTime();
+        try {
+            return compressor.decompress(bytes);
+        } finally {
+            cacheMetrics.decompressed(System.nanoTime() - begin);
+        }
+    }
+
+    private CacheCodec writeCodecFor(String key, Object value) {
+        if (codecOf(key) == CacheCodecType.BINARY && binaryCodec.supports(value.getClass())) {
+            return binaryCodec;
+        }
+        return jsonCodec;
+    }
+
+    /**
+     * 查询key写入时使用的格式，取注册的最长匹配前缀，没有注册时使用hmdp.cache.codec
+     */
+    private CacheCodecType codecOf(String key) {
+        CacheCodecType codec = cacheClientProperties.getCodec();
+        int matched = -1;
+        for (Map.Entry<String, CacheCodecType> entry : prefixCodecs.entrySet()) {
+            String prefix = entry.getKey();
+            if (prefix.length() > matched && key.startsWith(prefix)) {
+                codec = entry.getValue();
+                matched = prefix.length();
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * 根据数据头自动识别格式，保证升级过程中旧格式的数据仍然可读，压缩过的数据需要先解压
+     */
+    private CacheCodec readCodecFor(byte[] bytes) {
+        return binaryCodec.canDecode(bytes) ? binaryCodec : jsonCodec;
+    }
+
+    /**
+     * 解码普通数据
+     * @return 未命中、空值或无法解码时返回null
+     */
+    private <R> R decode(CacheMetrics.Meters meters, byte[] bytes, Class<R> type) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        bytes = decompress(bytes);
+        long begin = System.nanoTime();
+        try {
+            return readCodecFor(bytes).decode(bytes, type);
+        } finally {
+            meters.decode(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * 解码逻辑过期数据
+     * @return 未命中、空值或无法解码时返回null
+     */
+    private <R> CacheData<R> decodeWithLogicalExpire(CacheMetrics.Meters meters, byte[] bytes, Class<R> type) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        bytes = decompress(bytes);
+        long begin = System.nanoTime();
+        try {
+            return readCodecFor(bytes).decodeWithLogicalExpire(bytes, type);
+        } finally {
+            meters.decode(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * 是否为防止缓存穿透而写入的空值
+     */
+    private static boolean isNullValue(byte[] bytes) {
+        return bytes != null && bytes.length == 0;
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 当前的热点key
+     * @return 未开启热点key探测时返回空集合
+     */
+    public List<HotKeyDetector.HotKey> getHotKeys() {
+        return hotKeyDetector == null ? Collections.emptyList() : hotKeyDetector.getHotKeys();
+    }
+
+    /**
+     * 查询本地缓存，先查询热点key的副本，再查询普通的本地缓存
+     * 每次查询都会计入热点key探测
+     * @param key
+     * @param type
+     * @return 未命中或类型不匹配时返回null
+     */
+    private <R> R getLocal(String key, Class<R> type) {
+        if (hotKeyDetector != null && hotKeyDetector.record(key)) {
+            Object hot = hotCache.get(key, false);
+            if (type.isInstance(hot)) {
+                return type.cast(hot);
+            }
+        }
+        if (!cacheClientProperties.getLocal().isEnabled()) {
+            return null;
+        }
+        // 不刷新最后访问时间，保证条目按写入时设置的过期时间失效
+        Object value = localCache.get(key, false);
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    /**
+     * 删除本地缓存及热点key的副本
+     * @param key
+     */
+    private void removeLocal(String key) {
+        localCache.remove(key);
+        hotCache.remove(key);
+    }
+
+    /**
+     * 写入本地缓存，过期时间取本地缓存TTL与redis中剩余有效期的较小值
+     * @param key
+     * @param value
+     * @param ttlMillis redis中数据的剩余有效期
+     */
+    private void putLocal(String key, Object value, long ttlMillis) {
+        if (value == null) {
+            return;
+        }
+        // 热点key固定保存一份副本，不会被大量普通key挤出本地缓存
+        if (hotKeyDetector != null && hotKeyDetector.isHot(key)) {
+            long hotTimeout = Math.min(cacheClientProperties.getHotKey().getTtl().toMillis(), ttlMillis);
+            if (hotTimeout > 0) {
+                hotCache.put(key, value, hotTimeout);
+            }
+        }
+        if (!cacheClientProperties.getLocal().isEnabled()) {
+            return;
+        }
+        long timeout = Math.min(cacheClientProperties.getLocal().getTtl().toMillis(), ttlMillis);
+        if (timeout > 0) {
+            localCache.put(key, value, timeout);
+        }
+    }
+
+    /**
+     * redis中的数据及剩余有效期
+     */
+    private static class RedisEntry {
+
+        private final byte[] bytes;
+
+        /**
+         * 剩余有效期，毫秒
+         */
+        private final long ttlMillis;
+
+        private RedisEntry(byte[] bytes, long ttlMillis) {
+            this.bytes = bytes;
+            this.ttlMillis = ttlMillis;
+        }
+    }
 }
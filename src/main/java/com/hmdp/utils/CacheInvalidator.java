@@ -0,0 +1,133 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheClientProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 感知事务的缓存失效
+ * 1. 在事务中调用时，删除操作推迟到事务提交之后执行，避免其他线程在提交前把旧数据重新写回缓存；事务回滚时不删除
+ * 2. 同一个事务中的多次删除合并成一次pipeline删除和一条发布订阅消息
+ * 3. 可选的延迟双删：第一次删除之后隔一段时间再删除一次，清理并发读在两次删除之间写回的旧数据
+ * 不在事务中调用时立即删除
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheClientProperties cacheClientProperties;
+
+    /**
+     * 执行延迟双删的第二次删除
+     */
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new NamedThreadFactory("cache-double-delete-", true));
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+    }
+
+    /**
+     * 删除缓存，在事务中调用时推迟到事务提交之后执行
+     * @param keys
+     */
+    public void invalidate(String... keys) {
+        invalidate(Arrays.asList(keys));
+    }
+
+    /**
+     * 删除缓存，在事务中调用时推迟到事务提交之后执行
+     * @param keys
+     */
+    public void invalidate(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        // 1. 不在事务中，立即删除
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteNow(keys);
+            return;
+        }
+
+        // 2. 在事务中，记录到当前事务待删除的key中，首次记录时注册事务提交后的回调
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new InvalidateSynchronization(pending));
+        }
+        pending.addAll(keys);
+    }
+
+    /**
+     * 删除缓存，开启延迟双删时安排第二次删除
+     */
+    private void deleteNow(Collection<String> keys) {
+        cacheClient.invalidateAll(keys);
+
+        long delay = cacheClientProperties.getInvalidation().getDoubleDeleteDelay().toMillis();
+        if (delay > 0) {
+            scheduler.schedule(() -> {
+                try {
+                    cacheClient.invalidateAll(keys);
+                } catch (Exception e) {
+                    log.warn("延迟双删失败：{}", keys, e);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    private class InvalidateSynchronization implements TransactionSynchronization {
+
+        private final Set<String> keys;
+
+        private InvalidateSynchronization(Set<String> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void afterCommit() {
+            try {
+                deleteNow(keys);
+            } catch (Exception e) {
+                // 事务已经提交，删除失败时缓存在有效期之后失效
+                log.error("事务提交后删除缓存失败：{}", keys, e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidator.this);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheClient的监控指标，按key前缀和查询策略打标签，通过Micrometer暴露给Actuator
+ * 每个key前缀和策略的指标在首次使用时创建并缓存，之后的记录只查表和累加，不创建新对象
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Component
+public class CacheMetrics {
+
+    private static final CacheStrategy[] STRATEGIES = CacheStrategy.values();
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * key前缀 -> 按策略序号排列的指标
+     */
+    private final Map<String, Meters[]> meters = new ConcurrentHashMap<>();
+
+    /**
+     * 压缩前的总字节数
+     */
+    private Counter compressionRawBytes;
+
+    /**
+     * 压缩后的总字节数
+     */
+    private Counter compressionCompressedBytes;
+
+    /**
+     * 达到压缩阈值但压缩后没有变小的次数
+     */
+    private Counter compressionSkips;
+
+    private Timer compress;
+
+    private Timer decompress;
+
+    @PostConstruct
+    public void init() {
+        compressionRawBytes = Counter.builder("hmdp.cache.compression.raw.bytes")
+                .description("压缩前的总字节数").register(meterRegistry);
+        compressionCompressedBytes = Counter.builder("hmdp.cache.compression.compressed.bytes")
+                .description("压缩后的总字节数").register(meterRegistry);
+        compressionSkips = Counter.builder("hmdp.cache.compression.skips")
+                .description("压缩后没有变小而保存原始数据的次数").register(meterRegistry);
+        compress = Timer.builder("hmdp.cache.compression.compress")
+                .description("压缩的耗时").register(meterRegistry);
+        decompress = Timer.builder("hmdp.cache.compression.decompress")
+                .description("解压的耗时").register(meterRegistry);
+        Gauge.builder("hmdp.cache.compression.ratio", this, CacheMetrics::compressionRatio)
+                .description("压缩后与压缩前的字节数之比").register(meterRegistry);
+    }
+
+    /**
+     * 获取key前缀和策略对应的指标
+     * @param keyPrefix
+     * @param strategy
+     * @return
+     */
+    public Meters of(String keyPrefix, CacheStrategy strategy) {
+        Meters[] byStrategy = meters.get(keyPrefix);
+        if (byStrategy == null) {
+            byStrategy = meters.computeIfAbsent(keyPrefix, k -> new Meters[STRATEGIES.length]);
+        }
+        Meters m = byStrategy[strategy.ordinal()];
+        if (m == null) {
+            synchronized (byStrategy) {
+                m = byStrategy[strategy.ordinal()];
+                if (m == null) {
+                    m = new Meters(meterRegistry, keyPrefix, strategy);
+                    byStrategy[strategy.ordinal()] = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * 记录一次压缩
+     * @param rawBytes 压缩前的字节数
+     * @param compressedBytes 压缩后的字节数
+     * @param nanos 压缩耗时
+     */
+    public void compressed(int rawBytes, int compressedBytes, long nanos) {
+        compressionRawBytes.increment(rawBytes);
+        compressionCompressedBytes.increment(compressedBytes);
+        compress.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次压缩后没有变小的尝试，压缩比按原始数据计算
+     * @param rawBytes
+     * @param nanos 压缩耗时
+     */
+    public void compressionSkipped(int rawBytes, long nanos) {
+        compressionSkips.increment();
+        compressionRawBytes.increment(rawBytes);
+        compressionCompressedBytes.increment(rawBytes);
+        compress.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void decompressed(long nanos) {
+        decompress.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private double compressionRatio() {
+        double raw = compressionRawBytes.count();
+        return raw == 0 ? 1 : compressionCompressedBytes.count() / raw;
+    }
+
+    /**
+     * 压缩相关的指标，用于管理接口
+     * @return
+     */
+    public Map<String, Object> compressionSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("rawBytes", (long) compressionRawBytes.count());
+        summary.put("compressedBytes", (long) compressionCompressedBytes.count());
+        summary.put("ratio", compressionRatio());
+        summary.put("compressCount", compress.count());
+        summary.put("skips", (long) compressionSkips.count());
+        summary.put("compressMeanMicros", compress.mean(TimeUnit.MICROSECONDS));
+        summary.put("compressTotalMillis", compress.totalTime(TimeUnit.MILLISECONDS));
+        summary.put("decompressCount", decompress.count());
+        summary.put("decompressMeanMicros", decompress.mean(TimeUnit.MICROSECONDS));
+        summary.put("decompressTotalMillis", decompress.totalTime(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+
+    /**
+     * 按key前缀汇总的指标，用于管理接口
+     * @return key前缀 -> 策略 -> 指标
+     */
+    public Map<String, Map<String, Map<String, Object>>> summary() {
+        Map<String, Map<String, Map<String, Object>>> summary = new LinkedHashMap<>();
+        for (Map.Entry<String, Meters[]> entry : meters.entrySet()) {
+            Map<String, Map<String, Object>> byStrategy = new LinkedHashMap<>();
+            for (Meters m : entry.getValue()) {
+                if (m != null) {
+                    byStrategy.put(m.strategy.name().toLowerCase(), m.summary());
+                }
+            }
+            summary.put(entry.getKey(), byStrategy);
+        }
+        return summary;
+    }
+
+    /**
+     * 一个key前缀和策略下的全部指标
+     */
+    public static class Meters {
+
+        private final CacheStrategy strategy;
+
+        private final Counter localHits;
+
+        private final Counter redisHits;
+
+        private final Counter misses;
+
+        private final Counter tombstoneHits;
+
+        private final Counter staleServes;
+
+        private final Counter lockFailures;
+
+        private final Timer rebuild;
+
+        private final Timer redis;
+
+        private final Timer decode;
+
+        private Meters(MeterRegistry registry, String keyPrefix, CacheStrategy strategy) {
+            this.strategy = strategy;
+            Tags tags = Tags.of("prefix", keyPrefix, "strategy", strategy.name().toLowerCase());
+            this.localHits = Counter.builder("hmdp.cache.hits").tags(tags).tag("level", "local")
+                    .description("缓存命中次数").register(registry);
+            this.redisHits = Counter.builder("hmdp.cache.hits").tags(tags).tag("level", "redis")
+                    .description("缓存命中次数").register(registry);
+            this.misses = Counter.builder("hmdp.cache.misses").tags(tags)
+                    .description("缓存未命中次数").register(registry);
+            this.tombstoneHits = Counter.builder("hmdp.cache.tombstone.hits").tags(tags)
+                    .description("命中防止缓存穿透的空值的次数").register(registry);
+            this.staleServes = Counter.builder("hmdp.cache.stale.serves").tags(tags)
+                    .description("返回逻辑过期数据的次数").register(registry);
+            this.lockFailures = Counter.builder("hmdp.cache.lock.failures").tags(tags)
+                    .description("获取重建互斥锁失败的次数").register(registry);
+            this.rebuild = Timer.builder("hmdp.cache.rebuild").tags(tags).publishPercentileHistogram()
+                    .description("查询数据库重建缓存的耗时").register(registry);
+            this.redis = Timer.builder("hmdp.cache.redis").tags(tags)
+                    .description("查询redis的耗时").register(registry);
+            this.decode = Timer.builder("hmdp.cache.decode").tags(tags)
+                    .description("反序列化的耗时").register(registry);
+        }
+
+        public void localHit() {
+            localHits.increment();
+        }
+
+        public void redisHit() {
+            redisHits.increment();
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        public void tombstoneHit() {
+            tombstoneHits.increment();
+        }
+
+        public void staleServe() {
+            staleServes.increment();
+        }
+
+        public void lockFailure() {
+            lockFailures.increment();
+        }
+
+        public void rebuild(long nanos) {
+            rebuild.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void redis(long nanos) {
+            redis.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void decode(long nanos) {
+            decode.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Map<String, Object> summary() {
+            double hits = localHits.count() + redisHits.count();
+            double total = hits + misses.count() + tombstoneHits.count();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("localHits", (long) localHits.count());
+            summary.put("redisHits", (long) redisHits.count());
+            summary.put("misses", (long) misses.count());
+            summary.put("tombstoneHits", (long) tombstoneHits.count());
+            summary.put("staleServes", (long) staleServes.count());
+            summary.put("lockFailures", (long) lockFailures.count());
+            summary.put("hitRate", total == 0 ? 0 : (hits + tombstoneHits.count()) / total);
+            summary.put("rebuildCount", rebuild.count());
+            summary.put("rebuildMeanMillis", rebuild.mean(TimeUnit.MILLISECONDS));
+            summary.put("rebuildMaxMillis", rebuild.max(TimeUnit.MILLISECONDS));
+            summary.put("redisMeanMillis", redis.mean(TimeUnit.MILLISECONDS));
+            summary.put("decodeMeanMicros", decode.mean(TimeUnit.MICROSECONDS));
+            return summary;
+        }
+    }
+}
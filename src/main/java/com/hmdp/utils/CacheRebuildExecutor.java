@@ -0,0 +1,211 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheClientProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步重建缓存的线程池
+ * 1. 队列有界，大量key同时过期时不会无限堆积
+ * 2. 同一个key在队列中或正在重建时，不会重复提交
+ * 3. 队列已满时拒绝提交，调用方继续返回旧数据，等待下一次请求重新触发重建
+ * 跨节点的互斥由重建任务自己通过分布式锁保证，锁由执行任务的线程获取和释放
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class CacheRebuildExecutor {
+
+    @Resource
+    private CacheClientProperties cacheClientProperties;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 在队列中或正在重建的key
+     */
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submittedCount = new LongAdder();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder deduplicatedCount = new LongAdder();
+
+    private final LongAdder rebuildNanos = new LongAdder();
+
+    private final LongAccumulator maxRebuildNanos = new LongAccumulator(Math::max, 0);
+
+    @PostConstruct
+    public void init() {
+        CacheClientProperties.Rebuild rebuild = cacheClientProperties.getRebuild();
+        executor = new ThreadPoolExecutor(rebuild.getThreads(), rebuild.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(rebuild.getQueueCapacity()),
+                new NamedThreadFactory("cache-rebuild-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * key是否在队列中或正在重建
+     * @param key
+     * @return
+     */
+    public boolean isPending(String key) {
+        return pendingKeys.contains(key);
+    }
+
+    /**
+     * 提交单个key的重建任务
+     * @param key 缓存的key
+     * @param task
+     * @return 是否提交成功
+     */
+    public boolean submit(String key, Runnable task) {
+        return submit(List.of(key), task);
+    }
+
+    /**
+     * 提交一批key的重建任务，其中任意一个key已经在重建时放弃提交
+     * @param keys 缓存的key
+     * @param task
+     * @return 是否提交成功
+     */
+    public boolean submit(List<String> keys, Runnable task) {
+        // 1. 去重，同一个key只保留一个重建任务
+        List<String> added = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (!pendingKeys.add(key)) {
+                pendingKeys.removeAll(added);
+                deduplicatedCount.increment();
+                return false;
+            }
+            added.add(key);
+        }
+
+        // 2. 提交至有界队列，队列已满或线程池已关闭时拒绝，调用方继续返回旧数据
+        try {
+            executor.execute(new RebuildTask(keys, task));
+            submittedCount.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingKeys.removeAll(keys);
+            rejectedCount.increment();
+            log.debug("缓存重建队列已满，暂时返回旧数据：{}", keys);
+            return false;
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.sum();
+    }
+
+    /**
+     * 平均重建耗时（毫秒）
+     * @return
+     */
+    public double getAverageRebuildMillis() {
+        long count = completedCount.sum() + failedCount.sum();
+        return count == 0 ? 0 : rebuildNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * 最长重建耗时（毫秒）
+     * @return
+     */
+    public double getMaxRebuildMillis() {
+        return maxRebuildNanos.get() / 1e6;
+    }
+
+    /**
+     * 关闭时先等待队列中的任务执行完毕，超时后放弃剩余任务
+     * 未执行的任务还没有获取互斥锁，正在执行的任务被中断后在finally中释放互斥锁
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            long timeout = cacheClientProperties.getRebuild().getShutdownTimeout().toMillis();
+            if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> dropped = executor.shutdownNow();
+        log.warn("缓存重建线程池关闭超时，放弃{}个未执行的重建任务", dropped.size());
+    }
+
+    private class RebuildTask implements Runnable {
+
+        private final List<String> keys;
+
+        private final Runnable task;
+
+        private RebuildTask(List<String> keys, Runnable task) {
+            this.keys = keys;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long begin = System.nanoTime();
+            try {
+                task.run();
+                completedCount.increment();
+            } catch (Exception e) {
+                failedCount.increment();
+                log.error("缓存重建失败：{}", keys, e);
+            } finally {
+                long elapsed = System.nanoTime() - begin;
+                rebuildNanos.add(elapsed);
+                maxRebuildNanos.accumulate(elapsed);
+                pendingKeys.removeAll(keys);
+            }
+        }
+    }
+}
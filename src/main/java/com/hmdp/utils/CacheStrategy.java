@@ -0,0 +1,30 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存查询策略，通过hmdp.cache.strategies按key前缀配置
+ * THROUGH、MUTEX使用普通格式存储，LOGICAL_EXPIRE、XFETCH使用逻辑过期格式存储
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public enum CacheStrategy {
+
+    /**
+     * 缓存空值解决缓存穿透
+     */
+    THROUGH,
+
+    /**
+     * 互斥锁解决缓存击穿
+     */
+    MUTEX,
+
+    /**
+     * 逻辑过期解决缓存击穿，过期后异步重建
+     */
+    LOGICAL_EXPIRE,
+
+    /**
+     * 逻辑过期的基础上，按重建耗时在过期前概率性地提前异步重建
+     */
+    XFETCH
+}
@@ -0,0 +1,101 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存预热的进度
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class CacheWarmUpProgress {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String name;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long endTime;
+
+    private volatile State state = State.RUNNING;
+
+    /**
+     * 从数据库中读取的条数
+     */
+    private final LongAdder loadedCount = new LongAdder();
+
+    /**
+     * 写入redis的条数
+     */
+    private final LongAdder writtenCount = new LongAdder();
+
+    /**
+     * 写入失败的条数
+     */
+    private final LongAdder failedCount = new LongAdder();
+
+    public CacheWarmUpProgress(String name) {
+        this.name = name;
+    }
+
+    void loaded(int count) {
+        loadedCount.add(count);
+    }
+
+    void written(int count) {
+        writtenCount.add(count);
+    }
+
+    void failed(int count) {
+        failedCount.add(count);
+    }
+
+    void finish(State state) {
+        this.endTime = System.currentTimeMillis();
+        this.state = state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getLoadedCount() {
+        return loadedCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 已经耗费的时间（毫秒）
+     * @return
+     */
+    public long getElapsedMillis() {
+        long end = state == State.RUNNING ? System.currentTimeMillis() : endTime;
+        return end - startTime;
+    }
+
+    /**
+     * 每秒写入redis的条数
+     * @return
+     */
+    public long getThroughput() {
+        long elapsed = Math.max(1L, getElapsedMillis());
+        return getWrittenCount() * 1000 / elapsed;
+    }
+}
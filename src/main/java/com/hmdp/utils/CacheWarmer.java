@@ -0,0 +1,190 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheClientProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 缓存预热
+ * 由一个线程按主键分批读取数据库，每批数据交给工作线程并行编码，再通过pipeline批量写入redis
+ * 同时提交的批次数有上限，数据库读取快于redis写入时读取线程等待，内存占用保持稳定
+ * 同一个预热任务通过分布式锁保证所有节点中同时只执行一次，锁由读取线程获取和释放，预热期间由看门狗续期
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class CacheWarmer {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private RedisLockService redisLockService;
+
+    @Resource
+    private CacheClientProperties cacheClientProperties;
+
+    /**
+     * 负责分批读取数据库
+     */
+    private ExecutorService loader;
+
+    /**
+     * 负责编码与写入redis
+     */
+    private ExecutorService writers;
+
+    /**
+     * 每个预热任务最近一次的进度
+     */
+    private final Map<String, CacheWarmUpProgress> progresses = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点已经提交、还没有结束的预热任务，同一个任务不会在读取线程中排队
+     */
+    private final Set<String> submitted = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        loader = Executors.newSingleThreadExecutor(new NamedThreadFactory("cache-warm-up-", true));
+        writers = Executors.newFixedThreadPool(cacheClientProperties.getWarmUp().getThreads(),
+                new NamedThreadFactory("cache-warm-up-writer-", true));
+    }
+
+    /**
+     * 查询预热任务最近一次的进度
+     * @param name
+     * @return 从未执行过时返回null
+     */
+    public CacheWarmUpProgress getProgress(String name) {
+        return progresses.get(name);
+    }
+
+    /**
+     * 异步预热缓存，同一个预热任务在所有节点中同时只会执行一次
+     * @param name 预热任务的名称
+     * @param keyPrefix
+     * @param pageLoader 根据上一批最后一条数据的id和每批条数，查询下一批数据，按id升序排列
+     * @param idGetter
+     * @param time
+     * @param unit
+     * @return 本次预热的进度，已经有节点在预热时返回null
+     */
+    public <R> CacheWarmUpProgress warmUp(String name, String keyPrefix,
+                                          BiFunction<Long, Integer, List<R>> pageLoader, Function<R, Long> idGetter,
+                                          Long time, TimeUnit unit) {
+        // 1. 本节点已经提交过该任务时直接返回，避免排在正在执行的预热之后
+        if (!submitted.add(name)) {
+            return null;
+        }
+
+        // 2. 由读取线程获取预热锁，避免多个节点同时启动时重复扫描整张表
+        // 锁属于获取它的线程，预热结束后由同一个线程释放；看门狗续期，预热时间再长锁也不会被其他节点获取
+        CacheWarmUpProgress progress = new CacheWarmUpProgress(name);
+        CompletableFuture<Boolean> acquired = new CompletableFuture<>();
+        try {
+            loader.execute(() -> {
+                try {
+                    RedisLock lock = redisLockService.getLock(RedisConstants.LOCK_WARM_UP_KEY + name);
+                    if (!lock.tryLock()) {
+                        acquired.complete(false);
+                        return;
+                    }
+                    progresses.put(name, progress);
+                    acquired.complete(true);
+                    try {
+                        run(progress, keyPrefix, pageLoader, idGetter, time, unit);
+                        progress.finish(CacheWarmUpProgress.State.COMPLETED);
+                        log.info("缓存预热{}完成，写入{}条，失败{}条，耗时{}ms，{}条/秒", name, progress.getWrittenCount(),
+                                progress.getFailedCount(), progress.getElapsedMillis(), progress.getThroughput());
+                    } catch (Exception e) {
+                        progress.finish(CacheWarmUpProgress.State.FAILED);
+                        log.error("缓存预热{}失败，已写入{}条", name, progress.getWrittenCount(), e);
+                    } finally {
+                        lock.unlock();
+                    }
+                } catch (Exception e) {
+                    // 获取或释放锁失败，释放失败时锁已经过期，不影响其他节点
+                    acquired.completeExceptionally(e);
+                    log.error("缓存预热{}的锁操作失败", name, e);
+                } finally {
+                    submitted.remove(name);
+                }
+            });
+        } catch (RuntimeException e) {
+            submitted.remove(name);
+            throw e;
+        }
+
+        // 3. 等待读取线程获取锁的结果，已经有节点在预热时返回null
+        return acquired.join() ? progress : null;
+    }
+
+    private <R> void run(CacheWarmUpProgress progress, String keyPrefix,
+                         BiFunction<Long, Integer, List<R>> pageLoader, Function<R, Long> idGetter,
+                         Long time, TimeUnit unit) throws InterruptedException {
+        CacheClientProperties.WarmUp warmUp = cacheClientProperties.getWarmUp();
+        int batchSize = warmUp.getBatchSize();
+        int maxInFlight = warmUp.getThreads() * 2;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long lastId = 0;
+        int batches = 0;
+        while (true) {
+            // 1. 按主键读取下一批数据
+            List<R> batch = pageLoader.apply(lastId, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            progress.loaded(batch.size());
+
+            // 2. 交给工作线程编码并写入redis，正在写入的批次数达到上限时等待
+            inFlight.acquire();
+            writers.execute(() -> {
+                try {
+                    progress.written(cacheClient.setAll(keyPrefix, batch, idGetter, time, unit));
+                } catch (Exception e) {
+                    progress.failed(batch.size());
+                    log.warn("缓存预热写入失败，本批{}条", batch.size(), e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+
+            if (++batches % 50 == 0) {
+                log.info("缓存预热{}进度：已读取{}条，已写入{}条，{}条/秒", progress.getName(),
+                        progress.getLoadedCount(), progress.getWrittenCount(), progress.getThroughput());
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+            lastId = idGetter.apply(batch.get(batch.size() - 1));
+        }
+
+        // 3. 等待所有批次写入完毕
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+        writers.shutdownNow();
+    }
+}
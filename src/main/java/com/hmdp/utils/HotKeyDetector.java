@@ -0,0 +1,235 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点key探测
+ * 按采样率对访问进行采样，使用count-min sketch统计滑动窗口内每个key的访问次数
+ * 滑动窗口被切分成若干个时间片，每个时间片一个sketch，时间片轮转时清空最旧的sketch
+ * 估算的访问次数超过阈值的key被标记为热点key，在整个窗口内没有再次达到阈值时自动移除
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class HotKeyDetector {
+
+    /**
+     * 每个sketch的哈希函数个数（行数）
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * 每行的计数器个数，取2的幂
+     */
+    private final int width;
+
+    /**
+     * 每个时间片一个sketch，第slot个sketch的第row行第column列保存在sketches[slot][row * width + column]
+     */
+    private final AtomicLongArray[] sketches;
+
+    /**
+     * 每个sketch当前所属的时间片编号，用于判断是否需要清空
+     */
+    private final AtomicLong[] sketchEpochs;
+
+    private final long slotMillis;
+
+    private final long windowMillis;
+
+    private final double sampleRate;
+
+    /**
+     * 窗口内采样后的阈值
+     */
+    private final long sampledThreshold;
+
+    private final int capacity;
+
+    /**
+     * 当前的热点key，value为最近一次达到阈值时的状态
+     */
+    private final Map<String, HotKey> hotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param windowMillis 滑动窗口的长度
+     * @param slots 窗口切分的时间片个数
+     * @param width 每行的计数器个数
+     * @param sampleRate 采样率，(0, 1]
+     * @param threshold 窗口内访问次数达到该值的key为热点key
+     * @param capacity 热点key的最大个数
+     */
+    public HotKeyDetector(long windowMillis, int slots, int width, double sampleRate, long threshold, int capacity) {
+        if (windowMillis <= 0 || slots <= 0 || width <= 0 || sampleRate <= 0 || sampleRate > 1 || threshold <= 0) {
+            throw new IllegalArgumentException("热点key探测参数不合法");
+        }
+        int w = 1;
+        while (w < width) {
+            w <<= 1;
+        }
+        this.width = w;
+        this.windowMillis = windowMillis;
+        this.slotMillis = Math.max(1L, windowMillis / slots);
+        this.sampleRate = sampleRate;
+        this.sampledThreshold = Math.max(1L, (long) Math.ceil(threshold * sampleRate));
+        this.capacity = capacity;
+        this.sketches = new AtomicLongArray[slots];
+        this.sketchEpochs = new AtomicLong[slots];
+        for (int i = 0; i < slots; i++) {
+            sketches[i] = new AtomicLongArray(DEPTH * this.width);
+            sketchEpochs[i] = new AtomicLong(-1);
+        }
+    }
+
+    /**
+     * 记录一次访问
+     * @param key
+     * @return 该key是否为热点key
+     */
+    public boolean record(String key) {
+        long now = System.currentTimeMillis();
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return isHot(key, now);
+        }
+
+        // 1. 找到当前时间片的sketch，时间片轮转后先清空旧数据
+        long epoch = now / slotMillis;
+        int slot = (int) (epoch % sketches.length);
+        AtomicLong sketchEpoch = sketchEpochs[slot];
+        long current = sketchEpoch.get();
+        if (current != epoch && sketchEpoch.compareAndSet(current, epoch)) {
+            clear(sketches[slot]);
+            expire(now);
+        }
+
+        // 2. 在当前时间片中计数，再估算整个窗口内的访问次数
+        long[] hash = MurmurHash.hash128(key);
+        AtomicLongArray sketch = sketches[slot];
+        for (int row = 0; row < DEPTH; row++) {
+            sketch.incrementAndGet(index(hash, row));
+        }
+        long estimate = estimate(hash, epoch);
+
+        // 3. 达到阈值时标记为热点key
+        if (estimate >= sampledThreshold) {
+            HotKey hotKey = hotKeys.get(key);
+            if (hotKey != null) {
+                hotKey.update(estimate, now);
+            } else if (hotKeys.size() < capacity) {
+                hotKeys.put(key, new HotKey(key, estimate, now));
+            }
+            return true;
+        }
+        return isHot(key, now);
+    }
+
+    /**
+     * 判断key当前是否为热点key
+     * @param key
+     * @return
+     */
+    public boolean isHot(String key) {
+        return isHot(key, System.currentTimeMillis());
+    }
+
+    /**
+     * 当前的热点key，按访问次数从高到低排列
+     * @return
+     */
+    public List<HotKey> getHotKeys() {
+        long now = System.currentTimeMillis();
+        List<HotKey> result = new ArrayList<>();
+        for (HotKey hotKey : hotKeys.values()) {
+            if (now - hotKey.lastSeen < windowMillis) {
+                result.add(hotKey);
+            }
+        }
+        result.sort(Comparator.comparingLong(HotKey::getEstimate).reversed());
+        return result;
+    }
+
+    private boolean isHot(String key, long now) {
+        HotKey hotKey = hotKeys.get(key);
+        return hotKey != null && now - hotKey.lastSeen < windowMillis;
+    }
+
+    /**
+     * 每行取窗口内各时间片的计数之和，再取各行中的最小值
+     */
+    private long estimate(long[] hash, long epoch) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            long sum = 0;
+            for (int slot = 0; slot < sketches.length; slot++) {
+                // 跳过已经滑出窗口、尚未清空的时间片
+                if (epoch - sketchEpochs[slot].get() < sketches.length) {
+                    sum += sketches[slot].get(index);
+                }
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    private int index(long[] hash, int row) {
+        return row * width + (int) ((hash[0] + row * hash[1]) & (width - 1));
+    }
+
+    private void expire(long now) {
+        hotKeys.values().removeIf(hotKey -> now - hotKey.lastSeen >= windowMillis);
+    }
+
+    private static void clear(AtomicLongArray sketch) {
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.set(i, 0);
+        }
+    }
+
+    /**
+     * 热点key及其访问次数
+     */
+    public class HotKey {
+
+        private final String key;
+
+        private volatile long sampledEstimate;
+
+        private volatile long lastSeen;
+
+        private HotKey(String key, long sampledEstimate, long lastSeen) {
+            this.key = key;
+            this.sampledEstimate = sampledEstimate;
+            this.lastSeen = lastSeen;
+        }
+
+        private void update(long sampledEstimate, long lastSeen) {
+            this.sampledEstimate = sampledEstimate;
+            this.lastSeen = lastSeen;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 估算的窗口内访问次数
+         * @return
+         */
+        public long getEstimate() {
+            return (long) (sampledEstimate / sampleRate);
+        }
+
+        public long getLastSeen() {
+            return lastSeen;
+        }
+    }
+}
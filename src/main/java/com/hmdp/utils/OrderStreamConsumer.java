@@ -0,0 +1,544 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单消息队列的消费者，将redis中获得秒杀资格的订单写入数据库
+ * 1. 每个分片有一个订单消息队列，所有节点在每个stream上属于同一个消费者组，每条消息只投递给一个消费者；
+ *    每个节点启动若干消费者线程，各个分片的stream平均分给这些线程，一次读取只访问一个stream
+ * 2. 读取到消息后最多再等待linger凑满一批，整批订单在一个事务中写入数据库，事务提交之后才确认消息，
+ *    确认的同时从stream中删除，stream的长度即为积压量
+ * 3. 整批写入失败时拆成两半分别重试，直到找出写入失败的单个订单，其余订单不受影响；
+ *    数据库中库存不足的订单撤销秒杀资格，用户已经持有订单的只归还库存，仍然占用一人一单的资格
+ * 4. 定时检查投递后长时间没有确认的消息，由本节点认领后重新处理，消费者宕机时订单不会丢失
+ * 5. 无法解析或超过最大投递次数的消息转入死信队列，不再阻塞其他消息；死信队列中的订单仍占用秒杀资格，修复后可以重新写入
+ * 6. 订单写入按订单id幂等，消息被重复投递时不会重复写入
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class OrderStreamConsumer {
+
+    private static final DefaultRedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        ACK_SCRIPT.setLocation(new ClassPathResource("lua/stream_ack.lua"));
+        ACK_SCRIPT.setResultType(Long.class);
+    }
+
+    private static final String FIELD_ID = "id";
+
+    private static final String FIELD_USER_ID = "userId";
+
+    private static final String FIELD_VOUCHER_ID = "voucherId";
+
+    /**
+     * 每次检查的未确认消息数
+     */
+    private static final int PENDING_BATCH = 100;
+
+    /**
+     * 本节点的id，与线程序号一起组成消费者名称
+     */
+    private final String nodeId = UUID.randomUUID().toString(true);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService consumers;
+
+    /**
+     * 认领未确认的消息并刷新积压量
+     */
+    private ScheduledExecutorService recovery;
+
+    private volatile boolean running;
+
+    /**
+     * 已经创建消费者组的stream
+     */
+    private final Set<String> groupCreated = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 写入数据库的订单数
+     */
+    private Counter created;
+
+    /**
+     * 不满足下单条件、撤销秒杀资格的订单数
+     */
+    private Counter rejected;
+
+    /**
+     * 重复投递的订单数
+     */
+    private Counter duplicated;
+
+    /**
+     * 从其他消费者认领的消息数
+     */
+    private Counter claimed;
+
+    /**
+     * 转入死信队列的消息数
+     */
+    private Counter deadLettered;
+
+    /**
+     * 整批写入失败后拆分重试的次数
+     */
+    private Counter splits;
+
+    /**
+     * 每批写入的订单数
+     */
+    private DistributionSummary batchSize;
+
+    /**
+     * 每批订单写入数据库的耗时
+     */
+    private Timer persist;
+
+    /**
+     * stream中没有处理完的消息数，由定时任务刷新
+     */
+    private final AtomicLong lag = new AtomicLong();
+
+    /**
+     * 已经投递但没有确认的消息数，由定时任务刷新
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        created = Counter.builder("hmdp.seckill.orders.created")
+                .description("写入数据库的秒杀订单数").register(meterRegistry);
+        rejected = Counter.builder("hmdp.seckill.orders.rejected")
+                .description("不满足下单条件而撤销秒杀资格的订单数").register(meterRegistry);
+        duplicated = Counter.builder("hmdp.seckill.orders.duplicated")
+                .description("重复投递而跳过的订单数").register(meterRegistry);
+        claimed = Counter.builder("hmdp.seckill.orders.claimed")
+                .description("从其他消费者认领的订单消息数").register(meterRegistry);
+        deadLettered = Counter.builder("hmdp.seckill.orders.dead.letter")
+                .description("转入死信队列的订单消息数").register(meterRegistry);
+        splits = Counter.builder("hmdp.seckill.orders.batch.splits")
+                .description("整批写入失败后拆成两半重试的次数").register(meterRegistry);
+        batchSize = DistributionSummary.builder("hmdp.seckill.orders.batch.size")
+                .description("每批写入数据库的订单数").register(meterRegistry);
+        persist = Timer.builder("hmdp.seckill.orders.persist")
+                .description("每批订单写入数据库的耗时").register(meterRegistry);
+        Gauge.builder("hmdp.seckill.orders.lag", lag, AtomicLong::get)
+                .description("订单消息队列中没有处理完的消息数").register(meterRegistry);
+        Gauge.builder("hmdp.seckill.orders.pending", pending, AtomicLong::get)
+                .description("已经投递但没有确认的订单消息数").register(meterRegistry);
+    }
+
+    /**
+     * 应用启动完成之后开始消费，redis不可用时消费者线程不断重试，不影响启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        running = true;
+        consumers = Executors.newFixedThreadPool(stream.getConsumers(),
+                new NamedThreadFactory("order-stream-consumer-", false));
+        List<String> streamKeys = seckillAdmission.streamKeys();
+        for (int i = 0; i < stream.getConsumers(); i++) {
+            String consumerName = nodeId + "-" + i;
+            // 线程数少于分片数时一个线程负责多个stream，多于分片数时多个线程共同消费一个stream
+            List<String> owned = new ArrayList<>();
+            for (int j = i % streamKeys.size(); j < streamKeys.size(); j += stream.getConsumers()) {
+                owned.add(streamKeys.get(j));
+            }
+            consumers.execute(() -> consume(consumerName, owned));
+        }
+        recovery = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("order-stream-recovery-", true));
+        long interval = stream.getRecoveryInterval().toMillis();
+        recovery.scheduleWithFixedDelay(this::recover, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 消费者线程依次读取负责的stream中的一批新消息并写入数据库
+     * 只负责一个stream时没有消息就阻塞等待；负责多个stream时不阻塞地轮流读取，连续一轮都没有消息时短暂阻塞在最后一个stream上
+     * @param consumerName
+     * @param streamKeys 本线程负责的stream
+     */
+    private void consume(String consumerName, List<String> streamKeys) {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        Consumer consumer = Consumer.from(stream.getGroup(), consumerName);
+        StreamReadOptions poll = StreamReadOptions.empty().count(stream.getBatchSize());
+        StreamReadOptions block = poll.block(streamKeys.size() == 1 ? stream.getBlock() : stream.getLinger());
+        int next = 0;
+        int empty = 0;
+        while (running) {
+            String streamKey = streamKeys.get(next);
+            next = (next + 1) % streamKeys.size();
+            try {
+                ensureGroup(streamKey);
+                StreamOffset<String> offset = StreamOffset.create(streamKey, ReadOffset.lastConsumed());
+                List<MapRecord<String, Object, Object>> records =
+                        read(consumer, empty >= streamKeys.size() - 1 ? block : poll, offset);
+                if (records == null || records.isEmpty()) {
+                    empty++;
+                    continue;
+                }
+                empty = 0;
+                handle(fill(new ArrayList<>(records), consumer, offset));
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                if (isError(e, "NOGROUP")) {
+                    // stream被删除后消费者组随之消失，重新创建
+                    groupCreated.remove(streamKey);
+                }
+                log.error("读取订单消息失败：{}", streamKey, e);
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取到的消息不足一批时，在linger时间内继续读取，凑满一批再写入数据库
+     * 抢购高峰时每次读取都能读满，不需要等待；流量较小时最多延迟linger
+     */
+    private List<MapRecord<String, Object, Object>> fill(List<MapRecord<String, Object, Object>> records,
+                                                        Consumer consumer, StreamOffset<String> offset) {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        long deadline = System.currentTimeMillis() + stream.getLinger().toMillis();
+        while (records.size() < stream.getBatchSize()) {
+            // 阻塞时间为0表示一直等待，剩余时间不足1毫秒时不再读取
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            List<MapRecord<String, Object, Object>> more = read(consumer,
+                    StreamReadOptions.empty().count(stream.getBatchSize() - records.size())
+                            .block(Duration.ofMillis(remaining)), offset);
+            if (more == null || more.isEmpty()) {
+                break;
+            }
+            records.addAll(more);
+        }
+        return records;
+    }
+
+    /**
+     * 以消费者组中的消费者读取一个stream
+     * read的offset参数是泛型可变参数，传入一个offset时编译器会提示创建泛型数组，这里只有一个元素，不存在类型问题
+     */
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> read(Consumer consumer, StreamReadOptions options,
+                                                         StreamOffset<String> offset) {
+        return stringRedisTemplate.opsForStream().read(consumer, options, offset);
+    }
+
+    /**
+     * 处理一批订单消息，无法解析的消息直接转入死信队列，其余整批写入数据库
+     * @param records
+     */
+    private void handle(List<MapRecord<String, Object, Object>> records) {
+        List<OrderMessage> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            // 无法解析的消息重试也不会成功
+            try {
+                messages.add(new OrderMessage(record.getStream(), record.getId(), toVoucherOrder(record.getValue())));
+            } catch (Exception e) {
+                deadLetter(record, "无法解析：" + e.getMessage());
+            }
+        }
+        if (!messages.isEmpty()) {
+            persist(messages);
+        }
+    }
+
+    /**
+     * 整批订单在一个事务中写入数据库，事务提交后确认整批消息
+     * 写入失败时拆成两半分别重试；单个订单写入失败时不确认，消息留在待确认列表中，由定时任务认领后重试
+     * @param messages
+     */
+    private void persist(List<OrderMessage> messages) {
+        List<VoucherOrder> voucherOrders = new ArrayList<>(messages.size());
+        for (OrderMessage message : messages) {
+            voucherOrders.add(message.voucherOrder);
+        }
+
+        // 1. 整批写入数据库
+        Map<Long, IVoucherOrderService.RejectReason> rejectedOrders;
+        long begin = System.nanoTime();
+        try {
+            rejectedOrders = voucherOrderService.createVoucherOrders(voucherOrders);
+        } catch (Exception e) {
+            // 2. 写入失败，整批已经回滚，拆成两半分别重试，隔离出导致失败的订单
+            if (messages.size() > 1) {
+                splits.increment();
+                int half = messages.size() / 2;
+                persist(messages.subList(0, half));
+                persist(messages.subList(half, messages.size()));
+                return;
+            }
+            if (e instanceof DuplicateKeyException) {
+                // 同一订单被并发重放，另一个消费者已经写入
+                duplicated.increment();
+                ack(messages);
+                return;
+            }
+            log.error("订单写入数据库失败，等待重试：{}", voucherOrders.get(0).getId(), e);
+            return;
+        } finally {
+            persist.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(messages.size());
+
+        // 3. 不满足下单条件的订单归还redis中的库存，保持与数据库一致
+        for (VoucherOrder voucherOrder : voucherOrders) {
+            IVoucherOrderService.RejectReason reason = rejectedOrders.get(voucherOrder.getId());
+            if (reason == IVoucherOrderService.RejectReason.OUT_OF_STOCK) {
+                seckillAdmission.rollback(voucherOrder.getVoucherId(), voucherOrder.getUserId(), voucherOrder.getId());
+            } else if (reason == IVoucherOrderService.RejectReason.DUPLICATE) {
+                // 用户确实持有订单，不能移除下单用户，否则可以再次抢购
+                seckillAdmission.restock(voucherOrder.getVoucherId(), voucherOrder.getUserId(), voucherOrder.getId());
+            }
+        }
+        rejected.increment(rejectedOrders.size());
+        created.increment(messages.size() - rejectedOrders.size());
+
+        // 4. 事务已经提交，确认整批消息
+        ack(messages);
+    }
+
+    /**
+     * 认领各个stream中投递后长时间没有确认的消息并重新处理，超过最大投递次数的转入死信队列，同时刷新积压量
+     */
+    private void recover() {
+        long totalLag = 0;
+        long totalPending = 0;
+        for (String streamKey : seckillAdmission.streamKeys()) {
+            if (!running) {
+                return;
+            }
+            try {
+                recover(streamKey);
+                Long size = stringRedisTemplate.opsForStream().size(streamKey);
+                totalLag += size == null ? 0L : size;
+                totalPending += stringRedisTemplate.opsForStream()
+                        .pending(streamKey, seckillProperties.getStream().getGroup()).getTotalPendingMessages();
+            } catch (Exception e) {
+                log.warn("检查未确认的订单消息失败：{}", streamKey, e);
+            }
+        }
+        lag.set(totalLag);
+        pending.set(totalPending);
+    }
+
+    private void recover(String streamKey) {
+        SeckillProperties.Stream stream = seckillProperties.getStream();
+        ensureGroup(streamKey);
+        PendingMessages pendingMessages = stringRedisTemplate.opsForStream()
+                .pending(streamKey, stream.getGroup(), Range.unbounded(), PENDING_BATCH);
+        List<MapRecord<String, Object, Object>> retry = new ArrayList<>();
+        for (PendingMessage pendingMessage : pendingMessages) {
+            if (!running) {
+                return;
+            }
+            if (pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(stream.getPendingIdle()) < 0) {
+                continue;
+            }
+            // 认领成功才处理，多个节点同时检查时只有一个节点能认领到
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().claim(
+                    streamKey, stream.getGroup(), nodeId + "-recovery",
+                    stream.getPendingIdle(), pendingMessage.getId());
+            for (MapRecord<String, Object, Object> record : records) {
+                claimed.increment();
+                if (pendingMessage.getTotalDeliveryCount() >= stream.getMaxDeliveries()) {
+                    deadLetter(record, "超过最大投递次数：" + pendingMessage.getTotalDeliveryCount());
+                } else {
+                    retry.add(record);
+                }
+            }
+        }
+
+        // 认领到的消息合并成一批重新写入
+        if (!retry.isEmpty()) {
+            handle(retry);
+        }
+    }
+
+    /**
+     * 将消息转入死信队列并确认原消息
+     * @param record
+     * @param reason
+     */
+    private void deadLetter(MapRecord<String, Object, Object> record, String reason) {
+        Map<String, String> fields = new HashMap<>();
+        record.getValue().forEach((k, v) -> fields.put(String.valueOf(k), String.valueOf(v)));
+        fields.put("originId", record.getId().getValue());
+        fields.put("reason", reason);
+        stringRedisTemplate.opsForStream().add(seckillProperties.getStream().getDeadLetterKey(), fields);
+        ack(record.getStream(), List.of(record.getId()));
+        deadLettered.increment();
+        log.error("订单消息转入死信队列：{}，{}", record.getId(), reason);
+    }
+
+    /**
+     * 按stream确认一批消息，认领重试的一批消息可能来自多个stream
+     * @param messages
+     */
+    private void ack(List<OrderMessage> messages) {
+        Map<String, List<RecordId>> byStream = new HashMap<>();
+        for (OrderMessage message : messages) {
+            byStream.computeIfAbsent(message.streamKey, k -> new ArrayList<>()).add(message.recordId);
+        }
+        byStream.forEach(this::ack);
+    }
+
+    /**
+     * 确认消息并从stream中删除，一批消息只需要一次往返
+     * @param streamKey
+     * @param recordIds
+     */
+    private void ack(String streamKey, List<RecordId> recordIds) {
+        Object[] args = new Object[recordIds.size() + 1];
+        args[0] = seckillProperties.getStream().getGroup();
+        for (int i = 0; i < recordIds.size(); i++) {
+            args[i + 1] = recordIds.get(i).getValue();
+        }
+        stringRedisTemplate.execute(ACK_SCRIPT, List.of(streamKey), args);
+    }
+
+    /**
+     * 创建消费者组，从stream的第一条消息开始消费；stream不存在时一并创建
+     * @param streamKey
+     */
+    private void ensureGroup(String streamKey) {
+        if (groupCreated.contains(streamKey)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0"),
+                    seckillProperties.getStream().getGroup());
+        } catch (Exception e) {
+            // 消费者组已经存在
+            if (!isError(e, "BUSYGROUP")) {
+                throw e;
+            }
+        }
+        groupCreated.add(streamKey);
+    }
+
+    /**
+     * 判断异常是否由指定的redis错误引起
+     */
+    private static boolean isError(Throwable e, String code) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static VoucherOrder toVoucherOrder(Map<Object, Object> fields) {
+        VoucherOrder voucherOrder = new VoucherOrder();
+        voucherOrder.setId(Long.valueOf((String) fields.get(FIELD_ID)));
+        voucherOrder.setUserId(Long.valueOf((String) fields.get(FIELD_USER_ID)));
+        voucherOrder.setVoucherId(Long.valueOf((String) fields.get(FIELD_VOUCHER_ID)));
+        return voucherOrder;
+    }
+
+    /**
+     * 停止读取新消息，等待正在处理的消息完成；没有完成的消息留在待确认列表中，由其他节点认领
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (recovery != null) {
+            recovery.shutdownNow();
+        }
+        if (consumers != null) {
+            consumers.shutdown();
+            if (!consumers.awaitTermination(seckillProperties.getStream().getShutdownTimeout().toMillis(),
+                    TimeUnit.MILLISECONDS)) {
+                consumers.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 解析后的订单及其消息id
+     */
+    private static class OrderMessage {
+
+        private final String streamKey;
+
+        private final RecordId recordId;
+
+        private final VoucherOrder voucherOrder;
+
+        private OrderMessage(String streamKey, RecordId recordId, VoucherOrder voucherOrder) {
+            this.streamKey = streamKey;
+            this.recordId = recordId;
+            this.voucherOrder = voucherOrder;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 取消超时未支付的订单
+ * 1. 订单的超时时间保存在redis的zset中，每个分片一个，获得秒杀资格时由seckill.lua写入；所有节点共用，节点重启不会丢失，
+ *    每个订单只占一个member，百万级的待超时订单只需要几十MB内存，写入和取出到期订单都是O(log N)
+ * 2. 每个节点定时认领一批到期的订单，认领时把超时时间推迟一个处理期限，节点宕机时由其他节点重新认领
+ * 3. 先在数据库事务中把未支付的订单改为已取消并归还库存，提交之后再归还redis中的库存、移除下单用户。
+ *    两步分别在数据库和redis中执行，不是一个原子操作：数据库中按订单状态只取消一次；redis中的撤销与移除超时时间
+ *    在同一个lua脚本中执行，超时时间还在就说明redis中还没有撤销。第二步之前失败时超时时间保留，
+ *    重新认领后数据库返回已取消，再执行redis中的撤销；超时时间已经移除的订单不会再次撤销，
+ *    用户之后重新下单也不会被误移除
+ * 4. 已支付的订单直接移除；到期时订单还在消息队列中没有写入数据库的，推迟一段时间后再检查
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class OrderTimeoutCanceller {
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        CLAIM_SCRIPT.setLocation(new ClassPathResource("lua/order_timeout_claim.lua"));
+        CLAIM_SCRIPT.setResultType(List.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService poller;
+
+    /**
+     * 超时取消的订单数
+     */
+    private Counter cancelled;
+
+    /**
+     * 到期时已经支付的订单数
+     */
+    private Counter paid;
+
+    /**
+     * 到期时还没有写入数据库、推迟检查的次数
+     */
+    private Counter postponed;
+
+    /**
+     * 等待超时的订单数，由定时任务刷新
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cancelled = Counter.builder("hmdp.seckill.orders.timeout.cancelled")
+                .description("超时未支付而取消的订单数").register(meterRegistry);
+        paid = Counter.builder("hmdp.seckill.orders.timeout.paid")
+                .description("到期时已经支付、不需要取消的订单数").register(meterRegistry);
+        postponed = Counter.builder("hmdp.seckill.orders.timeout.postponed")
+                .description("到期时订单还没有写入数据库而推迟检查的次数").register(meterRegistry);
+        Gauge.builder("hmdp.seckill.orders.timeout.pending", pending, AtomicLong::get)
+                .description("等待超时检查的订单数").register(meterRegistry);
+    }
+
+    /**
+     * 应用启动完成之后开始检查，redis不可用时下一个周期重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        SeckillProperties.Timeout timeout = seckillProperties.getTimeout();
+        if (!timeout.isEnabled()) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("order-timeout-", true));
+        long interval = timeout.getPollInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 逐个分片认领并处理所有到期的订单
+     */
+    void poll() {
+        SeckillProperties.Timeout timeout = seckillProperties.getTimeout();
+        long total = 0;
+        for (String key : seckillAdmission.timeoutKeys()) {
+            try {
+                // 到期的订单超过一批时连续认领，直到没有到期的订单
+                while (true) {
+                    List<String> due = claim(key, timeout);
+                    for (String member : due) {
+                        handle(key, member);
+                    }
+                    if (due.size() < timeout.getBatchSize()) {
+                        break;
+                    }
+                }
+                Long size = stringRedisTemplate.opsForZSet().zCard(key);
+                total += size == null ? 0L : size;
+            } catch (Exception e) {
+                log.error("检查超时订单失败：{}", key, e);
+            }
+        }
+        pending.set(total);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> claim(String key, SeckillProperties.Timeout timeout) {
+        List<String> due = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(key),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(timeout.getBatchSize()),
+                String.valueOf(timeout.getLease().toMillis()));
+        return due == null ? Collections.emptyList() : due;
+    }
+
+    /**
+     * 处理一个到期的订单，处理完成后从zset中删除；失败时保留，处理期限过后重新认领
+     * @param key 订单所在分片的zset
+     * @param member "订单id:秒杀券id:用户id"
+     */
+    private void handle(String key, String member) {
+        String[] parts = member.split(":");
+        if (parts.length != 3) {
+            log.error("无法解析的超时订单：{}", member);
+            stringRedisTemplate.opsForZSet().remove(key, member);
+            return;
+        }
+        Long orderId = Long.valueOf(parts[0]);
+        Long voucherId = Long.valueOf(parts[1]);
+        Long userId = Long.valueOf(parts[2]);
+        try {
+            switch (voucherOrderService.cancelUnpaidOrder(orderId, voucherId)) {
+                case CANCELLED:
+                    // 数据库事务已经提交，归还redis中的库存；数据库下单模式没有记录下单用户，只清除售罄标记
+                    if (!seckillAdmission.rollbackTimedOut(voucherId, userId, orderId)) {
+                        soldOutRegistry.reset(voucherId);
+                    }
+                    cancelled.increment();
+                    break;
+                case ALREADY_CANCELLED:
+                    // 超时时间还在说明上次取消之后没有归还redis中的库存就失败了，重新归还；已经归还过时什么也不做
+                    seckillAdmission.rollbackTimedOut(voucherId, userId, orderId);
+                    break;
+                case NOT_CANCELLABLE:
+                    paid.increment();
+                    break;
+                case NOT_FOUND:
+                    if (seckillAdmission.isAdmitted(voucherId, userId)) {
+                        // 订单还在消息队列中，推迟之后再检查
+                        long retryAt = System.currentTimeMillis()
+                                + seckillProperties.getTimeout().getRetryDelay().toMillis();
+                        stringRedisTemplate.opsForZSet().add(key, member, retryAt);
+                        postponed.increment();
+                        return;
+                    }
+                    // 订单写入数据库时被拒绝，秒杀资格已经撤销，不需要处理
+                    break;
+                default:
+                    break;
+            }
+            stringRedisTemplate.opsForZSet().remove(key, member);
+        } catch (Exception e) {
+            log.error("取消超时订单失败：{}", member, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于令牌桶的分布式限流
+ * 1. 每个资源按用户、ip、全局三个维度各配置一个令牌桶，请求需要同时满足所有维度；
+ *    所有令牌桶在一个lua脚本中判断并扣减，一次网络往返，不会出现部分维度扣减成功的情况
+ * 2. 本地预过滤：每个节点在内存中维护参数相同的令牌桶，单个节点收到的请求已经超过限制时一定超过了整体限制，
+ *    直接拒绝，不访问redis；本地令牌桶只会比redis中的宽松，不会误拒绝
+ * 3. redis不可用时放行，只由本地令牌桶限制，限流故障不影响正常业务
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    private static final DefaultRedisScript<Long> RATE_LIMIT_SCRIPT;
+
+    static {
+        RATE_LIMIT_SCRIPT = new DefaultRedisScript<>();
+        RATE_LIMIT_SCRIPT.setLocation(new ClassPathResource("lua/rate_limit.lua"));
+        RATE_LIMIT_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RateLimitProperties rateLimitProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 本地令牌桶，key与redis中的key相同
+     */
+    private final Map<String, LocalBucket> localBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * 各资源的指标
+     */
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * 定期清理已经补满的本地令牌桶，防止大量不同的用户和ip占满内存
+     */
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() {
+        // 配置了规则的资源预先注册指标，没有请求时也能看到
+        for (String resource : rateLimitProperties.getRules().keySet()) {
+            meters.computeIfAbsent(resource, Meters::new);
+        }
+
+        cleaner = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("rate-limit-cleaner-", true));
+        long interval = rateLimitProperties.getLocalCleanupInterval().toMillis();
+        cleaner.scheduleWithFixedDelay(this::cleanUp, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 尝试通过资源的限流
+     * @param resource 资源名
+     * @param userId 当前用户id，未登录时为null
+     * @param ip 客户端ip
+     * @return 允许时返回0，拒绝时返回建议的等待时间，毫秒
+     */
+    public long tryAcquire(String resource, Long userId, String ip) {
+        RateLimitProperties.Rule rule = rateLimitProperties.getRules().get(resource);
+        if (!rateLimitProperties.isEnabled() || rule == null) {
+            return 0L;
+        }
+
+        // 1. 请求涉及的令牌桶，没有配置的维度不限流
+        List<String> keys = new ArrayList<>(3);
+        List<RateLimitProperties.Limit> limits = new ArrayList<>(3);
+        if (userId != null) {
+            addBucket(keys, limits, rule.getUser(), resource, "user:" + userId);
+        }
+        if (ip != null) {
+            addBucket(keys, limits, rule.getIp(), resource, "ip:" + ip);
+        }
+        addBucket(keys, limits, rule.getGlobal(), resource, "global");
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        Meters m = meters.computeIfAbsent(resource, Meters::new);
+
+        // 2. 本地令牌桶预过滤，全部有令牌时才扣减
+        long now = System.nanoTime();
+        LocalBucket[] buckets = new LocalBucket[keys.size()];
+        long wait = 0L;
+        for (int i = 0; i < buckets.length; i++) {
+            RateLimitProperties.Limit limit = limits.get(i);
+            buckets[i] = localBuckets.computeIfAbsent(keys.get(i), k -> new LocalBucket(limit, now));
+            wait = Math.max(wait, buckets[i].waitMillis(now));
+        }
+        if (wait > 0) {
+            m.localRejected.increment();
+            return wait;
+        }
+        for (LocalBucket bucket : buckets) {
+            bucket.consume();
+        }
+
+        // 3. 在redis中判断并扣减所有令牌桶
+        String[] args = new String[limits.size() * 2];
+        for (int i = 0; i < limits.size(); i++) {
+            args[2 * i] = String.valueOf(limits.get(i).getCapacity());
+            args[2 * i + 1] = String.valueOf(limits.get(i).getRate());
+        }
+        try {
+            Long result = stringRedisTemplate.execute(RATE_LIMIT_SCRIPT, keys, (Object[]) args);
+            if (result == null || result == 0L) {
+                m.allowed.increment();
+                return 0L;
+            }
+            m.rejected.increment();
+            return result;
+        } catch (Exception e) {
+            // redis不可用时放行，本地令牌桶仍然限制单个节点
+            m.errors.increment();
+            log.warn("限流判断失败，放行请求：{}", resource, e);
+            return 0L;
+        }
+    }
+
+    /**
+     * 同一资源的令牌桶使用相同的hash tag，集群模式下位于同一个槽，可以在一个lua脚本中访问
+     */
+    private static void addBucket(List<String> keys, List<RateLimitProperties.Limit> limits,
+                                  RateLimitProperties.Limit limit, String resource, String dimension) {
+        if (limit == null || limit.getCapacity() <= 0 || limit.getRate() <= 0) {
+            return;
+        }
+        keys.add(RedisConstants.RATE_LIMIT_KEY + "{" + resource + "}:" + dimension);
+        limits.add(limit);
+    }
+
+    private void cleanUp() {
+        long now = System.nanoTime();
+        localBuckets.entrySet().removeIf(entry -> entry.getValue().isFull(now));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * 本地令牌桶，与redis中的令牌桶参数相同
+     * 判断和扣减分两步，并发时令牌数可能短暂为负，只会比redis中的令牌桶更宽松
+     */
+    private static class LocalBucket {
+
+        private final long capacity;
+
+        /**
+         * 每纳秒生成的令牌数
+         */
+        private final double ratePerNano;
+
+        private double tokens;
+
+        private long last;
+
+        private LocalBucket(RateLimitProperties.Limit limit, long now) {
+            this.capacity = limit.getCapacity();
+            this.ratePerNano = limit.getRate() / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.last = now;
+        }
+
+        private synchronized long waitMillis(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                return 0L;
+            }
+            return Math.max(1L, (long) Math.ceil((1 - tokens) / ratePerNano / TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+
+        private synchronized void consume() {
+            tokens -= 1;
+        }
+
+        private synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            if (now > last) {
+                tokens = Math.min(capacity, tokens + (now - last) * ratePerNano);
+                last = now;
+            }
+        }
+    }
+
+    /**
+     * 一个资源的请求数，按结果区分
+     */
+    private class Meters {
+
+        private final Counter allowed;
+
+        private final Counter localRejected;
+
+        private final Counter rejected;
+
+        private final Counter errors;
+
+        private Meters(String resource) {
+            allowed = counter(resource, "allowed");
+            localRejected = counter(resource, "local_rejected");
+            rejected = counter(resource, "rejected");
+            errors = counter(resource, "error");
+        }
+
+        private Counter counter(String resource, String result) {
+            return Counter.builder("hmdp.rate.limit.requests").description("经过限流判断的请求数")
+                    .tag("resource", resource).tag("result", result).register(meterRegistry);
+        }
+    }
+}
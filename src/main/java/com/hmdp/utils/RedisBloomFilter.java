@@ -0,0 +1,299 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 布隆过滤器，用于解决缓存穿透问题
+ * 位数组以bitmap的形式保存在redis中，同时在本地保存一份镜像，判断时只读本地镜像，不产生网络开销
+ * 过滤器未加载完成之前，所有判断一律放行，避免误拦截
+ * 新增的元素同时写入一个待合并的bitmap，全量重建替换bitmap时一起合并，重建期间新增的元素不会被覆盖
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+public class RedisBloomFilter {
+
+    private static final byte[] SWAP_SCRIPT = swapScript();
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * redis中bitmap的key
+     */
+    private final String key;
+
+    private final byte[] rawKey;
+
+    /**
+     * 上次重建开始之后新增元素写入的bitmap，重建完成时合并到过滤器中
+     */
+    private final byte[] rawPendingKey;
+
+    /**
+     * 位数组的长度
+     */
+    private final long numBits;
+
+    /**
+     * 哈希函数的个数
+     */
+    private final int numHashFunctions;
+
+    /**
+     * 本地镜像，第offset位保存在words[offset >>> 6]的第(offset & 63)位
+     */
+    private volatile AtomicLongArray words;
+
+    /**
+     * 写入本地镜像时加读锁，替换本地镜像时加写锁，替换期间写入的元素不会写到旧的镜像中而丢失
+     */
+    private final ReentrantReadWriteLock mirrorLock = new ReentrantReadWriteLock();
+
+    /**
+     * 判断次数
+     */
+    private final LongAdder checkCount = new LongAdder();
+
+    /**
+     * 被拦截（判定为一定不存在）的次数
+     */
+    private final LongAdder rejectCount = new LongAdder();
+
+    /**
+     * @param stringRedisTemplate
+     * @param key redis中bitmap的key
+     * @param expectedInsertions 预计插入的元素个数
+     * @param fpp 期望的误判率
+     */
+    public RedisBloomFilter(StringRedisTemplate stringRedisTemplate, String key, long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("布隆过滤器参数不合法");
+        }
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.key = key;
+        this.rawKey = key.getBytes(StandardCharsets.UTF_8);
+        this.rawPendingKey = (key + ":pending").getBytes(StandardCharsets.UTF_8);
+        // redis的bitmap最多2^32位
+        long bits = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.numBits = Math.min(Math.max(bits, Long.SIZE), 1L << 32);
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 本地镜像是否已经加载
+     * @return
+     */
+    public boolean isReady() {
+        return words != null;
+    }
+
+    /**
+     * 判断元素是否可能存在
+     * @param value
+     * @return false表示一定不存在，true表示可能存在
+     */
+    public boolean mightContain(Object value) {
+        AtomicLongArray current = words;
+        if (current == null) {
+            return true;
+        }
+        checkCount.increment();
+        long[] hash = MurmurHash.hash128(String.valueOf(value));
+        for (int i = 0; i < numHashFunctions; i++) {
+            long offset = offset(hash, i);
+            if ((current.get((int) (offset >>> 6)) & (1L << offset)) == 0) {
+                rejectCount.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 添加元素，同时写入redis与本地镜像
+     * redis中先写入待合并的bitmap，再写入过滤器，正在进行的重建替换过滤器时可以合并该元素
+     * @param value
+     */
+    public void add(Object value) {
+        long[] offsets = offsets(value);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.stringCommands().setBit(rawPendingKey, offset, true);
+            }
+            for (long offset : offsets) {
+                connection.stringCommands().setBit(rawKey, offset, true);
+            }
+            return null;
+        });
+        setLocal(offsets);
+    }
+
+    /**
+     * 只在本地镜像中添加元素，用于接收其他节点的同步通知
+     * @param value
+     */
+    public void addLocal(Object value) {
+        setLocal(offsets(value));
+    }
+
+    /**
+     * 根据全量数据重建过滤器，清理已删除的数据
+     * 1. 查询全量数据之前清空待合并的bitmap，此后新增的元素都会写入待合并的bitmap；
+     *    此前新增的元素已经写入数据库，包含在全量数据中
+     * 2. 在同一个lua脚本中替换bitmap并合并待合并的bitmap，其他节点任何时刻读取到的都是完整的bitmap
+     * 3. 从redis加载合并之后的bitmap至本地镜像
+     * @param valuesLoader 查询全量数据
+     */
+    public void rebuild(Supplier<? extends Iterable<?>> valuesLoader) {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.keyCommands().del(rawPendingKey));
+
+        AtomicLongArray rebuilt = new AtomicLongArray(wordCount());
+        long count = 0;
+        for (Object value : valuesLoader.get()) {
+            for (long offset : offsets(value)) {
+                setBit(rebuilt, offset);
+            }
+            count++;
+        }
+
+        byte[] bitmap = toRedisBitmap(rebuilt);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.scriptingCommands()
+                .eval(SWAP_SCRIPT, ReturnType.INTEGER, 2, rawKey, rawPendingKey, bitmap));
+        reload();
+        log.info("布隆过滤器{}重建完成，元素个数：{}，位数：{}，哈希函数个数：{}", key, count, numBits, numHashFunctions);
+    }
+
+    /**
+     * 从redis中加载bitmap至本地镜像
+     * @return redis中不存在或长度与当前参数不一致时返回false
+     */
+    public boolean reload() {
+        // 读取与替换之间写入本地镜像的元素，redis中已经写入，读取到的bitmap包含该元素
+        mirrorLock.writeLock().lock();
+        try {
+            byte[] bitmap = stringRedisTemplate.execute(
+                    (RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+            if (bitmap == null || bitmap.length != (int) ((numBits + 7) >>> 3)) {
+                return false;
+            }
+            words = fromRedisBitmap(bitmap);
+            return true;
+        } finally {
+            mirrorLock.writeLock().unlock();
+        }
+    }
+
+    public long getCheckCount() {
+        return checkCount.sum();
+    }
+
+    public long getRejectCount() {
+        return rejectCount.sum();
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    private void setLocal(long[] offsets) {
+        mirrorLock.readLock().lock();
+        try {
+            AtomicLongArray current = words;
+            if (current == null) {
+                return;
+            }
+            for (long offset : offsets) {
+                setBit(current, offset);
+            }
+        } finally {
+            mirrorLock.readLock().unlock();
+        }
+    }
+
+    private static byte[] swapScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("lua/bloom_swap.lua"));
+        return script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long[] offsets(Object value) {
+        long[] hash = MurmurHash.hash128(String.valueOf(value));
+        long[] offsets = new long[numHashFunctions];
+        for (int i = 0; i < numHashFunctions; i++) {
+            offsets[i] = offset(hash, i);
+        }
+        return offsets;
+    }
+
+    /**
+     * 通过两个64位哈希值模拟k个哈希函数
+     */
+    private long offset(long[] hash, int i) {
+        return Math.floorMod(hash[0] + i * hash[1], numBits);
+    }
+
+    private int wordCount() {
+        return (int) ((numBits + 63) >>> 6);
+    }
+
+    private static void setBit(AtomicLongArray array, long offset) {
+        int index = (int) (offset >>> 6);
+        long mask = 1L << offset;
+        long old;
+        do {
+            old = array.get(index);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!array.compareAndSet(index, old, old | mask));
+    }
+
+    /**
+     * 转换成redis的bitmap格式，redis中第offset位是第(offset / 8)个字节从高到低的第(offset % 8)位
+     */
+    private byte[] toRedisBitmap(AtomicLongArray array) {
+        byte[] bitmap = new byte[(int) ((numBits + 7) >>> 3)];
+        for (int i = 0; i < array.length(); i++) {
+            long word = array.get(i);
+            while (word != 0) {
+                long offset = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+                bitmap[(int) (offset >>> 3)] |= (byte) (0x80 >>> (offset & 7));
+                word &= word - 1;
+            }
+        }
+        return bitmap;
+    }
+
+    private AtomicLongArray fromRedisBitmap(byte[] bitmap) {
+        AtomicLongArray array = new AtomicLongArray(wordCount());
+        for (int i = 0; i < bitmap.length; i++) {
+            int b = bitmap[i] & 0xFF;
+            while (b != 0) {
+                int highest = Integer.numberOfLeadingZeros(b) - 24;
+                setBit(array, ((long) i << 3) + highest);
+                b &= ~(0x80 >>> highest);
+            }
+        }
+        return array;
+    }
+}
@@ -8,17 +8,47 @@ public class RedisConstants {
 
     public static final Long CACHE_NULL_TTL = 2L;
 
-    public static final Long CACHE_SHOP_TTL = 30L;
+    public static final long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
 
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_REBUILT_CHANNEL = "cache:rebuilt";
+
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_ORDER_KEY = "lock:order:";
+    public static final String LOCK_RELEASE_CHANNEL = "lock:release";
+
+    public static final String BLOOM_SHOP_KEY = "bloom:shop";
+    public static final String LOCK_BLOOM_KEY = "lock:";
+    public static final String BLOOM_SYNC_CHANNEL = "bloom:sync";
+
+    public static final String LOCK_WARM_UP_KEY = "lock:warmup:";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_SEGMENTS_KEY = "seckill:segments:";
+    public static final String SECKILL_RESTOCK_KEY = "seckill:restock:";
+    public static final long SECKILL_RESTOCK_TTL = 24L;
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:soldout";
+    public static final String SECKILL_QUEUE_KEY = "seckill:queue:";
+    public static final String SECKILL_QUEUE_ACTIVE_KEY = "seckill:queue:active";
+    public static final String SECKILL_QUEUE_BUCKET_KEY = "seckill:queue:bucket:";
+    public static final String SECKILL_TICKET_KEY = "seckill:ticket:";
+    public static final String SECKILL_TICKET_USER_KEY = "seckill:ticket:user:";
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
-    public static final String CACHE_SHOP_TYPE_KEY = "cache:shopType";
+    // 店铺类型列表整体作为一个字符串缓存，与之前的redis list类型的key区分开
+    public static final String CACHE_SHOP_TYPE_KEY = "cache:shopType:list";
     public static final long CACHE_SHOP_TYPE_TTL = 24L;
+    public static final String CACHE_VOUCHER_LIST_KEY = "cache:voucher:list:";
+    public static final long CACHE_VOUCHER_LIST_TTL = 60L;
+    public static final String CACHE_SECKILL_VOUCHER_KEY = "cache:seckill:voucher:";
+    public static final long CACHE_SECKILL_VOUCHER_TTL = 30L;
 }
@@ -8,4 +8,8 @@ import java.time.LocalDateTime;
 public class RedisData {
     private LocalDateTime expireTime;
     private Object data;
+    /**
+     * 重建耗时，毫秒，旧数据中不存在该字段
+     */
+    private Long rebuildCost;
 }
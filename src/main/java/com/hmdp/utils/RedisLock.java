@@ -0,0 +1,59 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可重入的分布式锁，由RedisLockService创建
+ * 锁属于获取它的线程，必须由同一个线程释放
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class RedisLock {
+
+    private final RedisLockService service;
+
+    private final String key;
+
+    RedisLock(RedisLockService service, String key) {
+        this.service = service;
+        this.key = key;
+    }
+
+    /**
+     * 尝试获取锁，不等待
+     * @return 是否获取成功
+     */
+    public boolean tryLock() {
+        return service.tryLock(key, 0L);
+    }
+
+    /**
+     * 获取锁，锁被占用时等待释放通知，最多等待waitTime
+     * @param waitTime
+     * @param unit
+     * @return 是否获取成功
+     */
+    public boolean tryLock(long waitTime, TimeUnit unit) {
+        return service.tryLock(key, unit.toMillis(waitTime));
+    }
+
+    /**
+     * 释放锁
+     * @throws IllegalMonitorStateException 当前线程不持有该锁
+     */
+    public void unlock() {
+        service.unlock(key);
+    }
+
+    /**
+     * 当前线程是否持有该锁
+     * @return
+     */
+    public boolean isHeldByCurrentThread() {
+        return service.isHeldByCurrentThread(key);
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
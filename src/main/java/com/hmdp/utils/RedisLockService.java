@@ -0,0 +1,254 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.RedisLockProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于redis的分布式锁
+ * 1. 锁保存为hash，field为持有者（节点id + 线程id），value为重入次数，获取、释放、续期都通过lua脚本原子执行，
+ *    只有持有者才能释放锁，不会误删其他节点的锁
+ * 2. 看门狗：持有期间每隔租期的1/3续期一次，业务执行再久也不会因为过期被其他节点获取；节点宕机后锁在一个租期后自动释放
+ * 3. 等待锁的线程不轮询：锁释放时通过发布订阅通知所有节点，每个节点按等待顺序唤醒一个线程重新竞争
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class RedisLockService {
+
+    private static final DefaultRedisScript<Long> LOCK_SCRIPT = script("lua/lock.lua");
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = script("lua/unlock.lua");
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = script("lua/renew_lock.lua");
+
+    /**
+     * 本节点的id，与线程id一起组成锁的持有者
+     */
+    private final String nodeId = UUID.randomUUID().toString(true);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private RedisLockProperties redisLockProperties;
+
+    /**
+     * 执行看门狗续期
+     */
+    private ScheduledExecutorService watchdog;
+
+    /**
+     * 看门狗的续期任务，key为锁的key与持有者
+     */
+    private final Map<String, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点上等待各个锁的线程，key为锁的key
+     */
+    private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    @PostConstruct
+    public void init() {
+        watchdog = new ScheduledThreadPoolExecutor(redisLockProperties.getWatchdogThreads(),
+                new NamedThreadFactory("lock-watchdog-", true));
+        ((ScheduledThreadPoolExecutor) watchdog).setRemoveOnCancelPolicy(true);
+
+        // 订阅锁释放频道，按等待顺序唤醒本节点上等待该锁的一个线程
+        // 等待的线程可能刚竞争失败、还没有进入信号量，因此只要有线程在等待就释放许可，避免丢失通知
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> {
+                    Waiters w = waiters.get(new String(message.getBody(), StandardCharsets.UTF_8));
+                    if (w != null) {
+                        w.semaphore.release();
+                    }
+                },
+                new ChannelTopic(RedisConstants.LOCK_RELEASE_CHANNEL));
+    }
+
+    /**
+     * 获取锁对象，锁对象本身不持有状态，可以随时创建
+     * @param key 锁的key
+     * @return
+     */
+    public RedisLock getLock(String key) {
+        return new RedisLock(this, key);
+    }
+
+    /**
+     * 获取锁，获取失败时等待锁释放的通知后重新竞争，直到超过等待时间
+     * @param key
+     * @param waitMillis 等待时间，为0时只尝试一次
+     * @return 是否获取成功，等待期间被中断时返回false并保留中断标记
+     */
+    boolean tryLock(String key, long waitMillis) {
+        String owner = currentOwner();
+        long leaseMillis = redisLockProperties.getLeaseTime().toMillis();
+
+        // 1. 先尝试一次
+        Long ttl = tryAcquire(key, owner, leaseMillis);
+        if (ttl == null) {
+            return true;
+        }
+        if (waitMillis <= 0) {
+            return false;
+        }
+
+        // 2. 登记等待，再重新竞争，避免错过登记之前的释放通知
+        long deadline = System.currentTimeMillis() + waitMillis;
+        Waiters w = waiters.compute(key, (k, existing) -> {
+            Waiters entry = existing == null ? new Waiters() : existing;
+            entry.count.incrementAndGet();
+            return entry;
+        });
+        try {
+            while (true) {
+                ttl = tryAcquire(key, owner, leaseMillis);
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 3. 等待释放通知，最多等到锁过期，防止持有者宕机或通知丢失后一直等待
+                long timeout = ttl > 0 ? Math.min(ttl, remaining) : remaining;
+                w.semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiters.computeIfPresent(key, (k, entry) -> entry.count.decrementAndGet() == 0 ? null : entry);
+        }
+    }
+
+    /**
+     * 释放锁，重入多次时需要释放相同次数
+     * @param key
+     * @throws IllegalMonitorStateException 当前线程不持有该锁
+     */
+    void unlock(String key) {
+        String owner = currentOwner();
+        Long result = stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(key), owner,
+                String.valueOf(redisLockProperties.getLeaseTime().toMillis()), RedisConstants.LOCK_RELEASE_CHANNEL);
+        if (result == null) {
+            // 锁已经不属于当前线程，通常是续期失败后锁已经过期
+            cancelRenewal(key, owner);
+            throw new IllegalMonitorStateException("当前线程不持有锁：" + key);
+        }
+        if (result == 1L) {
+            cancelRenewal(key, owner);
+        }
+    }
+
+    /**
+     * 当前线程是否持有该锁
+     * @param key
+     * @return
+     */
+    boolean isHeldByCurrentThread(String key) {
+        return stringRedisTemplate.opsForHash().hasKey(key, currentOwner());
+    }
+
+    /**
+     * 执行获取锁的脚本，首次获取成功时启动看门狗
+     * @return 获取成功返回null，失败返回锁的剩余有效期
+     */
+    private Long tryAcquire(String key, String owner, long leaseMillis) {
+        Long ttl = stringRedisTemplate.execute(LOCK_SCRIPT, Collections.singletonList(key),
+                String.valueOf(leaseMillis), owner);
+        if (ttl == null) {
+            scheduleRenewal(key, owner, leaseMillis);
+        }
+        return ttl;
+    }
+
+    /**
+     * 同一个持有者重入时只保留一个续期任务
+     */
+    private void scheduleRenewal(String key, String owner, long leaseMillis) {
+        long period = Math.max(1L, leaseMillis / 3);
+        renewals.computeIfAbsent(renewalKey(key, owner), k -> watchdog.scheduleAtFixedRate(
+                () -> renew(key, owner, leaseMillis), period, period, TimeUnit.MILLISECONDS));
+    }
+
+    private void renew(String key, String owner, long leaseMillis) {
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                    String.valueOf(leaseMillis), owner);
+            if (renewed == null || renewed == 0L) {
+                // 锁已经释放或被其他持有者获取，停止续期
+                cancelRenewal(key, owner);
+            }
+        } catch (Exception e) {
+            // 续期失败时保留任务，下一个周期重试，锁在租期内仍然有效
+            log.warn("分布式锁续期失败：{}", key, e);
+        }
+    }
+
+    private void cancelRenewal(String key, String owner) {
+        ScheduledFuture<?> future = renewals.remove(renewalKey(key, owner));
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private static String renewalKey(String key, String owner) {
+        return key + "#" + owner;
+    }
+
+    private String currentOwner() {
+        return nodeId + ":" + Thread.currentThread().getId();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 本节点上等待同一个锁的线程，公平的信号量保证按等待顺序唤醒
+     */
+    private static class Waiters {
+
+        private final Semaphore semaphore = new Semaphore(0, true);
+
+        /**
+         * 等待的线程数，为0时移除
+         */
+        private final AtomicInteger count = new AtomicInteger();
+    }
+}
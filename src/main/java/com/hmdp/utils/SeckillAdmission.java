@@ -0,0 +1,558 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.SeckillVoucher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在redis中判断秒杀资格
+ * 1. 秒杀数据分布在固定数量的分片中，每个分片使用一个hash tag：秒杀券的库存和起止时间保存在seckill:stock:{分片}:id中，
+ *    已经下单的用户保存在seckill:order:{分片}:id中，每个分片还有自己的订单消息队列和超时zset，集群模式下一个分片位于一个槽
+ * 2. 校验时间、库存、一人一单、扣减库存以及写入订单消息队列在一个lua脚本中原子执行，脚本只访问一个分片，
+ *    不需要加锁，也不访问数据库
+ * 3. 订单没有创建成功时撤销秒杀资格，归还库存并移除下单用户；用户已经持有订单时只归还库存
+ * 4. 加载秒杀券或归还库存之后清除各个节点上的售罄标记
+ * 5. 获得秒杀资格时在同一个脚本中记录订单的超时时间，由OrderTimeoutCanceller取消超时未支付的订单
+ * 6. 分段库存：访问量极高的秒杀券在创建时指定分段数K，库存平均分到K个分片中，请求分散到K个槽。
+ *    用户按用户id的hash固定落在一个分段，一人一单只检查该分段，订单也写入该分段所在分片的消息队列和超时zset。
+ *    该分段库存不足时逐个从其他分段扣减一件库存，再回到用户所在分段记录下单用户和订单；两步不在一个脚本中，
+ *    节点在两步之间宕机时少卖一件库存，但不会超卖。剩余库存在后台逐个分段地重新平均分配，每次移动库存都是单个分段上的原子操作
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class SeckillAdmission {
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT = script("lua/seckill.lua");
+
+    private static final DefaultRedisScript<Long> ROLLBACK_SCRIPT = script("lua/seckill_rollback.lua");
+
+    private static final DefaultRedisScript<Long> PRELOAD_SCRIPT = script("lua/seckill_preload.lua");
+
+    private static final DefaultRedisScript<Long> TAKE_SCRIPT = script("lua/seckill_take.lua");
+
+    private static final DefaultRedisScript<Long> RESTOCK_SCRIPT = script("lua/seckill_restock.lua");
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+
+    /**
+     * 秒杀券的库存分段数，创建后不再改变；redis中没有记录的秒杀券不缓存，按不分段处理
+     */
+    private final Map<Long, Integer> segments = new ConcurrentHashMap<>();
+
+    /**
+     * 秒杀券上次重新分配分段库存的时间
+     */
+    private final Map<Long, Long> lastRebalance = new ConcurrentHashMap<>();
+
+    /**
+     * 在后台重新分配分段库存，任务堆积时丢弃，下一次从其他分段扣减库存时会再次触发
+     */
+    private ThreadPoolExecutor rebalanceExecutor;
+
+    @PostConstruct
+    public void init() {
+        rebalanceExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16), new NamedThreadFactory("seckill-rebalance-", true),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    private static DefaultRedisScript<Long> script(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 新增秒杀券时加载到redis，覆盖已有的库存
+     * 在事务中调用时推迟到事务提交之后执行，事务回滚时不加载
+     * @param seckillVoucher
+     * @param stockSegments 库存分段数，小于等于1时不分段
+     */
+    public void preload(SeckillVoucher seckillVoucher, int stockSegments) {
+        // 每个分段位于不同的分片，分段数不超过分片数
+        int max = Math.min(seckillProperties.getMaxStockSegments(), seckillProperties.getShards());
+        int count = Math.max(1, Math.min(stockSegments, max));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            load(seckillVoucher, count, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                load(seckillVoucher, count, true);
+            }
+        });
+    }
+
+    /**
+     * redis中没有该秒杀券时加载，已有的库存不覆盖，用于加载本功能上线之前创建的秒杀券
+     * 分段数以redis中的记录为准，没有记录时不分段
+     * @param seckillVoucher
+     */
+    public void loadIfAbsent(SeckillVoucher seckillVoucher) {
+        load(seckillVoucher, segmentsOf(seckillVoucher.getVoucherId()), false);
+    }
+
+    /**
+     * 秒杀券的起止时间修改后更新redis，已有的库存不覆盖
+     * 在事务中调用时推迟到事务提交之后执行，事务回滚时不更新
+     * @param seckillVoucher
+     */
+    public void reload(SeckillVoucher seckillVoucher) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            loadIfAbsent(seckillVoucher);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                loadIfAbsent(seckillVoucher);
+            }
+        });
+    }
+
+    private void load(SeckillVoucher seckillVoucher, int count, boolean overwrite) {
+        Long voucherId = seckillVoucher.getVoucherId();
+
+        // 1. 先记录分段数，其他节点按分段数找到各个分段
+        String segmentsKey = RedisConstants.SECKILL_SEGMENTS_KEY + voucherId;
+        if (overwrite) {
+            stringRedisTemplate.opsForValue().set(segmentsKey, String.valueOf(count));
+        } else {
+            stringRedisTemplate.opsForValue().setIfAbsent(segmentsKey, String.valueOf(count));
+        }
+        segments.put(voucherId, count);
+
+        // 2. 库存平均分到各个分段，余数分给前面的分段
+        int stock = seckillVoucher.getStock();
+        String begin = String.valueOf(toEpochMilli(seckillVoucher.getBeginTime()));
+        String end = String.valueOf(toEpochMilli(seckillVoucher.getEndTime()));
+        for (int i = 0; i < count; i++) {
+            int segmentStock = stock / count + (i < stock % count ? 1 : 0);
+            stringRedisTemplate.execute(PRELOAD_SCRIPT, List.of(stockKey(voucherId, i)),
+                    String.valueOf(segmentStock), begin, end, overwrite ? "1" : "0");
+        }
+        soldOutRegistry.reset(voucherId);
+        log.debug("秒杀券已加载到redis：{}，分段数：{}", voucherId, count);
+    }
+
+    /**
+     * 判断用户的秒杀资格，有资格时扣减库存、记录下单用户并将订单写入消息队列
+     * @param voucherId
+     * @param userId
+     * @param orderId
+     * @return
+     */
+    public AdmissionResult admit(Long voucherId, Long userId, Long orderId) {
+        // 1. 在用户所在分段判断资格，大多数请求只需要这一次脚本调用
+        int count = segmentsOf(voucherId);
+        int home = segmentOf(userId, count);
+        AdmissionResult result = admitInSegment(voucherId, userId, orderId, home, false);
+        if (result != AdmissionResult.SOLD_OUT || count <= 1) {
+            return result;
+        }
+
+        // 2. 用户所在分段已经耗尽，逐个从其他分段扣减一件库存，每次只访问一个分片
+        for (int i = 1; i < count; i++) {
+            String stockKey = stockKey(voucherId, (home + i) % count);
+            if (take(stockKey, 1) == 0) {
+                continue;
+            }
+            // 3. 回到用户所在分段记录下单用户并写入订单消息，期间时间已过或用户已经下单时把库存放回原分段
+            result = admitInSegment(voucherId, userId, orderId, home, true);
+            if (result == AdmissionResult.SUCCESS) {
+                scheduleRebalance(voucherId, count);
+            } else {
+                restock(stockKey, 1);
+            }
+            return result;
+        }
+        return AdmissionResult.SOLD_OUT;
+    }
+
+    /**
+     * 在一个分段中执行seckill.lua，库存、已下单用户、订单消息队列和超时zset位于同一个分片
+     * @param stockTaken 库存已经从其他分段扣减
+     */
+    private AdmissionResult admitInSegment(Long voucherId, Long userId, Long orderId, int segment, boolean stockTaken) {
+        int shard = shardOf(voucherId, segment);
+        Long code = stringRedisTemplate.execute(SECKILL_SCRIPT, Arrays.asList(
+                        stockKey(voucherId, segment), orderKey(voucherId, segment), streamKey(shard), timeoutKey(shard)),
+                userId.toString(), String.valueOf(System.currentTimeMillis()), orderId.toString(),
+                voucherId.toString(), String.valueOf(payWindowMillis()), stockTaken ? "1" : "0");
+        return AdmissionResult.of(code);
+    }
+
+    /**
+     * 撤销没有写入数据库的订单的秒杀资格，库存归还到用户所在分段，并移除订单的超时时间，重复撤销不会多归还库存
+     * @param voucherId
+     * @param userId
+     * @param orderId
+     * @return 是否撤销成功
+     */
+    public boolean rollback(Long voucherId, Long userId, Long orderId) {
+        return rollback(voucherId, userId, orderId, false);
+    }
+
+    /**
+     * 撤销超时取消的订单的秒杀资格，只有订单的超时时间还在时才撤销
+     * 撤销与移除超时时间在同一个脚本中执行，超时时间已经移除说明该订单撤销过；
+     * 即使用户之后重新下单、再次进入已下单用户中，重复处理该订单也不会移除用户、多归还库存
+     * @param voucherId
+     * @param userId
+     * @param orderId
+     * @return 是否撤销成功
+     */
+    public boolean rollbackTimedOut(Long voucherId, Long userId, Long orderId) {
+        return rollback(voucherId, userId, orderId, true);
+    }
+
+    private boolean rollback(Long voucherId, Long userId, Long orderId, boolean timedOut) {
+        int home = segmentOf(userId, segmentsOf(voucherId));
+        Long rolledBack = stringRedisTemplate.execute(ROLLBACK_SCRIPT, Arrays.asList(
+                        stockKey(voucherId, home), orderKey(voucherId, home), timeoutKey(shardOf(voucherId, home))),
+                userId.toString(), orderId + ":" + voucherId + ":" + userId, timedOut ? "1" : "0");
+        if (rolledBack == null || rolledBack != 1L) {
+            return false;
+        }
+        // 库存已经归还，售罄的秒杀券重新开放
+        soldOutRegistry.reset(voucherId);
+        return true;
+    }
+
+    /**
+     * 只归还一件库存，不移除下单用户，用于用户已经持有订单、重复获得资格的订单
+     * 同一订单只归还一次，消息重复投递时不会多归还库存；订单不会写入数据库，同时移除它的超时时间，
+     * 否则用户仍在已下单用户中，超时检查会一直推迟
+     * @param voucherId
+     * @param userId
+     * @param orderId
+     * @return 是否归还成功
+     */
+    public boolean restock(Long voucherId, Long userId, Long orderId) {
+        int home = segmentOf(userId, segmentsOf(voucherId));
+        int shard = shardOf(voucherId, home);
+        String marker = tagged(RedisConstants.SECKILL_RESTOCK_KEY, shard) + ":" + orderId;
+        Long restocked = stringRedisTemplate.execute(RESTOCK_SCRIPT, Arrays.asList(stockKey(voucherId, home), marker),
+                "1", String.valueOf(TimeUnit.HOURS.toMillis(RedisConstants.SECKILL_RESTOCK_TTL)));
+        stringRedisTemplate.opsForZSet().remove(timeoutKey(shard), orderId + ":" + voucherId + ":" + userId);
+        if (restocked == null || restocked != 1L) {
+            return false;
+        }
+        soldOutRegistry.reset(voucherId);
+        return true;
+    }
+
+    /**
+     * 用户是否持有秒杀资格，即是否在已下单用户中
+     * @param voucherId
+     * @param userId
+     * @return
+     */
+    public boolean isAdmitted(Long voucherId, Long userId) {
+        Boolean member = stringRedisTemplate.opsForSet()
+                .isMember(orderKey(voucherId, segmentOf(userId, segmentsOf(voucherId))), userId.toString());
+        return Boolean.TRUE.equals(member);
+    }
+
+    /**
+     * 记录不经过lua脚本创建的订单的超时时间，在事务中调用时推迟到事务提交之后执行
+     * @param orderId
+     * @param voucherId
+     * @param userId
+     */
+    public void scheduleTimeout(Long orderId, Long voucherId, Long userId) {
+        long payWindow = payWindowMillis();
+        if (payWindow <= 0) {
+            return;
+        }
+        // 与lua脚本写入的超时时间一样，保存在用户所在分段的分片中
+        String key = timeoutKey(shardOf(voucherId, segmentOf(userId, segmentsOf(voucherId))));
+        String member = orderId + ":" + voucherId + ":" + userId;
+        Runnable schedule = () -> stringRedisTemplate.opsForZSet().add(key, member,
+                System.currentTimeMillis() + payWindow);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schedule.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule.run();
+            }
+        });
+    }
+
+    /**
+     * 支付期限，关闭超时取消时为0
+     */
+    private long payWindowMillis() {
+        SeckillProperties.Timeout timeout = seckillProperties.getTimeout();
+        return timeout.isEnabled() ? timeout.getPayWindow().toMillis() : 0L;
+    }
+
+    /**
+     * 查询剩余库存，分段库存模式下为各个分段之和，逐个分段读取，不是同一时刻的快照
+     * @param voucherId
+     * @return
+     */
+    public long remainingStock(Long voucherId) {
+        long total = 0;
+        for (long stock : stocksOf(voucherId, segmentsOf(voucherId))) {
+            total += Math.max(stock, 0);
+        }
+        return total;
+    }
+
+    /**
+     * 立即将剩余库存重新平均分配到各个分段
+     * 按读取到的库存计算每个分段的目标库存，先从高于目标的分段取出多余的部分，再补到低于目标的分段；
+     * 每次移动都是单个分段上的原子操作，期间的秒杀请求照常扣减，总库存不变
+     * @param voucherId
+     * @return 剩余库存
+     */
+    public long rebalance(Long voucherId) {
+        // 1. 读取各个分段的库存，不存在的分段不参与分配，避免生成没有起止时间的分段
+        int count = segmentsOf(voucherId);
+        long[] stocks = stocksOf(voucherId, count);
+        List<Integer> present = new ArrayList<>(count);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            if (stocks[i] >= 0) {
+                present.add(i);
+                total += stocks[i];
+            }
+        }
+        if (present.size() <= 1) {
+            return total;
+        }
+
+        // 2. 余数分给前面的分段，高于目标的分段取出多余的部分，期间被扣减的库存不会多取
+        long[] targets = new long[count];
+        for (int j = 0; j < present.size(); j++) {
+            targets[present.get(j)] = total / present.size() + (j < total % present.size() ? 1 : 0);
+        }
+        long pool = 0;
+        for (int i : present) {
+            if (stocks[i] > targets[i]) {
+                pool += take(stockKey(voucherId, i), stocks[i] - targets[i]);
+            }
+        }
+
+        // 3. 取出的库存补到低于目标的分段，分段在期间被删除时补到其他分段
+        for (int i : present) {
+            long amount = Math.min(pool, Math.max(targets[i] - stocks[i], 0));
+            if (amount > 0 && restock(stockKey(voucherId, i), amount)) {
+                pool -= amount;
+            }
+        }
+        for (int i : present) {
+            if (pool > 0 && restock(stockKey(voucherId, i), pool)) {
+                pool = 0;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 逐个分段读取库存
+     * @return 各个分段的库存，分段不存在时为-1
+     */
+    private long[] stocksOf(Long voucherId, int count) {
+        long[] stocks = new long[count];
+        for (int i = 0; i < count; i++) {
+            Object stock = stringRedisTemplate.opsForHash().get(stockKey(voucherId, i), "stock");
+            stocks[i] = stock == null ? -1L : Long.parseLong((String) stock);
+        }
+        return stocks;
+    }
+
+    /**
+     * 从一个分段扣减库存
+     * @return 实际扣减的数量
+     */
+    private long take(String stockKey, long max) {
+        Long taken = stringRedisTemplate.execute(TAKE_SCRIPT, List.of(stockKey), String.valueOf(max));
+        return taken == null ? 0L : taken;
+    }
+
+    /**
+     * 向一个分段归还库存
+     * @return 分段不存在时返回false
+     */
+    private boolean restock(String stockKey, long amount) {
+        Long restocked = stringRedisTemplate.execute(RESTOCK_SCRIPT, List.of(stockKey), String.valueOf(amount));
+        return restocked != null && restocked == 1L;
+    }
+
+    /**
+     * 每张秒杀券在一个间隔内最多重新分配一次
+     */
+    private void scheduleRebalance(Long voucherId, int count) {
+        long now = System.currentTimeMillis();
+        long interval = seckillProperties.getRebalanceInterval().toMillis();
+        Long last = lastRebalance.get(voucherId);
+        if (count <= 1 || (last != null && now - last < interval)) {
+            return;
+        }
+        if (last == null ? lastRebalance.putIfAbsent(voucherId, now) != null
+                : !lastRebalance.replace(voucherId, last, now)) {
+            // 其他线程已经触发
+            return;
+        }
+        rebalanceExecutor.execute(() -> {
+            try {
+                rebalance(voucherId);
+            } catch (Exception e) {
+                log.warn("重新分配分段库存失败：{}", voucherId, e);
+            }
+        });
+    }
+
+    /**
+     * 秒杀券的库存分段数，首次查询后缓存在本地
+     * @param voucherId
+     * @return
+     */
+    private int segmentsOf(Long voucherId) {
+        Integer count = segments.get(voucherId);
+        if (count != null) {
+            return count;
+        }
+        String value = stringRedisTemplate.opsForValue().get(RedisConstants.SECKILL_SEGMENTS_KEY + voucherId);
+        if (value == null) {
+            // 还没有加载到redis，加载之后再缓存
+            return 1;
+        }
+        count = Integer.valueOf(value);
+        segments.put(voucherId, count);
+        return count;
+    }
+
+    /**
+     * 用户固定落在一个分段，散列之后再取模，避免连续的用户id集中在个别分段
+     */
+    private static int segmentOf(Long userId, int count) {
+        return count <= 1 ? 0 : Math.floorMod(Long.hashCode(userId) * 0x9E3779B1, count);
+    }
+
+    /**
+     * 秒杀券的各个分段从秒杀券id散列到的分片开始依次分布，分段数不超过分片数，同一秒杀券的分段位于不同的分片
+     */
+    private int shardOf(Long voucherId, int segment) {
+        int shards = seckillProperties.getShards();
+        return (Math.floorMod(Long.hashCode(voucherId) * 0x9E3779B1, shards) + segment) % shards;
+    }
+
+    private String stockKey(Long voucherId, int segment) {
+        return tagged(RedisConstants.SECKILL_STOCK_KEY, shardOf(voucherId, segment)) + ":" + voucherId;
+    }
+
+    private String orderKey(Long voucherId, int segment) {
+        return tagged(RedisConstants.SECKILL_ORDER_KEY, shardOf(voucherId, segment)) + ":" + voucherId;
+    }
+
+    private String streamKey(int shard) {
+        return tagged(seckillProperties.getStream().getKey() + ":", shard);
+    }
+
+    private String timeoutKey(int shard) {
+        return tagged(seckillProperties.getTimeout().getKey() + ":", shard);
+    }
+
+    /**
+     * 各个分片的订单消息队列
+     * @return
+     */
+    public List<String> streamKeys() {
+        List<String> keys = new ArrayList<>(seckillProperties.getShards());
+        for (int i = 0; i < seckillProperties.getShards(); i++) {
+            keys.add(streamKey(i));
+        }
+        return keys;
+    }
+
+    /**
+     * 各个分片保存订单超时时间的zset
+     * @return
+     */
+    public List<String> timeoutKeys() {
+        List<String> keys = new ArrayList<>(seckillProperties.getShards());
+        for (int i = 0; i < seckillProperties.getShards(); i++) {
+            keys.add(timeoutKey(i));
+        }
+        return keys;
+    }
+
+    /**
+     * 分片的hash tag，同一分片的key在集群模式下位于同一个槽
+     */
+    private static String tagged(String prefix, int shard) {
+        return prefix + "{" + shard + "}";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebalanceExecutor.shutdownNow();
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 秒杀资格的判断结果，与seckill.lua的返回值一一对应
+     */
+    public enum AdmissionResult {
+
+        SUCCESS,
+
+        NOT_STARTED,
+
+        ENDED,
+
+        SOLD_OUT,
+
+        DUPLICATE,
+
+        NOT_LOADED;
+
+        private static AdmissionResult of(Long code) {
+            if (code == null || code < 0 || code >= values().length) {
+                throw new IllegalStateException("秒杀脚本返回了未知结果：" + code);
+            }
+            return values()[code.intValue()];
+        }
+    }
+}
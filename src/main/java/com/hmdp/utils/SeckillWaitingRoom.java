@@ -0,0 +1,426 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.SeckillTicket;
+import com.hmdp.dto.SeckillVoucherMeta;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 排队下单
+ * 1. 秒杀请求只领取排队凭证并返回排队位置，凭证按领取顺序保存在redis的zset中，每张秒杀券一个队列，所有节点共用；
+ *    已经售罄或不在秒杀时间内的请求直接拒绝，不占用排队位置
+ * 2. 每个节点的调度线程定时从队列中取出凭证交给下单线程，每张秒杀券一个令牌桶，控制所有节点合计的放行速率；
+ *    本节点取出的凭证数有上限，数据库变慢时凭证留在队列中，下单的并发数不超过下单线程数，不随请求量增长
+ *    同一张秒杀券的队列、令牌桶、凭证和用户持有的凭证id都以秒杀券id作为hash tag，lua脚本在集群中只访问一个slot；
+ *    有凭证在排队的秒杀券集合跨多个slot，不在脚本中维护，领取凭证之后加入，调度时队列为空再移除
+ * 3. 下单线程以凭证中的用户执行原有的秒杀流程，结果写回凭证；客户端轮询凭证获取排队位置或下单结果，
+ *    已完成的凭证缓存在本地，不再访问redis
+ * 4. 凭证取出之后节点宕机时，凭证一直处于下单中，过期之后用户可以重新排队
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class SeckillWaitingRoom {
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> ENQUEUE_SCRIPT = script("lua/seckill_enqueue.lua");
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DISPATCH_SCRIPT = script("lua/seckill_dispatch.lua");
+
+    private static final DefaultRedisScript<Long> FINISH_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        FINISH_SCRIPT.setLocation(new ClassPathResource("lua/seckill_ticket_finish.lua"));
+        FINISH_SCRIPT.setResultType(Long.class);
+    }
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisIdWorker redisIdWorker;
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 定时从队列中取出凭证，开启排队下单时才创建
+     */
+    private volatile ScheduledExecutorService dispatcher;
+
+    /**
+     * 执行下单
+     */
+    private ThreadPoolExecutor workers;
+
+    /**
+     * 本节点已经取出、还没有下单完成的凭证数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 本节点已经取出、还没有下单完成的凭证数上限，为下单线程数加上一个调度间隔放行的凭证数，
+     * 下单线程不会空闲，数据库变慢时凭证留在redis的队列中
+     */
+    private int maxInFlight;
+
+    /**
+     * 已完成的凭证，key为凭证id
+     */
+    private LRUCache<Long, FinishedTicket> finished;
+
+    /**
+     * 领取的凭证数
+     */
+    private Counter enqueued;
+
+    /**
+     * 队列已满被拒绝的请求数
+     */
+    private Counter rejected;
+
+    @SuppressWarnings("rawtypes")
+    private static DefaultRedisScript<List> script(String path) {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(List.class);
+        return script;
+    }
+
+    @PostConstruct
+    public void init() {
+        SeckillProperties.WaitingRoom waitingRoom = seckillProperties.getWaitingRoom();
+        finished = CacheUtil.newLRUCache(waitingRoom.getResultCacheSize(), waitingRoom.getTicketTtl().toMillis());
+        enqueued = Counter.builder("hmdp.seckill.queue.tickets").tag("result", "enqueued")
+                .description("领取排队凭证的请求数").register(meterRegistry);
+        rejected = Counter.builder("hmdp.seckill.queue.tickets").tag("result", "full")
+                .description("领取排队凭证的请求数").register(meterRegistry);
+        Gauge.builder("hmdp.seckill.queue.inflight", inFlight, AtomicInteger::get)
+                .description("本节点已经放行、正在下单的凭证数").register(meterRegistry);
+    }
+
+    /**
+     * 应用启动完成之后开始调度，redis不可用时下一个周期重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        SeckillProperties.WaitingRoom waitingRoom = seckillProperties.getWaitingRoom();
+        if (!waitingRoom.isEnabled()) {
+            return;
+        }
+        workers = new ThreadPoolExecutor(waitingRoom.getWorkers(), waitingRoom.getWorkers(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("seckill-queue-worker-", true));
+        ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("seckill-queue-", true));
+        long interval = waitingRoom.getDispatchInterval().toMillis();
+        maxInFlight = waitingRoom.getWorkers()
+                + Math.max(waitingRoom.getAdmitBurst(), (int) Math.ceil(waitingRoom.getAdmitRate() * interval / 1000));
+        executor.scheduleWithFixedDelay(this::dispatch, interval, interval, TimeUnit.MILLISECONDS);
+        dispatcher = executor;
+    }
+
+    /**
+     * 是否排队下单
+     * @return
+     */
+    public boolean isEnabled() {
+        return dispatcher != null;
+    }
+
+    /**
+     * 领取排队凭证，同一用户对同一张秒杀券重复领取时返回已有的凭证
+     * @param voucherId
+     * @param userId
+     * @return 成功时返回凭证
+     */
+    public Result enqueue(Long voucherId, Long userId) {
+        // 1. 已经售罄或不在秒杀时间内的请求直接拒绝，不占用排队位置
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            return Result.fail("秒杀券库存不足！");
+        }
+        SeckillVoucherMeta meta = seckillVoucherService.queryMeta(voucherId);
+        if (meta == null) {
+            return Result.fail("秒杀券不存在！");
+        }
+        long now = System.currentTimeMillis();
+        if (now < meta.getBeginMillis()) {
+            return Result.fail("秒杀未开始！");
+        }
+        if (now > meta.getEndMillis()) {
+            return Result.fail("秒杀已结束！");
+        }
+
+        // 2. 领取凭证，凭证id的高位为秒级时间戳，作为排队的score
+        SeckillProperties.WaitingRoom waitingRoom = seckillProperties.getWaitingRoom();
+        String userKey = tagged(RedisConstants.SECKILL_TICKET_USER_KEY, voucherId) + ":" + userId;
+        long ticketId = redisIdWorker.increment("ticket:");
+        List<Object> result = executeList(ENQUEUE_SCRIPT,
+                Arrays.asList(queueKey(voucherId), userKey, ticketKey(voucherId, ticketId)),
+                String.valueOf(ticketId), String.valueOf(ticketId >>> 32), voucherId.toString(), userId.toString(),
+                String.valueOf(waitingRoom.getMaxQueueLength()), String.valueOf(waitingRoom.getTicketTtl().toSeconds()));
+        long id = Long.parseLong((String) result.get(0));
+        if (id < 0) {
+            rejected.increment();
+            return Result.fail("排队人数过多，请稍后重试！");
+        }
+
+        // 3. 已有凭证时返回已有凭证的最新状态
+        if (id != ticketId) {
+            SeckillTicket existing = query(voucherId, id, userId);
+            if (existing != null) {
+                return Result.ok(existing);
+            }
+            // 已有的凭证已经被删除，删除用户持有的凭证id之后重新领取
+            stringRedisTemplate.delete(userKey);
+            return enqueue(voucherId, userId);
+        }
+        // 4. 凭证加入队列之后再加入有凭证在排队的秒杀券集合，调度线程移除时会重新检查队列
+        stringRedisTemplate.opsForSet().add(RedisConstants.SECKILL_QUEUE_ACTIVE_KEY, voucherId.toString());
+        enqueued.increment();
+        SeckillTicket ticket = new SeckillTicket();
+        ticket.setTicketId(ticketId);
+        ticket.setVoucherId(voucherId);
+        setWaiting(ticket, (Long) result.get(1));
+        return Result.ok(ticket);
+    }
+
+    /**
+     * 查询凭证的排队位置或下单结果
+     * @param voucherId 凭证所属的秒杀券，凭证的key以秒杀券id作为hash tag
+     * @param ticketId
+     * @param userId 当前用户，只能查询自己的凭证
+     * @return 凭证不存在、已经过期或不属于当前用户时返回null
+     */
+    public SeckillTicket query(Long voucherId, Long ticketId, Long userId) {
+        // 1. 已完成的凭证不再变化，从本地缓存读取
+        FinishedTicket cached = finished.get(ticketId);
+        if (cached != null) {
+            return cached.userId.equals(userId) && cached.ticket.getVoucherId().equals(voucherId) ? cached.ticket : null;
+        }
+
+        // 2. 从redis读取凭证
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(ticketKey(voucherId, ticketId));
+        if (entries.isEmpty() || !userId.toString().equals(entries.get("userId"))) {
+            return null;
+        }
+        SeckillTicket ticket = new SeckillTicket();
+        ticket.setTicketId(ticketId);
+        ticket.setVoucherId(voucherId);
+        ticket.setStatus(SeckillTicket.Status.valueOf((String) entries.get("status")));
+
+        // 3. 排队中的凭证查询排队位置，已经不在队列中说明已经放行、正在下单
+        if (ticket.getStatus() == SeckillTicket.Status.WAITING) {
+            Long rank = stringRedisTemplate.opsForZSet().rank(queueKey(voucherId), ticketId + ":" + userId);
+            if (rank == null) {
+                ticket.setStatus(SeckillTicket.Status.PROCESSING);
+            } else {
+                setWaiting(ticket, rank + 1);
+            }
+            return ticket;
+        }
+
+        // 4. 已完成的凭证缓存到本地
+        Object orderId = entries.get("orderId");
+        ticket.setOrderId(orderId == null ? null : Long.valueOf((String) orderId));
+        ticket.setMessage((String) entries.get("message"));
+        finished.put(ticketId, new FinishedTicket(userId, ticket));
+        return ticket;
+    }
+
+    private void setWaiting(SeckillTicket ticket, long position) {
+        if (position <= 0) {
+            // 已有的凭证已经不在队列中
+            ticket.setStatus(SeckillTicket.Status.PROCESSING);
+            return;
+        }
+        ticket.setStatus(SeckillTicket.Status.WAITING);
+        ticket.setPosition(position);
+        ticket.setWaitMillis((long) Math.ceil(position * 1000 / seckillProperties.getWaitingRoom().getAdmitRate()));
+    }
+
+    /**
+     * 从有凭证在排队的秒杀券中取出凭证，交给下单线程
+     */
+    void dispatch() {
+        SeckillProperties.WaitingRoom waitingRoom = seckillProperties.getWaitingRoom();
+        try {
+            Set<String> voucherIds = stringRedisTemplate.opsForSet().members(RedisConstants.SECKILL_QUEUE_ACTIVE_KEY);
+            if (voucherIds == null) {
+                return;
+            }
+            for (String voucherId : voucherIds) {
+                int capacity = maxInFlight - inFlight.get();
+                if (capacity <= 0) {
+                    return;
+                }
+                Long id = Long.valueOf(voucherId);
+                // 已经售罄的秒杀券直接放行，下单时在本地拒绝，排队的请求尽快得到结果
+                List<Object> result = executeList(DISPATCH_SCRIPT,
+                        Arrays.asList(queueKey(id), tagged(RedisConstants.SECKILL_QUEUE_BUCKET_KEY, id)),
+                        String.valueOf(waitingRoom.getAdmitRate()), String.valueOf(waitingRoom.getAdmitBurst()),
+                        String.valueOf(capacity), soldOutRegistry.isSoldOut(id) ? "1" : "0");
+                for (int i = 1; i < result.size(); i++) {
+                    submit(id, (String) result.get(i));
+                }
+                if (!result.isEmpty() && (Long) result.get(0) == 0L) {
+                    deactivate(id);
+                }
+            }
+        } catch (Exception e) {
+            log.error("调度排队凭证失败", e);
+        }
+    }
+
+    /**
+     * 队列为空时从有凭证在排队的秒杀券集合中移除
+     * 移除之后重新检查队列：领取凭证时先加入队列再加入集合，移除之前加入队列的凭证在这里重新加入集合，
+     * 移除之后加入队列的凭证由领取凭证时加入集合，凭证不会留在不被调度的队列中
+     */
+    private void deactivate(Long voucherId) {
+        stringRedisTemplate.opsForSet().remove(RedisConstants.SECKILL_QUEUE_ACTIVE_KEY, voucherId.toString());
+        Long size = stringRedisTemplate.opsForZSet().zCard(queueKey(voucherId));
+        if (size != null && size > 0) {
+            stringRedisTemplate.opsForSet().add(RedisConstants.SECKILL_QUEUE_ACTIVE_KEY, voucherId.toString());
+        }
+    }
+
+    private void submit(Long voucherId, String member) {
+        String[] parts = member.split(":");
+        long ticketId = Long.parseLong(parts[0]);
+        Long userId = Long.valueOf(parts[1]);
+        inFlight.incrementAndGet();
+        try {
+            workers.execute(() -> process(ticketId, voucherId, userId));
+        } catch (RejectedExecutionException e) {
+            // 节点正在关闭，凭证过期之后用户可以重新排队
+            inFlight.decrementAndGet();
+            log.warn("节点关闭，排队凭证未下单：{}", ticketId);
+        }
+    }
+
+    /**
+     * 以凭证中的用户执行秒杀流程，结果写回凭证
+     */
+    private void process(long ticketId, Long voucherId, Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        UserHolder.saveUser(user);
+        try {
+            Result result;
+            try {
+                result = voucherOrderService.seckillVoucher(voucherId);
+            } catch (Exception e) {
+                log.error("排队凭证下单失败：{}", ticketId, e);
+                result = Result.fail("系统繁忙，请稍后重试！");
+            }
+            finish(ticketId, voucherId, userId, result);
+        } catch (Exception e) {
+            log.error("写回排队凭证的结果失败：{}", ticketId, e);
+        } finally {
+            UserHolder.removeUser();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void finish(long ticketId, Long voucherId, Long userId, Result result) {
+        boolean success = Boolean.TRUE.equals(result.getSuccess());
+        stringRedisTemplate.execute(FINISH_SCRIPT,
+                Arrays.asList(ticketKey(voucherId, ticketId),
+                        tagged(RedisConstants.SECKILL_TICKET_USER_KEY, voucherId) + ":" + userId),
+                success ? SeckillTicket.Status.SUCCESS.name() : SeckillTicket.Status.FAILED.name(),
+                success ? "orderId" : "message",
+                success ? String.valueOf(result.getData()) : result.getErrorMsg(),
+                String.valueOf(seckillProperties.getWaitingRoom().getTicketTtl().toSeconds()));
+    }
+
+    private static String queueKey(Long voucherId) {
+        return tagged(RedisConstants.SECKILL_QUEUE_KEY, voucherId);
+    }
+
+    private static String ticketKey(Long voucherId, long ticketId) {
+        return tagged(RedisConstants.SECKILL_TICKET_KEY, voucherId) + ":" + ticketId;
+    }
+
+    /**
+     * 以秒杀券id作为hash tag，同一张秒杀券的key在集群中位于同一个slot
+     */
+    private static String tagged(String prefix, Long voucherId) {
+        return prefix + "{" + voucherId + "}";
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private <T> List<T> executeList(DefaultRedisScript<List> script, List<String> keys, Object... args) {
+        List<T> result = stringRedisTemplate.execute(script, keys, args);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * 本地缓存的已完成凭证，保存持有者用于校验
+     */
+    private static class FinishedTicket {
+
+        private final Long userId;
+
+        private final SeckillTicket ticket;
+
+        private FinishedTicket(Long userId, SeckillTicket ticket) {
+            this.userId = userId;
+            this.ticket = ticket;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.hmdp.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 合并同一个key的并发调用：同一时刻只有一个线程真正执行，其他线程等待并共享它的结果
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class SingleFlight {
+
+    private final Map<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行loader，如果同一个key已经有线程在执行，则等待该线程的结果
+     * @param key
+     * @param loader
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        try {
+            T result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地的秒杀券售罄标记
+ * 1. 任意节点发现库存不足时在本地标记售罄，并通过发布订阅通知所有节点，之后的请求在本地直接拒绝，不访问redis和数据库
+ * 2. 库存归还或秒杀券重新加载时清除标记并通知所有节点
+ * 3. 标记只是提示，超过有效期后自动失效，下一个请求重新到redis确认，防止错过清除通知后一直拒绝
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Slf4j
+@Component
+public class SoldOutRegistry {
+
+    private static final String SOLD_OUT = "soldout";
+
+    private static final String RESTOCK = "restock";
+
+    /**
+     * 售罄的秒杀券id -> 标记失效的时间
+     */
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 因为售罄在本地直接拒绝的请求数
+     */
+    private Counter rejections;
+
+    @PostConstruct
+    public void init() {
+        rejections = Counter.builder("hmdp.seckill.sold.out.rejections")
+                .description("秒杀券售罄后在本地直接拒绝的请求数").register(meterRegistry);
+
+        // 订阅售罄频道，消息格式为"秒杀券id#soldout"（售罄）或"秒杀券id#restock"（清除售罄标记）
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisConstants.SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    /**
+     * 秒杀券是否已经售罄，只读取本地标记
+     * @param voucherId
+     * @return
+     */
+    public boolean isSoldOut(Long voucherId) {
+        Long expireAt = soldOut.get(voucherId);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt < System.currentTimeMillis()) {
+            // 标记已经失效，由下一个请求重新确认
+            soldOut.remove(voucherId, expireAt);
+            return false;
+        }
+        rejections.increment();
+        return true;
+    }
+
+    /**
+     * 标记秒杀券售罄并通知所有节点，本地已经标记过时不再通知
+     * @param voucherId
+     */
+    public void markSoldOut(Long voucherId) {
+        if (soldOut.put(voucherId, expireAt()) == null) {
+            publish(voucherId, SOLD_OUT);
+        }
+    }
+
+    /**
+     * 清除售罄标记并通知所有节点，用于库存归还或秒杀券重新加载之后
+     * @param voucherId
+     */
+    public void reset(Long voucherId) {
+        soldOut.remove(voucherId);
+        publish(voucherId, RESTOCK);
+    }
+
+    private void publish(Long voucherId, String event) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisConstants.SECKILL_SOLD_OUT_CHANNEL, voucherId + "#" + event);
+        } catch (Exception e) {
+            // 通知失败时其他节点仍然到redis中判断，不影响正确性
+            log.warn("售罄通知发送失败：{}", voucherId, e);
+        }
+    }
+
+    private void onMessage(String message) {
+        int separator = message.lastIndexOf('#');
+        if (separator < 0) {
+            return;
+        }
+        Long voucherId = Long.valueOf(message.substring(0, separator));
+        if (SOLD_OUT.equals(message.substring(separator + 1))) {
+            soldOut.put(voucherId, expireAt());
+        } else {
+            soldOut.remove(voucherId);
+        }
+    }
+
+    private long expireAt() {
+        return System.currentTimeMillis() + seckillProperties.getSoldOutTtl().toMillis();
+    }
+}
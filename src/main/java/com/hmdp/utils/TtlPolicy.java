@@ -0,0 +1,71 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheClientProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存有效期策略，在基础有效期上增加随机抖动，避免同一批写入的key在同一时刻集体过期造成缓存雪崩
+ * 实际有效期在[基础有效期, 基础有效期 + 抖动窗口)内均匀分布
+ * 基础有效期和抖动窗口可以通过hmdp.cache.ttl.prefixes按key前缀配置，未配置时使用调用方传入的有效期和默认抖动比例
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Component
+public class TtlPolicy {
+
+    private final CacheClientProperties.Ttl ttl;
+
+    public TtlPolicy(CacheClientProperties cacheClientProperties) {
+        this.ttl = cacheClientProperties.getTtl();
+    }
+
+    /**
+     * 计算数据的有效期
+     * @param key
+     * @param time 未配置基础有效期时使用的有效期
+     * @param unit
+     * @return 增加抖动后的有效期，毫秒
+     */
+    public long ttlMillis(String key, long time, TimeUnit unit) {
+        CacheClientProperties.PrefixTtl prefixTtl = match(key);
+        long base = prefixTtl != null && prefixTtl.getBase() != null
+                ? prefixTtl.getBase().toMillis() : unit.toMillis(time);
+        long window = prefixTtl != null && prefixTtl.getJitter() != null
+                ? prefixTtl.getJitter().toMillis() : (long) (base * ttl.getJitterRatio());
+        return base + jitter(window);
+    }
+
+    /**
+     * 计算防止缓存穿透的空值的有效期
+     * @param key
+     * @return 增加抖动后的有效期，毫秒
+     */
+    public long nullTtlMillis(String key) {
+        long base = ttl.getNullTtl().toMillis();
+        return base + jitter((long) (base * ttl.getJitterRatio()));
+    }
+
+    /**
+     * 查找与key匹配的最长前缀的配置
+     */
+    private CacheClientProperties.PrefixTtl match(String key) {
+        CacheClientProperties.PrefixTtl matched = null;
+        int matchedLength = -1;
+        for (Map.Entry<String, CacheClientProperties.PrefixTtl> entry : ttl.getPrefixes().entrySet()) {
+            String prefix = entry.getKey();
+            if (prefix.length() > matchedLength && key.startsWith(prefix)) {
+                matched = entry.getValue();
+                matchedLength = prefix.length();
+            }
+        }
+        return matched;
+    }
+
+    private static long jitter(long window) {
+        return window > 0 ? ThreadLocalRandom.current().nextLong(window) : 0L;
+    }
+}
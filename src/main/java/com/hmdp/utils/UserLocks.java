@@ -0,0 +1,91 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.RedisLockProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按用户加锁，保证同一用户的请求串行执行
+ * 1. local：进程内固定数量的分段锁，用户id散列到其中一个，占用的内存与用户数无关，只能在单节点部署时使用
+ * 2. distributed：基于redis的分布式锁，同一用户的请求落在不同节点上也能互斥
+ * 两种模式都支持等待超时，加锁和解锁必须在同一个线程中
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Component
+public class UserLocks {
+
+    @Resource
+    private RedisLockService redisLockService;
+
+    @Resource
+    private RedisLockProperties redisLockProperties;
+
+    /**
+     * 分段锁，个数为2的幂
+     */
+    private ReentrantLock[] stripes;
+
+    private int mask;
+
+    @PostConstruct
+    public void init() {
+        int count = 1;
+        while (count < redisLockProperties.getUserLock().getStripes()) {
+            count <<= 1;
+        }
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = count - 1;
+    }
+
+    /**
+     * 获取用户的锁，最多等待timeout
+     * @param userId
+     * @param timeout 为0时只尝试一次
+     * @param unit
+     * @return 是否获取成功，等待期间被中断时返回false并保留中断标记
+     */
+    public boolean tryLock(Long userId, long timeout, TimeUnit unit) {
+        if (isDistributed()) {
+            return redisLockService.getLock(RedisConstants.LOCK_ORDER_KEY + userId).tryLock(timeout, unit);
+        }
+        try {
+            return stripeOf(userId).tryLock(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 释放用户的锁
+     * @param userId
+     * @throws IllegalMonitorStateException 当前线程不持有该锁
+     */
+    public void unlock(Long userId) {
+        if (isDistributed()) {
+            redisLockService.getLock(RedisConstants.LOCK_ORDER_KEY + userId).unlock();
+            return;
+        }
+        stripeOf(userId).unlock();
+    }
+
+    private boolean isDistributed() {
+        return redisLockProperties.getUserLock().getMode() == RedisLockProperties.UserLockMode.DISTRIBUTED;
+    }
+
+    /**
+     * 用户id散列之后取低位，避免连续的用户id集中在相邻的分段
+     */
+    private ReentrantLock stripeOf(Long userId) {
+        int hash = Long.hashCode(userId) * 0x9E3779B1;
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,393 @@
+package com.hmdp.utils.codec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编解码器
+ * 数据格式：魔数(1字节) + 标志位(1字节) + [逻辑过期时间(8字节)] + [重建耗时(变长)] + 结构指纹(4字节) + 空值位图 + 各字段的值
+ * 字段按名称排序后依次写入，整数使用zigzag变长编码，字符串使用长度前缀的UTF-8编码
+ * 结构指纹由字段名称和类型计算得到，实体类字段发生变化后旧数据的指纹不再匹配，按无法解码处理
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    /**
+     * 魔数，0xC1在UTF-8中不会出现，不会与JSON格式的数据混淆
+     */
+    public static final byte MAGIC = (byte) 0xC1;
+
+    /**
+     * 标志位：数据包含逻辑过期时间
+     */
+    private static final int FLAG_LOGICAL_EXPIRE = 1;
+
+    /**
+     * 标志位：数据包含重建耗时
+     */
+    private static final int FLAG_REBUILD_COST = 2;
+
+    /**
+     * 各个类的结构，首次编解码时解析并缓存
+     */
+    private final Map<Class<?>, Schema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * 判断该类型能否使用二进制格式编码
+     * 只支持字段均为基本类型、包装类型、String、LocalDateTime、LocalDate且具有无参构造器的类
+     * @param type
+     * @return
+     */
+    public boolean supports(Class<?> type) {
+        return schemaOf(type) != null;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return encode(value, 0, 0L, 0L);
+    }
+
+    @Override
+    public byte[] encodeWithLogicalExpire(Object value, long expireTime, long rebuildCost) {
+        int flags = rebuildCost > 0 ? FLAG_LOGICAL_EXPIRE | FLAG_REBUILD_COST : FLAG_LOGICAL_EXPIRE;
+        return encode(value, flags, expireTime, rebuildCost);
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        Reader reader = new Reader(bytes);
+        reader.position = 1;
+        int flags = reader.readByte();
+        if ((flags & FLAG_LOGICAL_EXPIRE) != 0) {
+            reader.readLong();
+        }
+        if ((flags & FLAG_REBUILD_COST) != 0) {
+            reader.readVarLong();
+        }
+        return readValue(reader, type);
+    }
+
+    @Override
+    public <R> CacheData<R> decodeWithLogicalExpire(byte[] bytes, Class<R> type) {
+        Reader reader = new Reader(bytes);
+        reader.position = 1;
+        int flags = reader.readByte();
+        if ((flags & FLAG_LOGICAL_EXPIRE) == 0) {
+            return null;
+        }
+        long expireTime = reader.readLong();
+        long rebuildCost = (flags & FLAG_REBUILD_COST) != 0 ? reader.readVarLong() : 0L;
+        R r = readValue(reader, type);
+        return r == null ? null : new CacheData<>(r, expireTime, rebuildCost);
+    }
+
+    private byte[] encode(Object value, int flags, long expireTime, long rebuildCost) {
+        Schema schema = schemaOf(value.getClass());
+        if (schema == null) {
+            throw new IllegalArgumentException("二进制编码不支持该类型：" + value.getClass().getName());
+        }
+        Writer writer = new Writer(64);
+        writer.writeByte(MAGIC);
+        writer.writeByte(flags);
+        if ((flags & FLAG_LOGICAL_EXPIRE) != 0) {
+            writer.writeLong(expireTime);
+        }
+        if ((flags & FLAG_REBUILD_COST) != 0) {
+            writer.writeVarLong(rebuildCost);
+        }
+        writer.writeInt(schema.fingerprint);
+
+        try {
+            // 1. 写入空值位图
+            Object[] values = new Object[schema.fields.length];
+            byte[] nullBits = new byte[(schema.fields.length + 7) >>> 3];
+            for (int i = 0; i < schema.fields.length; i++) {
+                values[i] = schema.fields[i].get(value);
+                if (values[i] == null) {
+                    nullBits[i >>> 3] |= (byte) (1 << (i & 7));
+                }
+            }
+            writer.writeBytes(nullBits);
+
+            // 2. 依次写入非空字段
+            for (int i = 0; i < schema.fields.length; i++) {
+                if (values[i] != null) {
+                    writeField(writer, schema.kinds[i], values[i]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toByteArray();
+    }
+
+    private <R> R readValue(Reader reader, Class<R> type) {
+        Schema schema = schemaOf(type);
+        if (schema == null || reader.readInt() != schema.fingerprint) {
+            return null;
+        }
+        try {
+            Object value = schema.constructor.newInstance();
+            int bitmapOffset = reader.position;
+            reader.position += (schema.fields.length + 7) >>> 3;
+            for (int i = 0; i < schema.fields.length; i++) {
+                if ((reader.bytes[bitmapOffset + (i >>> 3)] & (1 << (i & 7))) != 0) {
+                    continue;
+                }
+                schema.fields[i].set(value, readField(reader, schema.kinds[i]));
+            }
+            return type.cast(value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Schema schemaOf(Class<?> type) {
+        Schema schema = schemas.get(type);
+        if (schema == null) {
+            schema = Schema.parse(type);
+            schemas.put(type, schema);
+        }
+        return schema == Schema.UNSUPPORTED ? null : schema;
+    }
+
+    private static void writeField(Writer writer, Kind kind, Object value) {
+        switch (kind) {
+            case LONG -> writer.writeVarLong(((Long) value));
+            case INT -> writer.writeVarLong(((Integer) value));
+            case SHORT -> writer.writeVarLong(((Short) value));
+            case BYTE -> writer.writeByte((Byte) value);
+            case DOUBLE -> writer.writeLong(Double.doubleToRawLongBits((Double) value));
+            case FLOAT -> writer.writeInt(Float.floatToRawIntBits((Float) value));
+            case BOOLEAN -> writer.writeByte((Boolean) value ? 1 : 0);
+            case STRING -> writer.writeString((String) value);
+            case LOCAL_DATE_TIME -> {
+                LocalDateTime time = (LocalDateTime) value;
+                writer.writeVarLong(time.toEpochSecond(ZoneOffset.UTC));
+                writer.writeVarLong(time.getNano());
+            }
+            case LOCAL_DATE -> writer.writeVarLong(((LocalDate) value).toEpochDay());
+            default -> throw new IllegalStateException("未知的字段类型：" + kind);
+        }
+    }
+
+    private static Object readField(Reader reader, Kind kind) {
+        return switch (kind) {
+            case LONG -> reader.readVarLong();
+            case INT -> (int) reader.readVarLong();
+            case SHORT -> (short) reader.readVarLong();
+            case BYTE -> (byte) reader.readByte();
+            case DOUBLE -> Double.longBitsToDouble(reader.readLong());
+            case FLOAT -> Float.intBitsToFloat(reader.readInt());
+            case BOOLEAN -> reader.readByte() != 0;
+            case STRING -> reader.readString();
+            case LOCAL_DATE_TIME -> {
+                long epochSecond = reader.readVarLong();
+                int nano = (int) reader.readVarLong();
+                yield LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+            }
+            case LOCAL_DATE -> LocalDate.ofEpochDay(reader.readVarLong());
+        };
+    }
+
+    private enum Kind {
+        LONG, INT, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, STRING, LOCAL_DATE_TIME, LOCAL_DATE;
+
+        static Kind of(Class<?> type) {
+            if (type == Long.class || type == long.class) return LONG;
+            if (type == Integer.class || type == int.class) return INT;
+            if (type == Short.class || type == short.class) return SHORT;
+            if (type == Byte.class || type == byte.class) return BYTE;
+            if (type == Double.class || type == double.class) return DOUBLE;
+            if (type == Float.class || type == float.class) return FLOAT;
+            if (type == Boolean.class || type == boolean.class) return BOOLEAN;
+            if (type == String.class) return STRING;
+            if (type == LocalDateTime.class) return LOCAL_DATE_TIME;
+            if (type == LocalDate.class) return LOCAL_DATE;
+            return null;
+        }
+    }
+
+    /**
+     * 类的结构：按名称排序的字段及其类型
+     */
+    private static class Schema {
+
+        static final Schema UNSUPPORTED = new Schema(null, new Field[0], new Kind[0], 0);
+
+        final Constructor<?> constructor;
+        final Field[] fields;
+        final Kind[] kinds;
+        final int fingerprint;
+
+        Schema(Constructor<?> constructor, Field[] fields, Kind[] kinds, int fingerprint) {
+            this.constructor = constructor;
+            this.fields = fields;
+            this.kinds = kinds;
+            this.fingerprint = fingerprint;
+        }
+
+        static Schema parse(Class<?> type) {
+            if (type.isInterface() || type.isArray() || type.isPrimitive()
+                    || Modifier.isAbstract(type.getModifiers()) || Kind.of(type) != null) {
+                return UNSUPPORTED;
+            }
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    if (Kind.of(field.getType()) == null) {
+                        return UNSUPPORTED;
+                    }
+                    fields.add(field);
+                }
+            }
+            fields.sort(Comparator.comparing(Field::getName));
+
+            Field[] fieldArray = fields.toArray(new Field[0]);
+            Kind[] kinds = new Kind[fieldArray.length];
+            StringBuilder signature = new StringBuilder();
+            for (int i = 0; i < fieldArray.length; i++) {
+                fieldArray[i].setAccessible(true);
+                kinds[i] = Kind.of(fieldArray[i].getType());
+                signature.append(fieldArray[i].getName()).append(':').append(kinds[i]).append(';');
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return new Schema(constructor, fieldArray, kinds, signature.toString().hashCode());
+            } catch (NoSuchMethodException e) {
+                return UNSUPPORTED;
+            }
+        }
+    }
+
+    private static class Writer {
+        private byte[] buf;
+        private int size;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void ensure(int n) {
+            if (size + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + n));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeInt(int v) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeVarLong(long v) {
+            // zigzag编码，绝对值小的负数也只占少量字节
+            long zigzag = (v << 1) ^ (v >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[size++] = (byte) zigzag;
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    private static class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        int readInt() {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v = (v << 8) | (bytes[position++] & 0xFF);
+            }
+            return v;
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (bytes[position++] & 0xFF);
+            }
+            return v;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String s = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.hmdp.utils.codec;
+
+/**
+ * 缓存数据的编解码器
+ * 普通数据直接编码数据本身；逻辑过期数据需要同时编码逻辑过期时间
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码普通数据
+     * @param value
+     * @return
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 编码逻辑过期数据
+     * @param value
+     * @param expireTime 逻辑过期时间，毫秒时间戳
+     * @return
+     */
+    default byte[] encodeWithLogicalExpire(Object value, long expireTime) {
+        return encodeWithLogicalExpire(value, expireTime, 0L);
+    }
+
+    /**
+     * 编码逻辑过期数据，同时保存重建该数据的耗时，用于提前刷新
+     * @param value
+     * @param expireTime 逻辑过期时间，毫秒时间戳
+     * @param rebuildCost 重建耗时，毫秒，未知时为0
+     * @return
+     */
+    byte[] encodeWithLogicalExpire(Object value, long expireTime, long rebuildCost);
+
+    /**
+     * 判断能否解码该数据，用于自动识别redis中数据的格式
+     * @param bytes
+     * @return
+     */
+    boolean canDecode(byte[] bytes);
+
+    /**
+     * 解码普通数据
+     * @param bytes
+     * @param type
+     * @return 数据无法按type解码时返回null
+     */
+    <R> R decode(byte[] bytes, Class<R> type);
+
+    /**
+     * 解码逻辑过期数据
+     * @param bytes
+     * @param type
+     * @return 数据无法按type解码时返回null
+     */
+    <R> CacheData<R> decodeWithLogicalExpire(byte[] bytes, Class<R> type);
+}
@@ -0,0 +1,18 @@
+package com.hmdp.utils.codec;
+
+/**
+ * 写入缓存时使用的编码格式
+ * 读取时会根据数据头自动识别格式，与此配置无关
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public enum CacheCodecType {
+    /**
+     * 原有的Hutool JSON格式
+     */
+    JSON,
+    /**
+     * 紧凑的二进制格式
+     */
+    BINARY
+}
@@ -0,0 +1,139 @@
+package com.hmdp.utils.codec;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩编码后的缓存数据
+ * 格式：[魔数0xC2][原始长度varint][deflate数据]
+ * 魔数与二进制格式(0xC1)及JSON的首字节都不相同，读取时根据首字节判断是否需要先解压
+ * 只压缩超过阈值的数据，压缩后没有变小时保存原始数据
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class CacheCompressor {
+
+    public static final byte MAGIC = (byte) 0xC2;
+
+    /**
+     * 短于该长度的数据压缩后不可能变小
+     */
+    private static final int MIN_LENGTH = 16;
+
+    private final int threshold;
+
+    /**
+     * Deflater和Inflater创建时会分配本地内存，每个线程复用一个
+     */
+    private final ThreadLocal<Deflater> deflaters;
+
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * @param threshold 编码后的数据达到该字节数才压缩
+     * @param level 压缩级别，1最快，9压缩率最高
+     */
+    public CacheCompressor(int threshold, int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("压缩级别必须在1到9之间");
+        }
+        this.threshold = threshold;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    /**
+     * 数据是否达到压缩阈值
+     * @param bytes
+     * @return
+     */
+    public boolean shouldCompress(byte[] bytes) {
+        return bytes.length >= threshold;
+    }
+
+    /**
+     * 压缩数据
+     * @param raw
+     * @return 压缩后的数据，压缩后没有变小时返回null
+     */
+    public byte[] compress(byte[] raw) {
+        if (raw.length < MIN_LENGTH) {
+            return null;
+        }
+
+        // 1. 写入魔数和原始长度
+        byte[] out = new byte[raw.length];
+        out[0] = MAGIC;
+        int offset = writeVarint(out, 1, raw.length);
+
+        // 2. 压缩至剩余空间，空间不够说明压缩后不会变小
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        while (!deflater.finished() && offset < out.length) {
+            offset += deflater.deflate(out, offset, out.length - offset);
+        }
+        if (!deflater.finished()) {
+            return null;
+        }
+        byte[] compressed = new byte[offset];
+        System.arraycopy(out, 0, compressed, 0, offset);
+        return compressed;
+    }
+
+    /**
+     * 是否为压缩后的数据
+     * @param bytes
+     * @return
+     */
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    /**
+     * 解压数据
+     * @param bytes
+     * @return
+     */
+    public byte[] decompress(byte[] bytes) {
+        // 1. 读取原始长度
+        int rawLength = 0;
+        int offset = 1;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[offset++];
+            rawLength |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        // 2. 解压至原始长度的数组
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes, offset, bytes.length - offset);
+        byte[] raw = new byte[rawLength];
+        int length = 0;
+        try {
+            while (length < rawLength) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IllegalStateException("压缩数据不完整");
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩数据格式错误", e);
+        }
+        return raw;
+    }
+
+    private static int writeVarint(byte[] out, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+}
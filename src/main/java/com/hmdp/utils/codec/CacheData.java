@@ -0,0 +1,60 @@
+package com.hmdp.utils.codec;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 解码后的逻辑过期数据
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@Getter
+@AllArgsConstructor
+public class CacheData<R> {
+
+    /**
+     * 缓存的数据
+     */
+    private final R data;
+
+    /**
+     * 逻辑过期时间，毫秒时间戳
+     */
+    private final long expireTime;
+
+    /**
+     * 重建该数据的耗时，毫秒，未知时为0
+     */
+    private final long rebuildCost;
+
+    public CacheData(R data, long expireTime) {
+        this(data, expireTime, 0L);
+    }
+
+    /**
+     * 是否已经逻辑过期
+     * @param now 当前毫秒时间戳
+     * @return
+     */
+    public boolean isExpired(long now) {
+        return expireTime <= now;
+    }
+
+    /**
+     * 按XFetch算法判断是否需要提前刷新：now - rebuildCost * beta * ln(random) >= expireTime
+     * 越接近过期、重建越慢，提前刷新的概率越大；重建耗时未知时退化为逻辑过期
+     * @param now 当前毫秒时间戳
+     * @param beta 提前刷新的激进程度，大于1时更早刷新
+     * @return
+     */
+    public boolean shouldRefresh(long now, double beta) {
+        if (rebuildCost <= 0) {
+            return isExpired(now);
+        }
+        // 取值范围(0, 1]，避免ln(0)
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return now - rebuildCost * beta * Math.log(random) >= expireTime;
+    }
+}
@@ -0,0 +1,67 @@
+package com.hmdp.utils.codec;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.utils.RedisData;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Hutool JSON编解码器，与引入编解码器之前写入redis的数据格式完全一致
+ * 逻辑过期数据仍然包装成RedisData
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encodeWithLogicalExpire(Object value, long expireTime, long rebuildCost) {
+        RedisData redisData = new RedisData();
+        redisData.setData(value);
+        redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireTime), ZoneId.systemDefault()));
+        if (rebuildCost > 0) {
+            redisData.setRebuildCost(rebuildCost);
+        }
+        return JSONUtil.toJsonStr(redisData).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * JSON作为兜底格式，其他编解码器无法识别的数据都按JSON解码
+     */
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return true;
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        String json = new String(bytes, StandardCharsets.UTF_8);
+        // 数组按JSON数组解析，再将每个元素转换成数组的元素类型
+        if (type.isArray()) {
+            return Convert.convert(type, JSONUtil.parseArray(json));
+        }
+        return JSONUtil.toBean(json, type);
+    }
+
+    @Override
+    public <R> CacheData<R> decodeWithLogicalExpire(byte[] bytes, Class<R> type) {
+        RedisData redisData = JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), RedisData.class);
+        if (redisData.getExpireTime() == null) {
+            return null;
+        }
+        Object data = redisData.getData();
+        R r = data instanceof JSONObject ? JSONUtil.toBean((JSONObject) data, type) : Convert.convert(type, data);
+        long expireTime = redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long rebuildCost = redisData.getRebuildCost() == null ? 0L : redisData.getRebuildCost();
+        return new CacheData<>(r, expireTime, rebuildCost);
+    }
+}
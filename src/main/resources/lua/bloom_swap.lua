@@ -0,0 +1,8 @@
+-- 用重建的bitmap替换布隆过滤器，并合并重建期间新增的元素
+-- KEYS[1] 布隆过滤器的bitmap，KEYS[2] 重建开始之后新增元素写入的bitmap
+-- ARGV[1] 根据全量数据重建的bitmap
+-- 替换与合并在同一个脚本中执行，其他节点任何时刻读取到的都是完整的bitmap，重建期间新增的元素不会丢失
+redis.call('set', KEYS[1], ARGV[1])
+redis.call('bitop', 'or', KEYS[1], KEYS[1], KEYS[2])
+redis.call('del', KEYS[2])
+return 1
@@ -0,0 +1,11 @@
+-- 获取可重入锁
+-- KEYS[1] 锁的key，hash结构，field为持有者，value为重入次数
+-- ARGV[1] 租期，毫秒
+-- ARGV[2] 持有者
+-- 获取成功返回nil，失败返回锁的剩余有效期（毫秒）
+if redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[2]) == 1 then
+    redis.call('hincrby', KEYS[1], ARGV[2], 1)
+    redis.call('pexpire', KEYS[1], ARGV[1])
+    return nil
+end
+return redis.call('pttl', KEYS[1])
@@ -0,0 +1,14 @@
+-- 认领已经到期的订单，多个节点同时检查时每个订单只被一个节点处理
+-- KEYS[1] 订单超时时间，zset结构
+-- ARGV[1] 当前时间，毫秒
+-- ARGV[2] 最多认领的个数
+-- ARGV[3] 处理期限，毫秒
+-- 认领的订单的超时时间推迟到处理期限之后，节点宕机时由其他节点重新认领；处理完成后由认领的节点删除
+-- 返回认领的member列表
+local now = tonumber(ARGV[1])
+local due = redis.call('zrangebyscore', KEYS[1], '-inf', now, 'LIMIT', 0, tonumber(ARGV[2]))
+local deadline = now + tonumber(ARGV[3])
+for i = 1, #due do
+    redis.call('zadd', KEYS[1], 'XX', deadline, due[i])
+end
+return due
@@ -0,0 +1,38 @@
+-- 令牌桶限流，多个令牌桶同时判断，全部有令牌时才各扣减一个
+-- KEYS[i] 第i个令牌桶，hash结构，tokens为剩余令牌数，ts为上次扣减的时间
+-- ARGV[2i-1] 第i个令牌桶的容量，ARGV[2i] 每秒生成的令牌数
+-- 时间使用redis服务器的时间，各节点的时钟偏差不影响结果
+-- 允许返回0，拒绝返回需要等待的毫秒数
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+-- 1. 按经过的时间补充令牌，计算最久的等待时间
+local tokens = {}
+local wait = 0
+for i = 1, #KEYS do
+    local capacity = tonumber(ARGV[2 * i - 1])
+    local rate = tonumber(ARGV[2 * i])
+    local bucket = redis.call('hmget', KEYS[i], 'tokens', 'ts')
+    local available = tonumber(bucket[1])
+    if available == nil then
+        available = capacity
+    else
+        available = math.min(capacity, available + math.max(0, now - tonumber(bucket[2])) * rate / 1000)
+    end
+    tokens[i] = available
+    if available < 1 then
+        wait = math.max(wait, math.ceil((1 - available) * 1000 / rate))
+    end
+end
+if wait > 0 then
+    return wait
+end
+
+-- 2. 每个令牌桶扣减一个令牌，令牌桶补满之后自动过期
+for i = 1, #KEYS do
+    local capacity = tonumber(ARGV[2 * i - 1])
+    local rate = tonumber(ARGV[2 * i])
+    redis.call('hset', KEYS[i], 'tokens', tostring(tokens[i] - 1), 'ts', now)
+    redis.call('pexpire', KEYS[i], math.ceil(capacity * 1000 / rate) + 1000)
+end
+return 0
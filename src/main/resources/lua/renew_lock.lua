@@ -0,0 +1,10 @@
+-- 续期锁，只有持有者才能续期
+-- KEYS[1] 锁的key
+-- ARGV[1] 租期，毫秒
+-- ARGV[2] 持有者
+-- 续期成功返回1，锁已经不属于该持有者返回0
+if redis.call('hexists', KEYS[1], ARGV[2]) == 1 then
+    redis.call('pexpire', KEYS[1], ARGV[1])
+    return 1
+end
+return 0
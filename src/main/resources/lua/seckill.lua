@@ -0,0 +1,43 @@
+-- 秒杀资格判断，校验时间、库存和一人一单之后扣减库存、记录下单用户，并将订单写入消息队列
+-- 所有key使用用户所在分段的hash tag，集群模式下位于同一个槽
+-- KEYS[1] 秒杀券信息，hash结构，字段为stock、begin、end，时间为毫秒时间戳
+-- KEYS[2] 已经下单的用户，set结构
+-- KEYS[3] 订单消息队列，stream结构
+-- KEYS[4] 订单超时时间，zset结构
+-- ARGV[1] 用户id
+-- ARGV[2] 当前时间，毫秒
+-- ARGV[3] 订单id
+-- ARGV[4] 秒杀券id
+-- ARGV[5] 支付期限，毫秒，为0时不超时取消
+-- ARGV[6] 为1时库存已经从其他分段扣减，不再检查和扣减本分段的库存
+-- 返回 0 成功，1 秒杀未开始，2 秒杀已结束，3 库存不足，4 重复下单，5 秒杀券未加载到redis
+local voucher = redis.call('hmget', KEYS[1], 'stock', 'begin', 'end')
+if not voucher[1] then
+    return 5
+end
+local now = tonumber(ARGV[2])
+if now < tonumber(voucher[2]) then
+    return 1
+end
+if now > tonumber(voucher[3]) then
+    return 2
+end
+-- 用户总是落在同一个分段，一人一单只需要检查该分段
+if redis.call('sismember', KEYS[2], ARGV[1]) == 1 then
+    return 4
+end
+if ARGV[6] ~= '1' then
+    if tonumber(voucher[1]) <= 0 then
+        return 3
+    end
+    redis.call('hincrby', KEYS[1], 'stock', -1)
+end
+redis.call('sadd', KEYS[2], ARGV[1])
+-- 扣减库存与写入订单消息在同一个脚本中，获得资格的订单不会丢失
+redis.call('xadd', KEYS[3], '*', 'id', ARGV[3], 'userId', ARGV[1], 'voucherId', ARGV[4])
+-- 超时时间同样在脚本中写入，获得资格的订单一定会被检查是否超时
+local payWindow = tonumber(ARGV[5])
+if payWindow > 0 then
+    redis.call('zadd', KEYS[4], now + payWindow, ARGV[3] .. ':' .. ARGV[4] .. ':' .. ARGV[1])
+end
+return 0
@@ -0,0 +1,45 @@
+-- 按固定速率从排队队列中放行凭证，每张秒杀券一个令牌桶，所有节点共用，节点数变化不影响合计的放行速率
+-- 所有key都以秒杀券id作为hash tag，在集群中位于同一个slot
+-- KEYS[1] 排队队列，KEYS[2] 放行的令牌桶，hash结构
+-- ARGV[1] 每秒生成的令牌数，ARGV[2] 令牌桶容量，ARGV[3] 本次最多放行的凭证数
+-- ARGV[4] 为1时秒杀券已经售罄，直接放行不消耗令牌，排队的请求尽快得到结果
+-- 返回{队列中剩余的凭证数, 放行的member...}，剩余为0时由调用方从有凭证在排队的秒杀券集合中移除
+local size = redis.call('zcard', KEYS[1])
+if size == 0 then
+    return {0}
+end
+
+local limit = tonumber(ARGV[3])
+local free = ARGV[4] == '1'
+local rate = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local now, tokens
+if not free then
+    -- 1. 按经过的时间补充令牌，放行的凭证数不超过令牌数
+    local time = redis.call('time')
+    now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    local bucket = redis.call('hmget', KEYS[2], 'tokens', 'ts')
+    tokens = tonumber(bucket[1])
+    if tokens == nil then
+        tokens = capacity
+    else
+        tokens = math.min(capacity, tokens + math.max(0, now - tonumber(bucket[2])) * rate / 1000)
+    end
+    limit = math.min(limit, math.floor(tokens))
+end
+if limit <= 0 then
+    return {size}
+end
+
+-- 2. 按排队顺序取出凭证，只为取出的凭证消耗令牌
+local popped = redis.call('zpopmin', KEYS[1], limit)
+local admitted = #popped / 2
+local result = {size - admitted}
+for i = 1, #popped, 2 do
+    result[#result + 1] = popped[i]
+end
+if not free then
+    redis.call('hset', KEYS[2], 'tokens', tostring(tokens - admitted), 'ts', now)
+    redis.call('pexpire', KEYS[2], math.ceil(capacity * 1000 / rate) + 1000)
+end
+return result
@@ -0,0 +1,25 @@
+-- 领取排队凭证，同一用户对同一张秒杀券只有一个凭证
+-- 所有key都以秒杀券id作为hash tag，在集群中位于同一个slot；有凭证在排队的秒杀券集合由调用方维护
+-- KEYS[1] 排队队列，zset结构，member为"凭证id:用户id"，score为凭证id中的秒级时间戳，同一秒内按member的字典序即凭证id排序
+-- KEYS[2] 用户持有的凭证id
+-- KEYS[3] 凭证，hash结构
+-- ARGV[1] 凭证id，ARGV[2] 凭证id中的秒级时间戳，ARGV[3] 秒杀券id，ARGV[4] 用户id
+-- ARGV[5] 最多排队的凭证数，ARGV[6] 凭证的有效期，秒
+-- 返回{凭证id, 排队位置}：用户已有凭证时返回已有的凭证，不在排队时位置为0；队列已满时凭证id为-1
+-- 凭证id超过了lua数字的精度，以字符串返回
+local existing = redis.call('get', KEYS[2])
+if existing then
+    local rank = redis.call('zrank', KEYS[1], existing .. ':' .. ARGV[4])
+    return {existing, rank and rank + 1 or 0}
+end
+
+local size = redis.call('zcard', KEYS[1])
+if size >= tonumber(ARGV[5]) then
+    return {'-1', size}
+end
+
+redis.call('zadd', KEYS[1], ARGV[2], ARGV[1] .. ':' .. ARGV[4])
+redis.call('hset', KEYS[3], 'voucherId', ARGV[3], 'userId', ARGV[4], 'status', 'WAITING')
+redis.call('expire', KEYS[3], ARGV[6])
+redis.call('set', KEYS[2], ARGV[1], 'EX', ARGV[6])
+return {ARGV[1], size + 1}
@@ -0,0 +1,12 @@
+-- 加载秒杀券到redis
+-- KEYS[1] 秒杀券信息，hash结构
+-- ARGV[1] 库存，ARGV[2] 开始时间，ARGV[3] 结束时间，时间为毫秒时间戳
+-- ARGV[4] 为1时覆盖已有库存，为0时只在不存在时写入，避免覆盖已经扣减过的库存
+-- 返回加载之后的库存
+if ARGV[4] == '1' then
+    redis.call('hset', KEYS[1], 'stock', ARGV[1])
+else
+    redis.call('hsetnx', KEYS[1], 'stock', ARGV[1])
+end
+redis.call('hset', KEYS[1], 'begin', ARGV[2], 'end', ARGV[3])
+return tonumber(redis.call('hget', KEYS[1], 'stock'))
@@ -0,0 +1,14 @@
+-- 向一个库存分段归还库存
+-- KEYS[1] 秒杀券信息，hash结构
+-- KEYS[2] 可选，按订单归还时的归还记录，与KEYS[1]位于同一个分片，同一订单只归还一次
+-- ARGV[1] 归还的数量
+-- ARGV[2] 归还记录的有效期，毫秒
+-- 返回 1 归还成功，0 分段不存在或该订单已经归还过；分段不存在时不写入，避免生成没有起止时间的分段
+if redis.call('exists', KEYS[1]) == 0 then
+    return 0
+end
+if KEYS[2] and not redis.call('set', KEYS[2], '1', 'NX', 'PX', ARGV[2]) then
+    return 0
+end
+redis.call('hincrby', KEYS[1], 'stock', ARGV[1])
+return 1
@@ -0,0 +1,20 @@
+-- 撤销秒杀资格，订单没有创建成功或超时取消时归还库存并移除下单用户，同时移除订单的超时时间
+-- 所有key位于用户所在分段的分片中
+-- KEYS[1] 秒杀券信息，hash结构
+-- KEYS[2] 已经下单的用户，set结构
+-- KEYS[3] 订单超时时间，zset结构
+-- ARGV[1] 用户id
+-- ARGV[2] 订单的超时时间member，"订单id:秒杀券id:用户id"
+-- ARGV[3] 为1时只有超时时间还在才撤销：超时时间与撤销在同一个脚本中移除，已经移除说明该订单撤销过，
+--         用户之后重新下单时不会再移除用户、多归还库存
+-- 用户不在已下单集合中时不归还库存，重复撤销不会多加库存
+-- 返回 1 撤销成功，0 没有撤销
+local removed = redis.call('zrem', KEYS[3], ARGV[2])
+if ARGV[3] == '1' and removed == 0 then
+    return 0
+end
+if redis.call('srem', KEYS[2], ARGV[1]) == 1 then
+    redis.call('hincrby', KEYS[1], 'stock', 1)
+    return 1
+end
+return 0
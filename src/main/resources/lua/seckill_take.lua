@@ -0,0 +1,11 @@
+-- 从一个库存分段中扣减库存，用于用户所在分段耗尽后从其他分段扣减，以及重新分配分段库存
+-- KEYS[1] 秒杀券信息，hash结构
+-- ARGV[1] 最多扣减的数量
+-- 返回实际扣减的数量，库存不足时扣减剩余的全部库存
+local stock = tonumber(redis.call('hget', KEYS[1], 'stock'))
+if not stock or stock <= 0 then
+    return 0
+end
+local taken = math.min(stock, tonumber(ARGV[1]))
+redis.call('hincrby', KEYS[1], 'stock', -taken)
+return taken
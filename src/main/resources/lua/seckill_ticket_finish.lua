@@ -0,0 +1,11 @@
+-- 写回排队凭证的下单结果
+-- KEYS[1] 凭证，KEYS[2] 用户持有的凭证id，都以秒杀券id作为hash tag
+-- ARGV[1] 状态，ARGV[2] 结果的字段名，ARGV[3] 结果，ARGV[4] 凭证的有效期，秒
+-- 凭证可能在下单期间过期，重新设置有效期，避免写回的结果永不过期
+-- 下单失败时删除用户持有的凭证id，用户可以重新排队；成功时保留，重复抢购返回已有的订单
+redis.call('hset', KEYS[1], 'status', ARGV[1], ARGV[2], ARGV[3])
+redis.call('expire', KEYS[1], ARGV[4])
+if ARGV[1] == 'FAILED' then
+    redis.call('del', KEYS[2])
+end
+return 1
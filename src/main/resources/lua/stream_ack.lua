@@ -0,0 +1,8 @@
+-- 确认消息并从stream中删除，stream中只保留没有处理完的消息，长度即为积压量
+-- KEYS[1] stream
+-- ARGV[1] 消费者组
+-- ARGV[2...] 消息id
+-- 返回确认的消息数
+local acked = redis.call('xack', KEYS[1], ARGV[1], unpack(ARGV, 2))
+redis.call('xdel', KEYS[1], unpack(ARGV, 2))
+return acked
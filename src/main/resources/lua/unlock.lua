@@ -0,0 +1,18 @@
+-- 释放可重入锁，只有持有者才能释放
+-- KEYS[1] 锁的key
+-- ARGV[1] 持有者
+-- ARGV[2] 仍然持有时续期的租期，毫秒
+-- ARGV[3] 锁释放通知的频道
+-- 不是持有者返回nil，重入次数减1后仍然持有返回0，完全释放返回1
+if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then
+    return nil
+end
+local counter = redis.call('hincrby', KEYS[1], ARGV[1], -1)
+if counter > 0 then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 0
+end
+redis.call('del', KEYS[1])
+-- 通知等待该锁的线程
+redis.call('publish', ARGV[3], KEYS[1])
+return 1
@@ -10,12 +10,15 @@ import com.hmdp.utils.RedisData;
 import com.hmdp.utils.RedisIdWorker;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 /**
  * @author lr1descent
  * @version 1.0 2024-12-15
@@ -31,12 +34,42 @@ public class CacheClientTest {
     @Resource
     private RedisIdWorker redisIdWorker;
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
     @Test
     public void setWithLogicalExpireTest() {
         Shop shop = shopService.query().eq("id", 1L).one();
         cacheClient.setWithLogicalExpire(RedisConstants.CACHE_SHOP_KEY + 1L, shop, 30L, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void localTtlTest() throws InterruptedException {
+        // redis中的数据只剩1秒有效期，命中之后写入本地缓存的条目不能比redis中的数据活得更久
+        String keyPrefix = "cache:test:local:";
+        Long id = 1L;
+        Shop stale = new Shop();
+        stale.setId(id);
+        stale.setName("stale");
+        Shop fresh = new Shop();
+        fresh.setId(id);
+        fresh.setName("fresh");
+        stringRedisTemplate.delete(keyPrefix + id);
+        try {
+            cacheClient.set(keyPrefix + id, stale, 1L, TimeUnit.SECONDS);
+            Shop first = cacheClient.queryShopByThrough(keyPrefix, id, Shop.class, i -> fresh, 30L, TimeUnit.MINUTES);
+            assertEquals("stale", first.getName());
+
+            // redis中的数据过期之后，本地缓存也已经过期，重新从数据库加载
+            Thread.sleep(2000);
+            Shop second = cacheClient.queryShopByThrough(keyPrefix, id, Shop.class, i -> fresh, 30L, TimeUnit.MINUTES);
+            System.out.printf("before expiry: %s, after expiry: %s%n", first.getName(), second.getName());
+            assertEquals("fresh", second.getName());
+        } finally {
+            cacheClient.invalidate(keyPrefix + id);
+        }
+    }
+
     @Test
     public void timestampTest() {
         LocalDateTime now = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
@@ -0,0 +1,161 @@
+package com.hmdp;
+
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.RedisData;
+import com.hmdp.utils.codec.BinaryCacheCodec;
+import com.hmdp.utils.codec.CacheCodec;
+import com.hmdp.utils.codec.CacheCompressor;
+import com.hmdp.utils.codec.CacheData;
+import com.hmdp.utils.codec.JsonCacheCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对比JSON与二进制两种缓存格式的单条数据大小与编解码耗时
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class CacheCodecBenchmarkTest {
+
+    private static final int ITERATIONS = 50_000;
+
+    private final JsonCacheCodec jsonCodec = new JsonCacheCodec();
+
+    private final BinaryCacheCodec binaryCodec = new BinaryCacheCodec();
+
+    @Test
+    public void roundTripTest() {
+        Shop shop = sampleShop();
+        long expireTime = System.currentTimeMillis() + 30_000;
+        for (CacheCodec codec : new CacheCodec[]{jsonCodec, binaryCodec}) {
+            CacheData<Shop> cacheData = codec.decodeWithLogicalExpire(
+                    codec.encodeWithLogicalExpire(shop, expireTime), Shop.class);
+            assertEquals(shop, cacheData.getData());
+            assertEquals(expireTime, cacheData.getExpireTime());
+            assertEquals(shop, codec.decode(codec.encode(shop), Shop.class));
+
+            CacheData<Shop> withCost = codec.decodeWithLogicalExpire(
+                    codec.encodeWithLogicalExpire(shop, expireTime, 25L), Shop.class);
+            assertEquals(shop, withCost.getData());
+            assertEquals(25L, withCost.getRebuildCost());
+        }
+    }
+
+    @Test
+    public void arrayRoundTripTest() {
+        // @HmdpCacheable将返回List的方法的结果以数组保存，JSON解码时需要保留元素类型
+        Shop[] shops = {sampleShop(), sampleShop().setId(2L)};
+        long expireTime = System.currentTimeMillis() + 30_000;
+        assertArrayEquals(shops, jsonCodec.decode(jsonCodec.encode(shops), Shop[].class));
+        assertArrayEquals(shops, jsonCodec.decodeWithLogicalExpire(
+                jsonCodec.encodeWithLogicalExpire(shops, expireTime), Shop[].class).getData());
+    }
+
+    @Test
+    public void compressionTest() {
+        CacheCompressor compressor = new CacheCompressor(512, 1);
+        // 店铺的图片地址较长，重复拼接模拟图片较多的店铺
+        Shop shop = sampleShop();
+        shop.setImages(String.join(",", Collections.nCopies(8, shop.getImages())));
+        for (CacheCodec codec : new CacheCodec[]{jsonCodec, binaryCodec}) {
+            byte[] raw = codec.encodeWithLogicalExpire(shop, 0L);
+            assertTrue(compressor.shouldCompress(raw));
+            byte[] compressed = compressor.compress(raw);
+            assertTrue(compressed.length < raw.length);
+            assertTrue(CacheCompressor.isCompressed(compressed));
+            assertTrue(!binaryCodec.canDecode(compressed));
+            assertArrayEquals(raw, compressor.decompress(compressed));
+
+            long begin = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                compressor.decompress(compressor.compress(raw));
+            }
+            System.out.printf("%s: %d -> %d bytes, ratio %.2f, compress+decompress %.2f us/op%n",
+                    codec.getClass().getSimpleName(), raw.length, compressed.length,
+                    (double) compressed.length / raw.length, (System.nanoTime() - begin) / 1e3 / ITERATIONS);
+        }
+
+        // 压缩后不会变小的数据保存原始数据
+        assertNull(compressor.compress(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void legacyJsonTest() {
+        // 引入编解码器之前由JSONUtil直接写入的数据
+        Shop shop = sampleShop();
+        RedisData redisData = new RedisData();
+        redisData.setData(shop);
+        redisData.setExpireTime(LocalDateTime.now().plusSeconds(30).withNano(0));
+        byte[] legacy = JSONUtil.toJsonStr(redisData).getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(!binaryCodec.canDecode(legacy));
+        CacheData<Shop> cacheData = jsonCodec.decodeWithLogicalExpire(legacy, Shop.class);
+        assertEquals(shop, cacheData.getData());
+        assertEquals(redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                cacheData.getExpireTime());
+    }
+
+    @Test
+    public void benchmark() {
+        Shop shop = sampleShop();
+        for (CacheCodec codec : new CacheCodec[]{jsonCodec, binaryCodec}) {
+            long expireTime = System.currentTimeMillis() + 30_000;
+            byte[] bytes = codec.encodeWithLogicalExpire(shop, expireTime);
+
+            // 预热
+            run(codec, shop, bytes, ITERATIONS);
+
+            long begin = System.nanoTime();
+            run(codec, shop, bytes, ITERATIONS);
+            long encodeAndDecode = (System.nanoTime() - begin) / ITERATIONS;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                codec.decodeWithLogicalExpire(bytes, Shop.class);
+            }
+            long decode = (System.nanoTime() - begin) / ITERATIONS;
+
+            System.out.printf("%s: %d bytes/entry, encode+decode %d ns/op, decode %d ns/op%n",
+                    codec.getClass().getSimpleName(), bytes.length, encodeAndDecode, decode);
+        }
+        assertTrue(binaryCodec.encodeWithLogicalExpire(shop, 0L).length
+                < jsonCodec.encodeWithLogicalExpire(shop, 0L).length);
+    }
+
+    private static void run(CacheCodec codec, Shop shop, byte[] bytes, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            codec.encodeWithLogicalExpire(shop, i);
+            codec.decodeWithLogicalExpire(bytes, Shop.class);
+        }
+    }
+
+    private static Shop sampleShop() {
+        return new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRt.jpg,"
+                        + "https://qcloud.dpfile.com/pc/IOf6VX3qaBgFXFVgp75w-KKJmWZjFc8GXDU8g9bQC6YGCpAmG00QbfT4vCCBj7nj.jpg")
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+}
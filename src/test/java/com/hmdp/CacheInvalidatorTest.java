@@ -0,0 +1,142 @@
+package com.hmdp;
+
+import com.hmdp.utils.CacheInvalidator;
+import com.hmdp.utils.RedisConstants;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 验证事务中的缓存删除推迟到提交之后执行，回滚时不删除，同一个事务中的删除合并成一次pipeline删除和一条消息
+ * 事务管理器不访问数据库，只驱动事务同步的回调，与数据库事务的提交、回滚流程一致
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        // 关闭延迟双删，每个事务只发布一条失效消息
+        "hmdp.cache.invalidation.double-delete-delay=0"
+})
+public class CacheInvalidatorTest {
+
+    private static final String KEY_PREFIX = "cache:test:invalidator:";
+
+    private static final List<String> KEYS = Arrays.asList(KEY_PREFIX + 1, KEY_PREFIX + 2);
+
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+
+    /**
+     * 收到的失效消息，只保留本测试的key
+     */
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    private final MessageListener listener = (message, pattern) -> {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.contains(KEY_PREFIX)) {
+            messages.add(body);
+        }
+    };
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        for (String key : KEYS) {
+            stringRedisTemplate.opsForValue().set(key, "cached");
+        }
+        redisMessageListenerContainer.addMessageListener(listener, new ChannelTopic(RedisConstants.CACHE_INVALIDATE_CHANNEL));
+        // 等待订阅生效
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        redisMessageListenerContainer.removeMessageListener(listener);
+        stringRedisTemplate.delete(KEYS);
+    }
+
+    @Test
+    public void commitTest() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            cacheInvalidator.invalidate(KEYS);
+            cacheInvalidator.invalidate(KEYS.get(0));
+            // 提交之前缓存仍然存在
+            for (String key : KEYS) {
+                assertTrue(stringRedisTemplate.hasKey(key));
+            }
+        });
+
+        // 提交之后缓存已经删除，两次删除合并成一条消息
+        for (String key : KEYS) {
+            assertFalse(stringRedisTemplate.hasKey(key));
+        }
+        Thread.sleep(500);
+        System.out.printf("invalidation messages after commit: %d%n", messages.size());
+        assertEquals(1, messages.size());
+        assertEquals(KEYS, Arrays.asList(messages.get(0).split("\n")));
+    }
+
+    @Test
+    public void rollbackTest() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            cacheInvalidator.invalidate(KEYS);
+            status.setRollbackOnly();
+        });
+
+        // 回滚之后缓存保留，不发布消息
+        for (String key : KEYS) {
+            assertTrue(stringRedisTemplate.hasKey(key));
+        }
+        Thread.sleep(500);
+        System.out.printf("invalidation messages after rollback: %d%n", messages.size());
+        assertEquals(0, messages.size());
+    }
+
+    /**
+     * 不持有任何资源的事务管理器
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.hmdp;
+
+import com.hmdp.aspect.CacheKeyResolver;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 验证@HmdpCacheable的key表达式解析结果，以及每次调用计算key的耗时
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class CacheKeyResolverTest {
+
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    public void resolveTest() throws NoSuchMethodException {
+        Method byId = CacheKeyResolverTest.class.getDeclaredMethod("queryById", Long.class, String.class);
+        Object[] args = {7L, "name"};
+        assertEquals(7L, CacheKeyResolver.of(byId, "#id").resolve(args));
+        assertEquals("name", CacheKeyResolver.of(byId, "#p1").resolve(args));
+        assertEquals("name", CacheKeyResolver.of(byId, "#a1").resolve(args));
+        assertEquals("", CacheKeyResolver.of(byId, "").resolve(args));
+        assertEquals("7:name", CacheKeyResolver.of(byId, "#id + ':' + #name").resolve(args));
+
+        Method update = CacheKeyResolverTest.class.getDeclaredMethod("update", Shop.class);
+        assertEquals(3L, CacheKeyResolver.of(update, "#shop.id").resolve(new Object[]{new Shop().setId(3L)}));
+    }
+
+    @Test
+    public void benchmark() throws NoSuchMethodException {
+        Method byId = CacheKeyResolverTest.class.getDeclaredMethod("queryById", Long.class, String.class);
+        Method update = CacheKeyResolverTest.class.getDeclaredMethod("update", Shop.class);
+        CacheKeyResolver parameter = CacheKeyResolver.of(byId, "#id");
+        CacheKeyResolver expression = CacheKeyResolver.of(update, "#shop.id");
+        Object[] byIdArgs = {7L, "name"};
+        Object[] updateArgs = {new Shop().setId(3L)};
+
+        // 预热，SpEL在运行若干次之后编译成字节码
+        run(parameter, byIdArgs, ITERATIONS);
+        run(expression, updateArgs, ITERATIONS);
+
+        long parameterNanos = run(parameter, byIdArgs, ITERATIONS);
+        long expressionNanos = run(expression, updateArgs, ITERATIONS);
+        System.out.printf("parameter reference: %.1f ns/op, SpEL expression: %.1f ns/op%n",
+                (double) parameterNanos / ITERATIONS, (double) expressionNanos / ITERATIONS);
+
+        assertTrue(parameterNanos / ITERATIONS < 1_000);
+        assertTrue(expressionNanos / ITERATIONS < 1_000);
+    }
+
+    private static long run(CacheKeyResolver resolver, Object[] args, int iterations) {
+        long begin = System.nanoTime();
+        int hash = 0;
+        for (int i = 0; i < iterations; i++) {
+            hash += resolver.resolve(args).hashCode();
+        }
+        long elapsed = System.nanoTime() - begin;
+        assertTrue(hash != 0);
+        return elapsed;
+    }
+
+    @SuppressWarnings("unused")
+    private static Shop queryById(Long id, String name) {
+        return null;
+    }
+
+    @SuppressWarnings("unused")
+    private static void update(Shop shop) {
+    }
+}
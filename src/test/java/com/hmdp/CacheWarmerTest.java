@@ -0,0 +1,103 @@
+package com.hmdp;
+
+import com.hmdp.utils.CacheWarmUpProgress;
+import com.hmdp.utils.CacheWarmer;
+import com.hmdp.utils.RedisConstants;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 验证缓存预热的锁：同一个预热任务同时只执行一次，执行时间超过锁的租期也不会被其他预热获取，结束后释放；
+ * 以及预热接口只允许管理员调用
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        "hmdp.lock.lease-time=1s",
+        "hmdp.admin.user-ids=1"
+})
+@AutoConfigureMockMvc
+public class CacheWarmerTest {
+
+    private static final String NAME = "test";
+
+    @Resource
+    private CacheWarmer cacheWarmer;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MockMvc mockMvc;
+
+    @AfterEach
+    public void cleanUp() {
+        stringRedisTemplate.delete(List.of(RedisConstants.LOCK_WARM_UP_KEY + NAME,
+                RedisConstants.LOGIN_USER_KEY + "admin", RedisConstants.LOGIN_USER_KEY + "user"));
+    }
+
+    @Test
+    public void lockTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CacheWarmUpProgress progress = cacheWarmer.warmUp(NAME, "cache:test:", (lastId, batchSize) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.<Long>emptyList();
+        }, id -> id, 1L, TimeUnit.MINUTES);
+        assertNotNull(progress);
+
+        // 预热时间超过锁的租期，看门狗续期，其他预热获取不到锁
+        Thread.sleep(2500);
+        assertNull(cacheWarmer.warmUp(NAME, "cache:test:", (lastId, batchSize) -> Collections.<Long>emptyList(),
+                id -> id, 1L, TimeUnit.MINUTES));
+        assertTrue(stringRedisTemplate.hasKey(RedisConstants.LOCK_WARM_UP_KEY + NAME));
+
+        // 预热结束后释放锁，进度先标记为完成，随后才释放锁
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((progress.getState() == CacheWarmUpProgress.State.RUNNING
+                || stringRedisTemplate.hasKey(RedisConstants.LOCK_WARM_UP_KEY + NAME))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(CacheWarmUpProgress.State.COMPLETED, progress.getState());
+        assertFalse(stringRedisTemplate.hasKey(RedisConstants.LOCK_WARM_UP_KEY + NAME));
+    }
+
+    @Test
+    public void adminOnlyTest() throws Exception {
+        login("admin", 1L);
+        login("user", 2L);
+
+        mockMvc.perform(post("/cache/warm-up/shop")).andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/cache/warm-up/shop").header("authorization", "user")).andExpect(status().isForbidden());
+        mockMvc.perform(post("/cache/warm-up/shop").header("authorization", "admin")).andExpect(status().isOk());
+    }
+
+    private void login(String token, Long userId) {
+        stringRedisTemplate.opsForHash().putAll(RedisConstants.LOGIN_USER_KEY + token,
+                Map.of("id", userId.toString(), "nickName", token));
+    }
+}
@@ -0,0 +1,148 @@
+package com.hmdp;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.impl.VoucherOrderServiceImpl;
+import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.SeckillAdmission;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证订单消息的分批消费、整批失败后拆分隔离、失败重试以及转入死信队列，
+ * 以及没有写入数据库的订单按拒绝原因归还redis中的库存
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        "hmdp.seckill.stream.key=" + OrderStreamConsumerTest.STREAM_KEY,
+        "hmdp.seckill.stream.dead-letter-key=" + OrderStreamConsumerTest.DEAD_LETTER_KEY,
+        "hmdp.seckill.timeout.key=seckill:order:timeout:consumer:test",
+        "hmdp.seckill.stream.pending-idle=500ms",
+        "hmdp.seckill.stream.recovery-interval=200ms",
+        "hmdp.seckill.stream.max-deliveries=2"
+})
+public class OrderStreamConsumerTest {
+
+    static final String STREAM_KEY = "stream.orders.test";
+
+    static final String DEAD_LETTER_KEY = "stream.orders.test.dlq";
+
+    private static final long FAILING_ORDER_ID = 2L;
+
+    private static final Long VOUCHER_ID = -13L;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @MockitoBean
+    private VoucherOrderServiceImpl voucherOrderService;
+
+    @AfterEach
+    public void cleanUp() {
+        List<String> keys = new ArrayList<>(seckillAdmission.streamKeys());
+        keys.addAll(seckillAdmission.timeoutKeys());
+        keys.add(DEAD_LETTER_KEY);
+        keys.addAll(stringRedisTemplate.keys("seckill:*:" + VOUCHER_ID));
+        keys.addAll(stringRedisTemplate.keys(RedisConstants.SECKILL_RESTOCK_KEY + "*:130*"));
+        stringRedisTemplate.delete(keys);
+    }
+
+    @Test
+    public void consumeTest() throws InterruptedException {
+        // 包含失败订单的批次整批失败
+        when(voucherOrderService.createVoucherOrders(anyList())).thenAnswer(invocation -> {
+            if (invocation.<List<VoucherOrder>>getArgument(0).stream().anyMatch(order -> order.getId() == FAILING_ORDER_ID)) {
+                throw new IllegalStateException("数据库不可用");
+            }
+            return Map.of();
+        });
+
+        // 订单写入不同分片的stream，由负责各个分片的消费者线程分别读取
+        List<String> streamKeys = seckillAdmission.streamKeys();
+        stringRedisTemplate.opsForStream().add(streamKeys.get(0), Map.of("id", "1", "userId", "1", "voucherId", "1"));
+        stringRedisTemplate.opsForStream().add(streamKeys.get(1), Map.of("id", String.valueOf(FAILING_ORDER_ID), "userId", "2", "voucherId", "1"));
+        stringRedisTemplate.opsForStream().add(streamKeys.get(1), Map.of("id", "not a number"));
+
+        // 1. 正常的订单与失败的订单拆分开，单独写入后确认
+        verify(voucherOrderService, timeout(TimeUnit.SECONDS.toMillis(10))).createVoucherOrders(argThat(orders ->
+                orders != null && orders.size() == 1 && orders.get(0).getId() == 1L));
+
+        // 2. 写入失败的订单被认领重试，超过最大投递次数后与无法解析的消息一起转入死信队列
+        verify(voucherOrderService, timeout(TimeUnit.SECONDS.toMillis(10)).times(2)).createVoucherOrders(argThat(orders ->
+                orders != null && orders.size() == 1 && orders.get(0).getId() == FAILING_ORDER_ID));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (sizeOf(DEAD_LETTER_KEY) < 2 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(2L, sizeOf(DEAD_LETTER_KEY));
+        assertTrue(stringRedisTemplate.opsForStream().range(DEAD_LETTER_KEY, Range.unbounded())
+                .stream().anyMatch(record -> String.valueOf(FAILING_ORDER_ID).equals(record.getValue().get("id"))));
+
+        // 3. 所有消息都已经确认并从订单消息队列中删除
+        for (String streamKey : streamKeys) {
+            assertEquals(0L, sizeOf(streamKey));
+            assertEquals(0L, stringRedisTemplate.opsForStream().pending(streamKey, "g1").getTotalPendingMessages());
+        }
+    }
+
+    @Test
+    public void rejectTest() throws InterruptedException {
+        // 用户1已经持有订单，重复获得了资格；用户2的订单因为数据库中的库存不足没有写入
+        when(voucherOrderService.createVoucherOrders(anyList())).thenReturn(Map.of(
+                1301L, IVoucherOrderService.RejectReason.DUPLICATE,
+                1302L, IVoucherOrderService.RejectReason.OUT_OF_STOCK));
+        LocalDateTime now = LocalDateTime.now();
+        seckillAdmission.preload(new SeckillVoucher().setVoucherId(VOUCHER_ID).setStock(2)
+                .setBeginTime(now.minusHours(1)).setEndTime(now.plusHours(1)), 1);
+        assertEquals(SeckillAdmission.AdmissionResult.SUCCESS, seckillAdmission.admit(VOUCHER_ID, 1L, 1301L));
+        assertEquals(SeckillAdmission.AdmissionResult.SUCCESS, seckillAdmission.admit(VOUCHER_ID, 2L, 1302L));
+
+        // 两个订单的库存都归还，重复下单的用户仍然占用一人一单的资格，库存不足的用户可以重新抢购
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (seckillAdmission.remainingStock(VOUCHER_ID) < 2 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertEquals(2L, seckillAdmission.remainingStock(VOUCHER_ID));
+        assertTrue(seckillAdmission.isAdmitted(VOUCHER_ID, 1L));
+        assertFalse(seckillAdmission.isAdmitted(VOUCHER_ID, 2L));
+        // 重复下单的订单不会写入数据库，不再等待超时检查
+        for (String key : seckillAdmission.timeoutKeys()) {
+            assertNull(stringRedisTemplate.opsForZSet().score(key, 1301L + ":" + VOUCHER_ID + ":" + 1L));
+        }
+
+        // 消息重复投递时同一订单不会再次归还库存
+        assertFalse(seckillAdmission.restock(VOUCHER_ID, 1L, 1301L));
+        assertEquals(2L, seckillAdmission.remainingStock(VOUCHER_ID));
+    }
+
+    private long sizeOf(String key) {
+        Long size = stringRedisTemplate.opsForStream().size(key);
+        return size == null ? 0L : size;
+    }
+}
@@ -0,0 +1,178 @@
+package com.hmdp;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.impl.VoucherOrderServiceImpl;
+import com.hmdp.utils.SeckillAdmission;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证超时未支付订单的取消：归还redis中的库存、移除下单用户，同一订单只撤销一次，已支付的订单不处理，没有写入数据库的订单推迟检查，
+ * 以及大量未到期订单时认领到期订单的耗时
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        "hmdp.seckill.stream.key=stream.orders.timeout.test",
+        "hmdp.seckill.timeout.key=" + OrderTimeoutCancellerTest.TIMEOUT_KEY,
+        "hmdp.seckill.timeout.pay-window=300ms",
+        "hmdp.seckill.timeout.poll-interval=100ms",
+        "hmdp.seckill.timeout.retry-delay=300ms"
+})
+public class OrderTimeoutCancellerTest {
+
+    static final String TIMEOUT_KEY = "seckill:order:timeout:test";
+
+    private static final Long VOUCHER_ID = -11L;
+
+    private static final int PENDING_TIMERS = 200_000;
+
+    private static final int DUE_TIMERS = 1_000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @MockitoBean
+    private VoucherOrderServiceImpl voucherOrderService;
+
+    @AfterEach
+    public void cleanUp() {
+        List<String> keys = new ArrayList<>(seckillAdmission.timeoutKeys());
+        keys.addAll(seckillAdmission.streamKeys());
+        keys.addAll(stringRedisTemplate.keys("seckill:*:" + VOUCHER_ID));
+        stringRedisTemplate.delete(keys);
+    }
+
+    @Test
+    public void cancelTest() throws InterruptedException {
+        when(voucherOrderService.cancelUnpaidOrder(1001L, VOUCHER_ID))
+                .thenReturn(IVoucherOrderService.CancelResult.CANCELLED);
+        admit(1L, 1001L);
+
+        // 超时之后取消订单，归还库存并移除下单用户，用户可以重新购买
+        verify(voucherOrderService, timeout(5000)).cancelUnpaidOrder(1001L, VOUCHER_ID);
+        awaitTrue(() -> stock() == 1L && zSetSize() == 0);
+        assertEquals(SeckillAdmission.AdmissionResult.SUCCESS, seckillAdmission.admit(VOUCHER_ID, 1L, 1002L));
+    }
+
+    @Test
+    public void rebuyTest() throws InterruptedException {
+        when(voucherOrderService.cancelUnpaidOrder(4001L, VOUCHER_ID))
+                .thenReturn(IVoucherOrderService.CancelResult.CANCELLED);
+        when(voucherOrderService.cancelUnpaidOrder(4002L, VOUCHER_ID))
+                .thenReturn(IVoucherOrderService.CancelResult.NOT_CANCELLABLE);
+        admit(4L, 4001L);
+        verify(voucherOrderService, timeout(5000)).cancelUnpaidOrder(4001L, VOUCHER_ID);
+        awaitTrue(() -> stock() == 1L && zSetSize() == 0);
+
+        // 用户重新下单之后，其他节点再次处理已经取消的订单，不会移除用户、归还新订单占用的库存
+        assertEquals(SeckillAdmission.AdmissionResult.SUCCESS, seckillAdmission.admit(VOUCHER_ID, 4L, 4002L));
+        assertFalse(seckillAdmission.rollbackTimedOut(VOUCHER_ID, 4L, 4001L));
+        assertTrue(seckillAdmission.isAdmitted(VOUCHER_ID, 4L));
+        assertEquals(0L, stock());
+    }
+
+    @Test
+    public void paidTest() throws InterruptedException {
+        when(voucherOrderService.cancelUnpaidOrder(2001L, VOUCHER_ID))
+                .thenReturn(IVoucherOrderService.CancelResult.NOT_CANCELLABLE);
+        admit(2L, 2001L);
+
+        // 已支付的订单只从zset中移除，不归还库存
+        verify(voucherOrderService, timeout(5000)).cancelUnpaidOrder(2001L, VOUCHER_ID);
+        awaitTrue(() -> zSetSize() == 0);
+        assertEquals(0L, stock());
+    }
+
+    @Test
+    public void postponeTest() throws InterruptedException {
+        // 第一次到期时订单还没有写入数据库，推迟之后取消
+        when(voucherOrderService.cancelUnpaidOrder(3001L, VOUCHER_ID))
+                .thenReturn(IVoucherOrderService.CancelResult.NOT_FOUND, IVoucherOrderService.CancelResult.CANCELLED);
+        admit(3L, 3001L);
+
+        verify(voucherOrderService, timeout(5000).times(2)).cancelUnpaidOrder(3001L, VOUCHER_ID);
+        awaitTrue(() -> stock() == 1L && zSetSize() == 0);
+    }
+
+    @Test
+    public void scaleTest() throws InterruptedException {
+        when(voucherOrderService.cancelUnpaidOrder(anyLong(), anyLong()))
+                .thenReturn(IVoucherOrderService.CancelResult.NOT_CANCELLABLE);
+
+        // 大量还没有到期的订单，以及少量已经到期的订单
+        long future = System.currentTimeMillis() + 3_600_000L;
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (int i = 0; i < PENDING_TIMERS; i++) {
+            tuples.add(ZSetOperations.TypedTuple.of(i + ":" + VOUCHER_ID + ":" + i, (double) future + i));
+            if (tuples.size() == 10_000) {
+                stringRedisTemplate.opsForZSet().add(seckillAdmission.timeoutKeys().get(0), tuples);
+                tuples.clear();
+            }
+        }
+        long begin = System.currentTimeMillis();
+        for (int i = 0; i < DUE_TIMERS; i++) {
+            tuples.add(ZSetOperations.TypedTuple.of((PENDING_TIMERS + i) + ":" + VOUCHER_ID + ":" + i, (double) begin));
+        }
+        stringRedisTemplate.opsForZSet().add(seckillAdmission.timeoutKeys().get(0), tuples);
+
+        // 到期的订单全部处理完，未到期的订单不受影响
+        awaitTrue(() -> zSetSize() == PENDING_TIMERS);
+        long elapsed = System.currentTimeMillis() - begin;
+        System.out.printf("%d pending timers: %d due orders handled in %d ms%n", PENDING_TIMERS, DUE_TIMERS, elapsed);
+        assertTrue(elapsed < 10_000);
+    }
+
+    private void admit(Long userId, Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        seckillAdmission.preload(new SeckillVoucher().setVoucherId(VOUCHER_ID).setStock(1)
+                .setBeginTime(now.minusHours(1)).setEndTime(now.plusHours(1)), 1);
+        assertEquals(SeckillAdmission.AdmissionResult.SUCCESS, seckillAdmission.admit(VOUCHER_ID, userId, orderId));
+        assertEquals(0L, stock());
+    }
+
+    private long stock() {
+        return seckillAdmission.remainingStock(VOUCHER_ID);
+    }
+
+    private long zSetSize() {
+        long total = 0;
+        for (String key : seckillAdmission.timeoutKeys()) {
+            Long size = stringRedisTemplate.opsForZSet().zCard(key);
+            total += size == null ? 0L : size;
+        }
+        return total;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 10s");
+            Thread.sleep(20);
+        }
+    }
+}
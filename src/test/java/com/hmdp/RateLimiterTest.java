@@ -0,0 +1,106 @@
+package com.hmdp;
+
+import com.hmdp.utils.RateLimiter;
+import com.hmdp.utils.RedisConstants;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 验证令牌桶限流：各维度的限制、本地预过滤拦截洪峰请求，以及控制器方法超过限制时返回429
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        "hmdp.rate-limit.rules.test.user.capacity=5",
+        "hmdp.rate-limit.rules.test.user.rate=1",
+        "hmdp.rate-limit.rules.test.global.capacity=1000",
+        "hmdp.rate-limit.rules.test.global.rate=1000",
+        "hmdp.rate-limit.rules.code.ip.capacity=2",
+        "hmdp.rate-limit.rules.code.ip.rate=0.1"
+})
+@AutoConfigureMockMvc
+public class RateLimiterTest {
+
+    private static final int FLOOD = 100_000;
+
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private MockMvc mockMvc;
+
+    @AfterEach
+    public void cleanUp() {
+        stringRedisTemplate.delete(stringRedisTemplate.keys(RedisConstants.RATE_LIMIT_KEY + "{test}:*"));
+        stringRedisTemplate.delete(stringRedisTemplate.keys(RedisConstants.RATE_LIMIT_KEY + "{code}:*"));
+    }
+
+    @Test
+    public void limitTest() {
+        // 用户令牌桶的容量为5，之后的请求被拒绝，并给出等待时间
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0L, rateLimiter.tryAcquire("test", 1L, "10.0.0.1"));
+        }
+        long wait = rateLimiter.tryAcquire("test", 1L, "10.0.0.1");
+        assertTrue(wait > 0 && wait <= 1000);
+
+        // 其他用户不受影响，没有配置规则的资源不限流
+        assertEquals(0L, rateLimiter.tryAcquire("test", 2L, "10.0.0.1"));
+        assertEquals(0L, rateLimiter.tryAcquire("unknown", 1L, "10.0.0.1"));
+    }
+
+    @Test
+    public void floodTest() {
+        double redisRejectedBefore = count("rejected");
+
+        // 同一用户的大量请求在本地直接拒绝，不访问redis
+        long begin = System.nanoTime();
+        int allowed = 0;
+        for (int i = 0; i < FLOOD; i++) {
+            if (rateLimiter.tryAcquire("test", 3L, "10.0.0.2") == 0L) {
+                allowed++;
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("%d requests from one user: %d allowed, %.0f ns/op%n",
+                FLOOD, allowed, (double) elapsed / FLOOD);
+
+        assertTrue(allowed >= 5 && allowed < 10);
+        assertTrue(count("local_rejected") >= FLOOD - 10);
+        assertTrue(count("rejected") - redisRejectedBefore < 10);
+    }
+
+    @Test
+    public void tooManyRequestsTest() throws Exception {
+        // ip令牌桶的容量为2，第3个请求返回429
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/user/code").param("phone", "1")).andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/user/code").param("phone", "1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("hmdp.rate.limit.requests")
+                .tag("resource", "test").tag("result", result).counter().count();
+    }
+}
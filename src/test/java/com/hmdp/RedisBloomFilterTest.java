@@ -0,0 +1,60 @@
+package com.hmdp;
+
+import com.hmdp.utils.RedisBloomFilter;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 验证全量重建布隆过滤器：重建期间新增的元素不会被重建结果覆盖，已删除的数据在重建之后被清理
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest
+public class RedisBloomFilterTest {
+
+    private static final String KEY = "bloom:test";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @AfterEach
+    public void cleanUp() {
+        stringRedisTemplate.delete(List.of(KEY, KEY + ":pending"));
+    }
+
+    @Test
+    public void addDuringRebuildTest() {
+        RedisBloomFilter bloomFilter = new RedisBloomFilter(stringRedisTemplate, KEY, 10_000, 0.001);
+        RedisBloomFilter otherNode = new RedisBloomFilter(stringRedisTemplate, KEY, 10_000, 0.001);
+        bloomFilter.rebuild(() -> List.of(1L, 2L, 3L));
+        assertTrue(bloomFilter.mightContain(3L));
+
+        // 查询全量数据之后、替换bitmap之前，本节点和其他节点各新增了一个元素
+        bloomFilter.rebuild(() -> {
+            List<Long> ids = new ArrayList<>(List.of(1L, 2L));
+            bloomFilter.add(100L);
+            otherNode.add(200L);
+            return ids;
+        });
+
+        assertTrue(bloomFilter.mightContain(100L));
+        assertTrue(bloomFilter.mightContain(200L));
+        // 已删除的数据被清理
+        assertFalse(bloomFilter.mightContain(3L));
+
+        // 其他节点收到重建完成的通知后从redis加载，同样包含重建期间新增的元素
+        assertTrue(otherNode.reload());
+        assertTrue(otherNode.mightContain(100L));
+        assertTrue(otherNode.mightContain(200L));
+        assertFalse(otherNode.mightContain(3L));
+    }
+}
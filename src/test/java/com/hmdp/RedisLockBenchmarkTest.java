@@ -0,0 +1,85 @@
+package com.hmdp;
+
+import com.hmdp.utils.RedisLock;
+import com.hmdp.utils.RedisLockService;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 大量线程竞争同一把分布式锁，验证互斥与可重入，并统计吞吐量和平均等待时间
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest
+public class RedisLockBenchmarkTest {
+
+    private static final int THREADS = 32;
+
+    private static final int ITERATIONS = 50;
+
+    @Resource
+    private RedisLockService redisLockService;
+
+    @Test
+    public void contentionBenchmark() throws Exception {
+        RedisLock lock = redisLockService.getLock("lock:benchmark");
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger maxHolders = new AtomicInteger();
+        LongAdder waitNanos = new LongAdder();
+        int[] counter = {0};
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long begin = System.nanoTime();
+                    assertTrue(lock.tryLock(30, TimeUnit.SECONDS));
+                    waitNanos.add(System.nanoTime() - begin);
+                    try {
+                        maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                        // 持有锁的线程可以重入
+                        assertTrue(lock.tryLock());
+                        lock.unlock();
+                        counter[0]++;
+                        holders.decrementAndGet();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+
+        int total = THREADS * ITERATIONS;
+        System.out.printf("%d threads, %d acquisitions: %.0f acquisitions/s, average wait %.2f ms%n",
+                THREADS, total, total / (elapsed / 1e9), waitNanos.sum() / 1e6 / total);
+        assertEquals(1, maxHolders.get());
+        assertEquals(total, counter[0]);
+        assertTrue(!lock.isHeldByCurrentThread());
+    }
+}
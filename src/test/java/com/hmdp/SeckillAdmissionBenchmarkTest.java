@@ -0,0 +1,171 @@
+package com.hmdp;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.impl.VoucherOrderServiceImpl;
+import com.hmdp.utils.SeckillAdmission;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * 大量用户并发抢购同一张秒杀券，验证不超卖、一人一单、获得资格的订单全部被消费，并统计redis中判断秒杀资格的吞吐量
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        "hmdp.seckill.stream.key=" + SeckillAdmissionBenchmarkTest.STREAM_KEY,
+        "hmdp.seckill.timeout.key=" + SeckillAdmissionBenchmarkTest.TIMEOUT_KEY
+})
+public class SeckillAdmissionBenchmarkTest {
+
+    static final String STREAM_KEY = "stream.orders.benchmark";
+
+    static final String TIMEOUT_KEY = "seckill:order:timeout:benchmark";
+
+    private static final int STOCK = 5000;
+
+    private static final int USERS = 6000;
+
+    private static final int THREADS = 32;
+
+    @Resource
+    private SeckillAdmission seckillAdmission;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 不连接数据库，订单消息由消费者交给模拟的写入方法
+     */
+    @MockitoBean
+    private VoucherOrderServiceImpl voucherOrderService;
+
+    @Test
+    public void admissionBenchmark() throws Exception {
+        benchmark(-1L, 1);
+    }
+
+    @Test
+    public void segmentedAdmissionBenchmark() throws Exception {
+        benchmark(-2L, 8);
+    }
+
+    private void benchmark(long voucherId, int segments) throws Exception {
+        AtomicLong persisted = new AtomicLong();
+        AtomicLong batches = new AtomicLong();
+        when(voucherOrderService.createVoucherOrders(anyList())).thenAnswer(invocation -> {
+            batches.incrementAndGet();
+            // 只统计本次测试的秒杀券，上一次测试最后重新下单的订单可能在这里才被消费
+            persisted.addAndGet(invocation.<List<VoucherOrder>>getArgument(0).stream()
+                    .filter(order -> order.getVoucherId() == voucherId).count());
+            return Map.of();
+        });
+        AtomicLong orderIds = new AtomicLong();
+        SeckillVoucher seckillVoucher = new SeckillVoucher()
+                .setVoucherId(voucherId)
+                .setStock(STOCK)
+                .setBeginTime(LocalDateTime.now().minusHours(1))
+                .setEndTime(LocalDateTime.now().plusHours(1));
+        seckillAdmission.preload(seckillVoucher, segments);
+        try {
+            // 每个用户请求两次，第二次应当被判定为重复下单或库存不足
+            Map<SeckillAdmission.AdmissionResult, LongAdder> results = new EnumMap<>(SeckillAdmission.AdmissionResult.class);
+            for (SeckillAdmission.AdmissionResult result : SeckillAdmission.AdmissionResult.values()) {
+                results.put(result, new LongAdder());
+            }
+            Map<Long, Long> admittedOrders = new ConcurrentHashMap<>();
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = offset; i < USERS * 2; i += THREADS) {
+                        long userId = i % USERS;
+                        long orderId = orderIds.incrementAndGet();
+                        SeckillAdmission.AdmissionResult result = seckillAdmission.admit(voucherId, userId, orderId);
+                        results.get(result).increment();
+                        if (result == SeckillAdmission.AdmissionResult.SUCCESS) {
+                            admittedOrders.put(userId, orderId);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+            pool.shutdown();
+
+            System.out.printf("%d segments, %d threads, %d requests: %.0f requests/s, %d admitted%n", segments,
+                    THREADS, USERS * 2, USERS * 2 / (elapsed / 1e9), results.get(SeckillAdmission.AdmissionResult.SUCCESS).sum());
+            assertEquals(STOCK, results.get(SeckillAdmission.AdmissionResult.SUCCESS).sum());
+            assertEquals(USERS * 2 - STOCK, results.get(SeckillAdmission.AdmissionResult.DUPLICATE).sum()
+                    + results.get(SeckillAdmission.AdmissionResult.SOLD_OUT).sum());
+            // 获得资格的次数等于获得资格的用户数，没有用户获得两次
+            assertEquals(STOCK, admittedOrders.size());
+            assertEquals(0L, seckillAdmission.remainingStock(voucherId));
+
+            // 获得资格的订单全部写入消息队列，由消费者分批处理并确认
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (persisted.get() < STOCK && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            assertEquals(STOCK, persisted.get());
+            System.out.printf("%d orders persisted in %d batches%n", persisted.get(), batches.get());
+
+            // 撤销资格之后归还库存，重复撤销不会多归还
+            Map.Entry<Long, Long> admitted = admittedOrders.entrySet().iterator().next();
+            Long userId = admitted.getKey();
+            assertTrue(seckillAdmission.rollback(voucherId, userId, admitted.getValue()));
+            assertFalse(seckillAdmission.rollback(voucherId, userId, admitted.getValue()));
+            assertEquals(1L, seckillAdmission.remainingStock(voucherId));
+            assertEquals(SeckillAdmission.AdmissionResult.SUCCESS, seckillAdmission.admit(voucherId, userId, orderIds.incrementAndGet()));
+            assertEquals(0L, seckillAdmission.remainingStock(voucherId));
+        } finally {
+            Set<String> keys = stringRedisTemplate.keys("seckill:*" + voucherId + "*");
+            if (keys != null && !keys.isEmpty()) {
+                stringRedisTemplate.delete(keys);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void cleanUp(@Autowired StringRedisTemplate stringRedisTemplate,
+                               @Autowired SeckillAdmission seckillAdmission) {
+        List<String> keys = new ArrayList<>(seckillAdmission.streamKeys());
+        keys.addAll(seckillAdmission.timeoutKeys());
+        stringRedisTemplate.delete(keys);
+    }
+}
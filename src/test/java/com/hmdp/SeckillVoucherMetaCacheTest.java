@@ -0,0 +1,108 @@
+package com.hmdp;
+
+import com.hmdp.dto.SeckillVoucherMeta;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.mapper.SeckillVoucherMapper;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.RedisConstants;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证秒杀券元数据缓存：预热之后和首次加载之后，秒杀请求不再查询数据库
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest
+public class SeckillVoucherMetaCacheTest {
+
+    private static final Long PREHEATED_ID = -101L;
+
+    private static final Long LOADED_ID = -102L;
+
+    private static final Long MISSING_ID = -103L;
+
+    private static final int REQUESTS = 100_000;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @MockitoBean
+    private SeckillVoucherMapper seckillVoucherMapper;
+
+    @AfterEach
+    public void cleanUp() {
+        cacheClient.invalidateAll(List.of(RedisConstants.CACHE_SECKILL_VOUCHER_KEY + PREHEATED_ID,
+                RedisConstants.CACHE_SECKILL_VOUCHER_KEY + LOADED_ID,
+                RedisConstants.CACHE_SECKILL_VOUCHER_KEY + MISSING_ID));
+    }
+
+    @Test
+    public void preheatTest() {
+        SeckillVoucher seckillVoucher = seckillVoucher(PREHEATED_ID);
+        seckillVoucherService.preheatMeta(seckillVoucher);
+
+        // 预热
+        for (int i = 0; i < REQUESTS; i++) {
+            seckillVoucherService.queryMeta(PREHEATED_ID);
+        }
+
+        long begin = System.nanoTime();
+        SeckillVoucherMeta meta = null;
+        for (int i = 0; i < REQUESTS; i++) {
+            meta = seckillVoucherService.queryMeta(PREHEATED_ID);
+        }
+        long elapsed = System.nanoTime() - begin;
+        System.out.printf("%d metadata lookups: %.0f ns/op%n", REQUESTS, (double) elapsed / REQUESTS);
+
+        // 预热之后不查询数据库
+        verify(seckillVoucherMapper, never()).selectById(any());
+        assertEquals(epochMilli(seckillVoucher.getBeginTime()), meta.getBeginMillis());
+        assertEquals(epochMilli(seckillVoucher.getEndTime()), meta.getEndMillis());
+    }
+
+    @Test
+    public void loadOnceTest() {
+        when(seckillVoucherMapper.selectById(LOADED_ID)).thenReturn(seckillVoucher(LOADED_ID));
+        for (int i = 0; i < REQUESTS; i++) {
+            seckillVoucherService.queryMeta(LOADED_ID);
+        }
+        // 只有首次未命中时查询一次数据库
+        verify(seckillVoucherMapper, times(1)).selectById(LOADED_ID);
+
+        // 不存在的秒杀券缓存空值，同样只查询一次
+        for (int i = 0; i < 100; i++) {
+            assertNull(seckillVoucherService.queryMeta(MISSING_ID));
+        }
+        verify(seckillVoucherMapper, times(1)).selectById(MISSING_ID);
+    }
+
+    private static SeckillVoucher seckillVoucher(Long voucherId) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        return new SeckillVoucher().setVoucherId(voucherId).setStock(100)
+                .setBeginTime(now.minusHours(1)).setEndTime(now.plusHours(1));
+    }
+
+    private static long epochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
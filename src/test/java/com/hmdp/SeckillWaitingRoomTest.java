@@ -0,0 +1,202 @@
+package com.hmdp;
+
+import com.hmdp.dto.Result;
+import com.hmdp.dto.SeckillTicket;
+import com.hmdp.dto.SeckillVoucherMeta;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.impl.VoucherOrderServiceImpl;
+import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.SeckillWaitingRoom;
+import com.hmdp.utils.SoldOutRegistry;
+import com.hmdp.utils.UserHolder;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证排队下单：大量请求同时领取凭证时，下单的并发数不超过下单线程数，放行速率不超过配置的速率，
+ * 每个凭证都能轮询到自己的下单结果
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+@SpringBootTest(properties = {
+        "hmdp.seckill.waiting-room.enabled=true",
+        "hmdp.seckill.waiting-room.admit-rate=" + SeckillWaitingRoomTest.ADMIT_RATE,
+        "hmdp.seckill.waiting-room.admit-burst=" + SeckillWaitingRoomTest.ADMIT_BURST,
+        "hmdp.seckill.waiting-room.dispatch-interval=20ms",
+        "hmdp.seckill.waiting-room.workers=" + SeckillWaitingRoomTest.WORKERS
+})
+public class SeckillWaitingRoomTest {
+
+    static final int ADMIT_RATE = 200;
+
+    static final int ADMIT_BURST = 20;
+
+    static final int WORKERS = 8;
+
+    private static final Long VOUCHER_ID = -12L;
+
+    private static final int USERS = 600;
+
+    private static final int CLIENTS = 32;
+
+    @Resource
+    private SeckillWaitingRoom seckillWaitingRoom;
+
+    @Resource
+    private SoldOutRegistry soldOutRegistry;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @MockitoBean
+    private VoucherOrderServiceImpl voucherOrderService;
+
+    @MockitoBean
+    private ISeckillVoucherService seckillVoucherService;
+
+    private final List<Long> ticketIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        SeckillVoucherMeta meta = new SeckillVoucherMeta();
+        meta.setVoucherId(VOUCHER_ID);
+        meta.setBeginMillis(0L);
+        meta.setEndMillis(Long.MAX_VALUE);
+        when(seckillVoucherService.queryMeta(anyLong())).thenReturn(meta);
+        cleanUp();
+        stringRedisTemplate.delete(RedisConstants.SECKILL_QUEUE_BUCKET_KEY + "{" + VOUCHER_ID + "}");
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        soldOutRegistry.reset(VOUCHER_ID);
+        stringRedisTemplate.delete(RedisConstants.SECKILL_QUEUE_KEY + "{" + VOUCHER_ID + "}");
+        stringRedisTemplate.opsForSet().remove(RedisConstants.SECKILL_QUEUE_ACTIVE_KEY, VOUCHER_ID.toString());
+        List<String> keys = new ArrayList<>();
+        for (Long ticketId : ticketIds) {
+            keys.add(RedisConstants.SECKILL_TICKET_KEY + "{" + VOUCHER_ID + "}:" + ticketId);
+        }
+        for (long userId = 1; userId <= USERS; userId++) {
+            keys.add(RedisConstants.SECKILL_TICKET_USER_KEY + "{" + VOUCHER_ID + "}:" + userId);
+        }
+        stringRedisTemplate.delete(keys);
+    }
+
+    @Test
+    public void flatConcurrencyTest() throws Exception {
+        // 下单时记录同时执行的请求数，订单id由凭证中的用户决定，用于确认下单使用的是凭证中的用户
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicLong firstCall = new AtomicLong();
+        AtomicLong lastCall = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        when(voucherOrderService.seckillVoucher(VOUCHER_ID)).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            long now = System.nanoTime();
+            firstCall.compareAndSet(0L, now);
+            lastCall.accumulateAndGet(now, Math::max);
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(2);
+                return Result.ok(UserHolder.getUser().getId() * 10);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        // 1. 大量用户同时领取凭证
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (long i = 1; i <= USERS; i++) {
+            long userId = i;
+            futures.add(clients.submit(() -> seckillWaitingRoom.enqueue(VOUCHER_ID, userId)));
+        }
+        Map<Long, Long> owners = new ConcurrentHashMap<>();
+        try {
+            for (int i = 0; i < USERS; i++) {
+                Result result = futures.get(i).get();
+                assertTrue(result.getSuccess(), result.getErrorMsg());
+                SeckillTicket ticket = (SeckillTicket) result.getData();
+                ticketIds.add(ticket.getTicketId());
+                owners.put(ticket.getTicketId(), i + 1L);
+                if (ticket.getStatus() == SeckillTicket.Status.WAITING) {
+                    assertTrue(ticket.getPosition() >= 1 && ticket.getPosition() <= USERS);
+                }
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertEquals(USERS, owners.size());
+
+        // 2. 等待所有凭证放行之后，轮询直到所有凭证下单完成
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (calls.get() < USERS) {
+            assertTrue(System.currentTimeMillis() < deadline, "排队凭证没有在期限内放行");
+            Thread.sleep(10);
+        }
+        int done = 0;
+        while (done < USERS) {
+            assertTrue(System.currentTimeMillis() < deadline, "排队凭证没有在期限内完成");
+            done = 0;
+            for (Map.Entry<Long, Long> entry : owners.entrySet()) {
+                SeckillTicket ticket = seckillWaitingRoom.query(VOUCHER_ID, entry.getKey(), entry.getValue());
+                if (ticket.isFinished()) {
+                    assertEquals(SeckillTicket.Status.SUCCESS, ticket.getStatus());
+                    assertEquals(entry.getValue() * 10, ticket.getOrderId());
+                    done++;
+                }
+            }
+            if (done < USERS) {
+                Thread.sleep(50);
+            }
+        }
+        double seconds = (lastCall.get() - firstCall.get()) / 1e9;
+
+        System.out.printf("%d tickets admitted in %.2f s (%.0f tickets/s, limit %d/s), max concurrent orders %d%n",
+                USERS, seconds, USERS / seconds, ADMIT_RATE, maxRunning.get());
+        assertTrue(maxRunning.get() <= WORKERS);
+        // 除去令牌桶的突发容量，放行速率不超过配置的速率
+        assertTrue(seconds >= (USERS - ADMIT_BURST - 1) / (double) ADMIT_RATE * 0.95);
+
+        // 3. 只能查询自己的凭证，重复抢购返回已有的凭证
+        Long ticketId = ticketIds.get(0);
+        Long owner = owners.get(ticketId);
+        assertNull(seckillWaitingRoom.query(VOUCHER_ID, ticketId, owner + 1));
+        SeckillTicket again = (SeckillTicket) seckillWaitingRoom.enqueue(VOUCHER_ID, owner).getData();
+        assertEquals(ticketId, again.getTicketId());
+        assertEquals(SeckillTicket.Status.SUCCESS, again.getStatus());
+    }
+
+    @Test
+    public void soldOutTest() throws InterruptedException {
+        // setUp中清除售罄标记的通知异步送达，送达之后再标记售罄，避免标记被该通知清除
+        Thread.sleep(200);
+        // 已经售罄的秒杀券不占用排队位置
+        soldOutRegistry.markSoldOut(VOUCHER_ID);
+        Result result = seckillWaitingRoom.enqueue(VOUCHER_ID, 1L);
+        assertFalse(result.getSuccess());
+        assertEquals(0L, stringRedisTemplate.opsForZSet().zCard(RedisConstants.SECKILL_QUEUE_KEY + "{" + VOUCHER_ID + "}"));
+    }
+}
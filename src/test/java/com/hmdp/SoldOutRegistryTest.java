@@ -0,0 +1,102 @@
+package com.hmdp;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.SoldOutRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 验证售罄标记的设置、清除与过期，以及售罄后本地拒绝一个请求的耗时
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class SoldOutRegistryTest {
+
+    private static final int ITERATIONS = 10_000_000;
+
+    private SoldOutRegistry registry;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SeckillProperties seckillProperties;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SoldOutRegistry();
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        seckillProperties = new SeckillProperties();
+        ReflectionTestUtils.setField(registry, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(registry, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(registry, "seckillProperties", seckillProperties);
+        ReflectionTestUtils.setField(registry, "meterRegistry", new SimpleMeterRegistry());
+        registry.init();
+    }
+
+    @Test
+    public void markAndResetTest() throws InterruptedException {
+        assertFalse(registry.isSoldOut(1L));
+
+        // 重复标记只通知一次
+        registry.markSoldOut(1L);
+        registry.markSoldOut(1L);
+        assertTrue(registry.isSoldOut(1L));
+        assertFalse(registry.isSoldOut(2L));
+        verify(stringRedisTemplate, times(1)).convertAndSend(RedisConstants.SECKILL_SOLD_OUT_CHANNEL, "1#soldout");
+
+        registry.reset(1L);
+        assertFalse(registry.isSoldOut(1L));
+        verify(stringRedisTemplate, times(1)).convertAndSend(RedisConstants.SECKILL_SOLD_OUT_CHANNEL, "1#restock");
+
+        // 标记过期后不再拒绝
+        seckillProperties.setSoldOutTtl(Duration.ofMillis(1));
+        registry.markSoldOut(3L);
+        TimeUnit.MILLISECONDS.sleep(5);
+        assertFalse(registry.isSoldOut(3L));
+    }
+
+    @Test
+    public void benchmark() {
+        registry.markSoldOut(1L);
+        Long soldOut = 1L;
+        Long onSale = 2L;
+
+        // 预热
+        run(soldOut, ITERATIONS);
+        run(onSale, ITERATIONS);
+
+        long soldOutNanos = run(soldOut, ITERATIONS);
+        long onSaleNanos = run(onSale, ITERATIONS);
+        System.out.printf("sold-out rejection: %.1f ns/op, on-sale check: %.1f ns/op%n",
+                (double) soldOutNanos / ITERATIONS, (double) onSaleNanos / ITERATIONS);
+
+        assertTrue(soldOutNanos / ITERATIONS < 1_000);
+        assertTrue(onSaleNanos / ITERATIONS < 1_000);
+    }
+
+    private long run(Long voucherId, int iterations) {
+        long begin = System.nanoTime();
+        int hits = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (registry.isSoldOut(voucherId)) {
+                hits++;
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        assertTrue(hits == 0 || hits == iterations);
+        return elapsed;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hmdp;
+
+import com.hmdp.config.CacheClientProperties;
+import com.hmdp.utils.TtlPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 验证有效期的随机抖动能把同一批key的过期时间分散到整个抖动窗口
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class TtlPolicyTest {
+
+    private static final int SAMPLES = 100_000;
+
+    private static final int BUCKETS = 10;
+
+    @Test
+    public void prefixTtlSpreadTest() {
+        CacheClientProperties properties = new CacheClientProperties();
+        CacheClientProperties.PrefixTtl shopTtl = new CacheClientProperties.PrefixTtl();
+        shopTtl.setJitter(Duration.ofSeconds(10));
+        properties.getTtl().getPrefixes().put("cache:shop:", shopTtl);
+        TtlPolicy ttlPolicy = new TtlPolicy(properties);
+
+        // 模拟预热时同一时刻写入的一批key，基础有效期30秒，抖动窗口10秒
+        assertSpread(ttlPolicy, "cache:shop:", 30_000L, 10_000L,
+                i -> ttlPolicy.ttlMillis("cache:shop:" + i, 30L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void defaultJitterTest() {
+        CacheClientProperties properties = new CacheClientProperties();
+        CacheClientProperties.PrefixTtl shopTypeTtl = new CacheClientProperties.PrefixTtl();
+        shopTypeTtl.setBase(Duration.ofHours(24));
+        properties.getTtl().getPrefixes().put("cache:shopType", shopTypeTtl);
+        TtlPolicy ttlPolicy = new TtlPolicy(properties);
+
+        // 配置的基础有效期优先于调用方传入的有效期，抖动窗口按默认比例计算
+        long base = TimeUnit.HOURS.toMillis(24);
+        assertSpread(ttlPolicy, "cache:shopType", base, base / 10,
+                i -> ttlPolicy.ttlMillis("cache:shopType", 1L, TimeUnit.HOURS));
+
+        // 空值同样增加抖动
+        long nullBase = TimeUnit.MINUTES.toMillis(2);
+        assertSpread(ttlPolicy, "cache:user:", nullBase, nullBase / 10,
+                i -> ttlPolicy.nullTtlMillis("cache:user:" + i));
+    }
+
+    private static void assertSpread(TtlPolicy ttlPolicy, String prefix, long base, long window,
+                                     IntToLongFunction sampler) {
+        int[] buckets = new int[BUCKETS];
+        Set<Long> distinct = new HashSet<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            long ttl = sampler.applyAsLong(i);
+            // 1. 有效期全部落在[base, base + window)内
+            assertTrue(ttl >= base && ttl < base + window, prefix + "有效期超出抖动窗口：" + ttl);
+            buckets[(int) ((ttl - base) * BUCKETS / window)]++;
+            distinct.add(ttl);
+        }
+
+        // 2. 每个区间的数量接近均匀分布的期望值，说明过期时间分散在整个窗口内
+        int expected = SAMPLES / BUCKETS;
+        for (int count : buckets) {
+            assertTrue(Math.abs(count - expected) < expected * 0.1, prefix + "过期时间分布不均匀：" + count);
+        }
+        assertTrue(distinct.size() > Math.min(window, SAMPLES) / 2, prefix + "过期时间过于集中：" + distinct.size());
+        assertEquals(SAMPLES, sum(buckets));
+    }
+
+    private static int sum(int[] buckets) {
+        int sum = 0;
+        for (int count : buckets) {
+            sum += count;
+        }
+        return sum;
+    }
+}
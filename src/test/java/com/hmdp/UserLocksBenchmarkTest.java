@@ -0,0 +1,141 @@
+package com.hmdp;
+
+import com.hmdp.config.RedisLockProperties;
+import com.hmdp.utils.UserLocks;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 比较按用户加锁的两种进程内实现：对userId.toString().intern()加synchronized，以及固定数量的分段锁
+ * 10000个不同的用户被多个线程随机加锁，验证互斥并统计每次加锁解锁的耗时
+ * @author lr1descent
+ * @version 1.0 2026-10-18
+ */
+public class UserLocksBenchmarkTest {
+
+    private static final int USERS = 10_000;
+
+    private static final int THREADS = 16;
+
+    private static final int ITERATIONS = 200_000;
+
+    private UserLocks userLocks;
+
+    @BeforeEach
+    public void setUp() {
+        RedisLockProperties properties = new RedisLockProperties();
+        properties.getUserLock().setMode(RedisLockProperties.UserLockMode.LOCAL);
+        userLocks = new UserLocks();
+        ReflectionTestUtils.setField(userLocks, "redisLockProperties", properties);
+        userLocks.init();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        // 预热
+        runIntern(new long[USERS]);
+        runStriped(new long[USERS]);
+
+        long[] internCounters = new long[USERS];
+        long internNanos = runIntern(internCounters);
+        long[] stripedCounters = new long[USERS];
+        long stripedNanos = runStriped(stripedCounters);
+
+        long ops = (long) THREADS * ITERATIONS;
+        System.out.printf("%d users, %d threads: intern %.1f ns/op, striped %.1f ns/op%n",
+                USERS, THREADS, (double) internNanos / ops, (double) stripedNanos / ops);
+
+        // 加锁期间的自增没有丢失，说明同一用户的操作是互斥的
+        assertEquals(ops, sum(internCounters));
+        assertEquals(ops, sum(stripedCounters));
+        assertTrue(stripedNanos / ops < 10_000);
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        assertTrue(userLocks.tryLock(1L, 0, TimeUnit.MILLISECONDS));
+        try {
+            // 其他线程等待超时后获取失败
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            long begin = System.nanoTime();
+            assertEquals(Boolean.FALSE, pool.submit(() -> userLocks.tryLock(1L, 50, TimeUnit.MILLISECONDS)).get());
+            assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(50));
+            pool.shutdown();
+
+            // 同一线程可以重入
+            assertTrue(userLocks.tryLock(1L, 0, TimeUnit.MILLISECONDS));
+            userLocks.unlock(1L);
+        } finally {
+            userLocks.unlock(1L);
+        }
+    }
+
+    private long runIntern(long[] counters) throws Exception {
+        return run(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Long userId = (long) random.nextInt(USERS);
+                synchronized (userId.toString().intern()) {
+                    counters[userId.intValue()]++;
+                }
+            }
+        });
+    }
+
+    private long runStriped(long[] counters) throws Exception {
+        return run(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < ITERATIONS; i++) {
+                Long userId = (long) random.nextInt(USERS);
+                userLocks.tryLock(userId, 1, TimeUnit.SECONDS);
+                try {
+                    counters[userId.intValue()]++;
+                } finally {
+                    userLocks.unlock(userId);
+                }
+            }
+        });
+    }
+
+    private static long run(Runnable task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    private static long sum(long[] counters) {
+        long sum = 0;
+        for (long counter : counters) {
+            sum += counter;
+        }
+        return sum;
+    }
+}